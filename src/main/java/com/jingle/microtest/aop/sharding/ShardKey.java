@@ -0,0 +1,22 @@
+package com.jingle.microtest.aop.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter giving the owner of the contents used by a service method, so that the method runs on the
+ * shard of this owner.
+ * <p>
+ * The parameter is either the login of the owner, a {@link com.jingle.microtest.domain.Contents} or a collection of
+ * contents, whose owners must all be on the same shard.
+ *
+ * @see ShardRoutingAspect
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+}
@@ -0,0 +1,104 @@
+package com.jingle.microtest.aop.sharding;
+
+import com.jingle.microtest.config.ShardContext;
+import com.jingle.microtest.config.ShardRoutingDataSource;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.ContentsShardService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Aspect running the methods of {@link com.jingle.microtest.service.ContentResourceService} which have a
+ * {@link ShardKey} parameter on the shard of the owner of their contents.
+ * <p>
+ * It runs before the transaction is started, as the shard of a transaction is chosen when it takes its connection:
+ * such a method can not be called from a transaction running on another shard.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ShardRoutingAspect {
+
+    private final ContentsShardService contentsShardService;
+
+    public ShardRoutingAspect(ContentsShardService contentsShardService) {
+        this.contentsShardService = contentsShardService;
+    }
+
+    @Around("execution(public * com.jingle.microtest.service.ContentResourceService+.*(..))")
+    public Object routeToShard(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = AopUtils.getMostSpecificMethod(((MethodSignature) joinPoint.getSignature()).getMethod(),
+            joinPoint.getTarget().getClass());
+        Set<String> logins = ownersOf(method, joinPoint.getArgs());
+        if (logins == null) {
+            return joinPoint.proceed();
+        }
+        String shard = null;
+        for (String login : logins) {
+            String loginShard = contentsShardService.shardOf(login);
+            if (shard != null && !shard.equals(loginShard)) {
+                throw new IllegalArgumentException("The contents of users " + logins + " are on several shards");
+            }
+            shard = loginShard;
+        }
+        if (shard == null) {
+            shard = ShardRoutingDataSource.PRIMARY;
+        }
+        String current = ShardContext.current() == null ? ShardRoutingDataSource.PRIMARY : ShardContext.current();
+        if (!shard.equals(current) && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Method " + method.getName() + " must run on shard " + shard +
+                ", but was called from a transaction on shard " + current);
+        }
+        String previous = ShardContext.set(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    /**
+     * Get the logins of the owners given by the {@link ShardKey} parameter.
+     *
+     * @return the logins, or {@code null} if the method has no such parameter.
+     */
+    private Set<String> ownersOf(Method method, Object[] args) {
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    Set<String> logins = new LinkedHashSet<>();
+                    addOwners(args[i], logins);
+                    return logins;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addOwners(Object key, Set<String> logins) {
+        if (key instanceof String) {
+            logins.add((String) key);
+        } else if (key instanceof Contents) {
+            Contents contents = (Contents) key;
+            if (contents.getUserBelongsTo() != null && contents.getUserBelongsTo().getLogin() != null) {
+                logins.add(contents.getUserBelongsTo().getLogin());
+            }
+        } else if (key instanceof Collection) {
+            ((Collection<?>) key).forEach(element -> addOwners(element, logins));
+        } else if (key != null) {
+            throw new IllegalArgumentException("Unsupported shard key: " + key.getClass().getName());
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.jingle.microtest.config;
 
+import com.jingle.microtest.domain.converter.ContentsValueCodec;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Properties specific to Microtest.
@@ -11,4 +17,839 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final ContentsStream contentsStream = new ContentsStream();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Compression compression = new Compression();
+
+    private final Tls tls = new Tls();
+
+    private final IdGenerator idGenerator = new IdGenerator();
+
+    private final Replicas replicas = new Replicas();
+
+    private final Sharding sharding = new Sharding();
+
+    private final Partitioning partitioning = new Partitioning();
+
+    private final Search search = new Search();
+
+    private final Suggest suggest = new Suggest();
+
+    private final Attachments attachments = new Attachments();
+
+    private final ValueCompression valueCompression = new ValueCompression();
+
+    public ContentsStream getContentsStream() {
+        return contentsStream;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Tls getTls() {
+        return tls;
+    }
+
+    public IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public Replicas getReplicas() {
+        return replicas;
+    }
+
+    public Sharding getSharding() {
+        return sharding;
+    }
+
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Suggest getSuggest() {
+        return suggest;
+    }
+
+    public Attachments getAttachments() {
+        return attachments;
+    }
+
+    public ValueCompression getValueCompression() {
+        return valueCompression;
+    }
+
+    /**
+     * Server-Sent Events stream of the changes of a user's contents.
+     */
+    public static class ContentsStream {
+
+        /**
+         * Maximum number of events waiting to be sent to one subscriber, before it is disconnected.
+         */
+        private int bufferSize = 256;
+
+        /**
+         * Delay between two heartbeats, in milliseconds.
+         */
+        private long heartbeatInterval = 15000;
+
+        /**
+         * Time after which a subscription is closed, in milliseconds; clients reconnect.
+         */
+        private long timeout = 1800000;
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public long getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    /**
+     * Store of the results of the requests sent with an {@code Idempotency-Key} header.
+     */
+    public static class Idempotency {
+
+        /**
+         * Time during which a key is remembered, in seconds.
+         */
+        private long timeToLiveSeconds = 86400;
+
+        /**
+         * Maximum number of keys remembered; the least recently used ones are evicted first.
+         */
+        private long maxEntries = 10000;
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * Compression of the HTTP responses by Undertow.
+     */
+    public static class Compression {
+
+        private boolean enabled = false;
+
+        /**
+         * Deflate compression level, from 1 (fastest) to 9 (smallest).
+         */
+        private int level = 6;
+
+        /**
+         * Media types which are compressed, each with the minimum size of the responses to compress.
+         */
+        private List<Rule> rules = new ArrayList<>(Arrays.asList(
+            new Rule("application/json", 1024),
+            new Rule("application/problem+json", 1024),
+            new Rule("application/javascript", 1024),
+            new Rule("text/html", 1024),
+            new Rule("text/css", 1024),
+            new Rule("text/plain", 1024),
+            new Rule("text/xml", 1024)));
+
+        /**
+         * Media types which are never compressed, even if a rule matches them, like streamed responses.
+         */
+        private List<String> excludedMimeTypes = new ArrayList<>(Arrays.asList("text/event-stream", "application/x-ndjson"));
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        public List<String> getExcludedMimeTypes() {
+            return excludedMimeTypes;
+        }
+
+        public void setExcludedMimeTypes(List<String> excludedMimeTypes) {
+            this.excludedMimeTypes = excludedMimeTypes;
+        }
+
+        public static class Rule {
+
+            /**
+             * Media type of the responses, wildcards like {@code text/*} are supported.
+             */
+            private String mimeType;
+
+            /**
+             * Minimum size of the responses to compress, in bytes; responses of unknown size are compressed.
+             */
+            private long minResponseSize = 1024;
+
+            public Rule() {
+            }
+
+            public Rule(String mimeType, long minResponseSize) {
+                this.mimeType = mimeType;
+                this.minResponseSize = minResponseSize;
+            }
+
+            public String getMimeType() {
+                return mimeType;
+            }
+
+            public void setMimeType(String mimeType) {
+                this.mimeType = mimeType;
+            }
+
+            public long getMinResponseSize() {
+                return minResponseSize;
+            }
+
+            public void setMinResponseSize(long minResponseSize) {
+                this.minResponseSize = minResponseSize;
+            }
+        }
+    }
+
+    /**
+     * TLS termination by Undertow, when {@code server.ssl} is enabled.
+     */
+    public static class Tls {
+
+        /**
+         * Use the OpenSSL engine when its native library is available, instead of JSSE.
+         */
+        private boolean openssl = false;
+
+        /**
+         * Number of TLS sessions kept for resumption, 0 for no limit.
+         */
+        private int sessionCacheSize = 20480;
+
+        /**
+         * Time a TLS session can be resumed for, in seconds.
+         */
+        private int sessionTimeout = 14400;
+
+        public boolean isOpenssl() {
+            return openssl;
+        }
+
+        public void setOpenssl(boolean openssl) {
+            this.openssl = openssl;
+        }
+
+        public int getSessionCacheSize() {
+            return sessionCacheSize;
+        }
+
+        public void setSessionCacheSize(int sessionCacheSize) {
+            this.sessionCacheSize = sessionCacheSize;
+        }
+
+        public int getSessionTimeout() {
+            return sessionTimeout;
+        }
+
+        public void setSessionTimeout(int sessionTimeout) {
+            this.sessionTimeout = sessionTimeout;
+        }
+    }
+
+    /**
+     * Snowflake ids, generated by {@link com.jingle.microtest.domain.id.SnowflakeIdentifierGenerator}.
+     */
+    public static class IdGenerator {
+
+        /**
+         * Id of this node, from 0 to 1023, which must be different on every node; derived from the host address if
+         * not set.
+         */
+        private Integer nodeId;
+
+        /**
+         * Longest backwards move of the clock waited out, in milliseconds; ids are not generated after a longer one.
+         */
+        private long maxClockRegression = 10;
+
+        public Integer getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(Integer nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public long getMaxClockRegression() {
+            return maxClockRegression;
+        }
+
+        public void setMaxClockRegression(long maxClockRegression) {
+            this.maxClockRegression = maxClockRegression;
+        }
+    }
+
+    /**
+     * Read replicas of the database, used by the read-only transactions.
+     */
+    public static class Replicas {
+
+        private boolean enabled = false;
+
+        /**
+         * Time between two checks of the replicas, in milliseconds.
+         */
+        private long checkInterval = 5000;
+
+        /**
+         * Query returning the replication lag of a replica in seconds, or none to only check that it is up.
+         */
+        private String lagQuery;
+
+        /**
+         * Largest replication lag of a replica used for reads, in seconds.
+         */
+        private double maxLag = 10;
+
+        /**
+         * Time to wait for a replica connection before falling back to the primary, in milliseconds.
+         */
+        private long connectionTimeout = 2000;
+
+        private List<Instance> instances = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getCheckInterval() {
+            return checkInterval;
+        }
+
+        public void setCheckInterval(long checkInterval) {
+            this.checkInterval = checkInterval;
+        }
+
+        public String getLagQuery() {
+            return lagQuery;
+        }
+
+        public void setLagQuery(String lagQuery) {
+            this.lagQuery = lagQuery;
+        }
+
+        public double getMaxLag() {
+            return maxLag;
+        }
+
+        public void setMaxLag(double maxLag) {
+            this.maxLag = maxLag;
+        }
+
+        public long getConnectionTimeout() {
+            return connectionTimeout;
+        }
+
+        public void setConnectionTimeout(long connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        public List<Instance> getInstances() {
+            return instances;
+        }
+
+        public void setInstances(List<Instance> instances) {
+            this.instances = instances;
+        }
+
+        /**
+         * A replica, whose pool has the settings of {@code spring.datasource.hikari} but its own url and credentials.
+         */
+        public static class Instance {
+
+            /**
+             * Name of the replica, used as its pool name.
+             */
+            private String name;
+
+            private String url;
+
+            private String username;
+
+            private String password;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getUsername() {
+                return username;
+            }
+
+            public void setUsername(String username) {
+                this.username = username;
+            }
+
+            public String getPassword() {
+                return password;
+            }
+
+            public void setPassword(String password) {
+                this.password = password;
+            }
+        }
+    }
+
+    /**
+     * Databases holding the contents, each user's contents being stored in a single one of them.
+     */
+    public static class Sharding {
+
+        private boolean enabled = false;
+
+        /**
+         * Time between the fencing of a user being moved and the copy of its contents, so that the operations
+         * already started can complete, in milliseconds.
+         */
+        private long migrationGracePeriod = 2000;
+
+        /**
+         * Number of contents copied at once when a user is moved.
+         */
+        private int migrationBatchSize = 500;
+
+        /**
+         * Time during which the shard of a user is cached, in milliseconds. The cache of each node is cleared when
+         * it moves a user, but the other nodes only see the move once their entry expires: it must be shorter than
+         * the migration grace period.
+         */
+        private long directoryCacheTimeToLive = 1000;
+
+        /**
+         * Maximum number of users whose shard is cached, and whose copy on their shard is remembered.
+         */
+        private long directoryCacheMaxEntries = 10000;
+
+        /**
+         * Delay, in milliseconds, between two attempts to delete the rows that moves of users could not delete.
+         */
+        private long cleanupInterval = 60000;
+
+        /**
+         * Shards besides the primary database, which is always the first shard.
+         */
+        private List<Shard> shards = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMigrationGracePeriod() {
+            return migrationGracePeriod;
+        }
+
+        public void setMigrationGracePeriod(long migrationGracePeriod) {
+            this.migrationGracePeriod = migrationGracePeriod;
+        }
+
+        public int getMigrationBatchSize() {
+            return migrationBatchSize;
+        }
+
+        public void setMigrationBatchSize(int migrationBatchSize) {
+            this.migrationBatchSize = migrationBatchSize;
+        }
+
+        public long getDirectoryCacheTimeToLive() {
+            return directoryCacheTimeToLive;
+        }
+
+        public void setDirectoryCacheTimeToLive(long directoryCacheTimeToLive) {
+            this.directoryCacheTimeToLive = directoryCacheTimeToLive;
+        }
+
+        public long getDirectoryCacheMaxEntries() {
+            return directoryCacheMaxEntries;
+        }
+
+        public void setDirectoryCacheMaxEntries(long directoryCacheMaxEntries) {
+            this.directoryCacheMaxEntries = directoryCacheMaxEntries;
+        }
+
+        public long getCleanupInterval() {
+            return cleanupInterval;
+        }
+
+        public void setCleanupInterval(long cleanupInterval) {
+            this.cleanupInterval = cleanupInterval;
+        }
+
+        public List<Shard> getShards() {
+            return shards;
+        }
+
+        public void setShards(List<Shard> shards) {
+            this.shards = shards;
+        }
+
+        /**
+         * A shard, whose pool has the settings of {@code spring.datasource.hikari} but its own url and credentials.
+         */
+        public static class Shard {
+
+            /**
+             * Name of the shard, stored in the shard directory; it must not change once users are assigned to it.
+             */
+            private String name;
+
+            private String url;
+
+            private String username;
+
+            private String password;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getUsername() {
+                return username;
+            }
+
+            public void setUsername(String username) {
+                this.username = username;
+            }
+
+            public String getPassword() {
+                return password;
+            }
+
+            public void setPassword(String password) {
+                this.password = password;
+            }
+        }
+    }
+
+    /**
+     * Monthly partitions of the contents, by creation date, on PostgreSQL.
+     */
+    public static class Partitioning {
+
+        /**
+         * When the partitions are created and dropped, as a cron expression.
+         */
+        private String cron = "0 30 3 * * ?";
+
+        /**
+         * Number of partitions created ahead of the current month.
+         */
+        private int premadeMonths = 3;
+
+        /**
+         * Number of months kept before the current one, older partitions being dropped; 0 keeps them all.
+         */
+        private int retentionMonths = 0;
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getPremadeMonths() {
+            return premadeMonths;
+        }
+
+        public void setPremadeMonths(int premadeMonths) {
+            this.premadeMonths = premadeMonths;
+        }
+
+        public int getRetentionMonths() {
+            return retentionMonths;
+        }
+
+        public void setRetentionMonths(int retentionMonths) {
+            this.retentionMonths = retentionMonths;
+        }
+    }
+
+    /**
+     * Full-text index of the contents.
+     */
+    public static class Search {
+
+        /**
+         * Directory of the index; if not set, the index is kept in memory and built at startup.
+         */
+        private String directory;
+
+        /**
+         * Maximum delay, in milliseconds, before a change of the contents can be searched.
+         */
+        private long refreshInterval = 1000;
+
+        /**
+         * Delay, in milliseconds, between two commits of the index to its directory.
+         */
+        private long commitInterval = 60000;
+
+        /**
+         * Whether the index is rebuilt from the database at startup, even if it is not empty.
+         */
+        private boolean rebuildOnStartup = true;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(long refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public long getCommitInterval() {
+            return commitInterval;
+        }
+
+        public void setCommitInterval(long commitInterval) {
+            this.commitInterval = commitInterval;
+        }
+
+        public boolean isRebuildOnStartup() {
+            return rebuildOnStartup;
+        }
+
+        public void setRebuildOnStartup(boolean rebuildOnStartup) {
+            this.rebuildOnStartup = rebuildOnStartup;
+        }
+    }
+
+    /**
+     * Prefix suggestions over the contents of each user.
+     */
+    public static class Suggest {
+
+        /**
+         * Estimated heap used by the suggestions of all the users, the least recently used ones being evicted past it.
+         */
+        private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+        public DataSize getMaxMemory() {
+            return maxMemory;
+        }
+
+        public void setMaxMemory(DataSize maxMemory) {
+            this.maxMemory = maxMemory;
+        }
+    }
+
+    /**
+     * Binary attachments of the contents, stored in chunks in a local directory.
+     */
+    public static class Attachments {
+
+        /**
+         * Directory of the attachments, which must be on a single file system.
+         */
+        private String directory = "attachments";
+
+        /**
+         * Size of the chunks the new attachments are split into.
+         */
+        private DataSize chunkSize = DataSize.ofMegabytes(8);
+
+        /**
+         * When the attachments of deleted contents are purged, as a cron expression.
+         */
+        private String purgeCron = "0 0 4 * * ?";
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(DataSize chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public String getPurgeCron() {
+            return purgeCron;
+        }
+
+        public void setPurgeCron(String purgeCron) {
+            this.purgeCron = purgeCron;
+        }
+    }
+
+    /**
+     * Compression of the values of the contents in the database.
+     * <p>
+     * Values written while it is disabled are stored uncompressed; values already compressed are read either way.
+     */
+    public static class ValueCompression {
+
+        private boolean enabled = false;
+
+        /**
+         * Algorithm compressing the new values.
+         */
+        private ContentsValueCodec.Algorithm algorithm = ContentsValueCodec.Algorithm.DEFLATE;
+
+        /**
+         * Size of the UTF-8 encoded values from which they are compressed.
+         */
+        private DataSize threshold = DataSize.ofBytes(256);
+
+        /**
+         * When the stored values are rewritten in the current format, as a cron expression.
+         */
+        private String recompressCron = "0 30 4 * * ?";
+
+        /**
+         * Number of values rewritten per transaction.
+         */
+        private int recompressBatchSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public ContentsValueCodec.Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(ContentsValueCodec.Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        public String getRecompressCron() {
+            return recompressCron;
+        }
+
+        public void setRecompressCron(String recompressCron) {
+            this.recompressCron = recompressCron;
+        }
+
+        public int getRecompressBatchSize() {
+            return recompressBatchSize;
+        }
+
+        public void setRecompressBatchSize(int recompressBatchSize) {
+            this.recompressBatchSize = recompressBatchSize;
+        }
+    }
 }
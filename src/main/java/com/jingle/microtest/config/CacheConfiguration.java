@@ -3,6 +3,8 @@ package com.jingle.microtest.config;
 import java.time.Duration;
 
 import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.ContentsShardService;
+import com.jingle.microtest.service.IdempotencyService;
 import org.ehcache.config.builders.*;
 import org.ehcache.jsr107.Eh107Configuration;
 
@@ -20,7 +22,13 @@ public class CacheConfiguration {
 
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
+    private final javax.cache.configuration.Configuration<Object, Object> idempotencyConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> shardDirectoryConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> shardCopiedOwnersConfiguration;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         JHipsterProperties.Cache.Ehcache ehcache =
             jHipsterProperties.getCache().getEhcache();
 
@@ -29,6 +37,24 @@ public class CacheConfiguration {
                 ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
                 .build());
+
+        ApplicationProperties.Idempotency idempotency = applicationProperties.getIdempotency();
+        idempotencyConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(idempotency.getMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(idempotency.getTimeToLiveSeconds())))
+                .build());
+
+        ApplicationProperties.Sharding sharding = applicationProperties.getSharding();
+        shardDirectoryConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(sharding.getDirectoryCacheMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofMillis(sharding.getDirectoryCacheTimeToLive())))
+                .build());
+        shardCopiedOwnersConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(sharding.getDirectoryCacheMaxEntries()))
+                .build());
     }
 
     @Bean
@@ -45,15 +71,23 @@ public class CacheConfiguration {
             createCache(cm, com.jingle.microtest.domain.Authority.class.getName());
             createCache(cm, com.jingle.microtest.domain.User.class.getName() + ".authorities");
             createCache(cm, Contents.class.getName());
+            createCache(cm, IdempotencyService.IDEMPOTENCY_KEYS_CACHE, idempotencyConfiguration);
+            createCache(cm, ContentsShardService.SHARD_DIRECTORY_CACHE, shardDirectoryConfiguration);
+            createCache(cm, ContentsShardService.SHARD_COPIED_OWNERS_CACHE, shardCopiedOwnersConfiguration);
             // jhipster-needle-ehcache-add-entry
         };
     }
 
     private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        createCache(cm, cacheName, jcacheConfiguration);
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName,
+                             javax.cache.configuration.Configuration<Object, Object> configuration) {
         javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
         if (cache != null) {
             cm.destroyCache(cacheName);
         }
-        cm.createCache(cacheName, jcacheConfiguration);
+        cm.createCache(cacheName, configuration);
     }
 }
@@ -0,0 +1,220 @@
+package com.jingle.microtest.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.undertow.predicate.Predicate;
+import io.undertow.server.ConduitWrapper;
+import io.undertow.server.HandlerWrapper;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.encoding.ContentEncodingProvider;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Undertow handler wrapper compressing the responses with gzip or deflate, depending on the
+ * {@code Accept-Encoding} header of the request.
+ * <p>
+ * A response is compressed if its media type matches one of the {@link ApplicationProperties.Compression#getRules()
+ * rules} and it is at least as large as the rule requires; responses which already have a {@code Content-Encoding},
+ * or with an excluded media type, are sent as is. Responses serving byte ranges ({@code 206 (Partial Content)}, or
+ * with an {@code Accept-Ranges} or {@code Content-Range} header) are never compressed: their offsets, ETag and
+ * digest refer to the identity bytes, and they may be sent from files without copying them. The ratio of the compressed size to the original size of each
+ * response is reported as the {@value #RATIO_METRIC} metric.
+ */
+public class CompressionHandlerWrapper implements HandlerWrapper {
+
+    public static final String RATIO_METRIC = "http.server.responses.compression.ratio";
+
+    private final ApplicationProperties.Compression compression;
+
+    private final MeterRegistry meterRegistry;
+
+    public CompressionHandlerWrapper(ApplicationProperties.Compression compression, MeterRegistry meterRegistry) {
+        this.compression = compression;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public HttpHandler wrap(HttpHandler handler) {
+        Predicate predicate = new CompressibleResponsePredicate(compression);
+        ContentEncodingRepository encodings = new ContentEncodingRepository()
+            .addEncodingHandler("gzip", meter("gzip", new GzipEncodingProvider(compression.getLevel())), 100, predicate)
+            .addEncodingHandler("deflate", meter("deflate", new DeflateEncodingProvider(compression.getLevel())), 50, predicate);
+        return new EncodingHandler(handler, encodings);
+    }
+
+    private ContentEncodingProvider meter(String encoding, ContentEncodingProvider provider) {
+        if (meterRegistry == null) {
+            return provider;
+        }
+        DistributionSummary ratio = DistributionSummary.builder(RATIO_METRIC)
+            .description("Compressed size of the HTTP responses divided by their original size")
+            .tag("encoding", encoding)
+            .register(meterRegistry);
+        return new MeteredContentEncodingProvider(provider, ratio);
+    }
+
+    /**
+     * Predicate selecting the responses to compress, evaluated when the response headers are sent.
+     */
+    static class CompressibleResponsePredicate implements Predicate {
+
+        private final List<ParsedRule> rules;
+
+        private final List<MimeType> excludedMimeTypes;
+
+        CompressibleResponsePredicate(ApplicationProperties.Compression compression) {
+            this.rules = compression.getRules().stream()
+                .map(rule -> new ParsedRule(MimeTypeUtils.parseMimeType(rule.getMimeType()), rule.getMinResponseSize()))
+                .collect(Collectors.toList());
+            this.excludedMimeTypes = compression.getExcludedMimeTypes().stream()
+                .map(MimeTypeUtils::parseMimeType)
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public boolean resolve(HttpServerExchange exchange) {
+            HeaderMap headers = exchange.getResponseHeaders();
+            String contentType = headers.getFirst(Headers.CONTENT_TYPE);
+            if (contentType == null || headers.contains(Headers.CONTENT_ENCODING) || isRanged(exchange)) {
+                return false;
+            }
+            MimeType mimeType;
+            try {
+                mimeType = MimeTypeUtils.parseMimeType(contentType);
+            } catch (InvalidMimeTypeException e) {
+                return false;
+            }
+            if (excludedMimeTypes.stream().anyMatch(excluded -> excluded.includes(mimeType))) {
+                return false;
+            }
+            String contentLength = headers.getFirst(Headers.CONTENT_LENGTH);
+            for (ParsedRule rule : rules) {
+                if (rule.mimeType.includes(mimeType)) {
+                    return contentLength == null || Long.parseLong(contentLength) >= rule.minResponseSize;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isRanged(HttpServerExchange exchange) {
+            HeaderMap headers = exchange.getResponseHeaders();
+            return exchange.getStatusCode() == StatusCodes.PARTIAL_CONTENT
+                || headers.contains(Headers.ACCEPT_RANGES)
+                || headers.contains(Headers.CONTENT_RANGE);
+        }
+    }
+
+    private static final class ParsedRule {
+
+        private final MimeType mimeType;
+
+        private final long minResponseSize;
+
+        private ParsedRule(MimeType mimeType, long minResponseSize) {
+            this.mimeType = mimeType;
+            this.minResponseSize = minResponseSize;
+        }
+    }
+
+    /**
+     * Encoding provider counting the bytes written before and after the encoding.
+     */
+    private static final class MeteredContentEncodingProvider implements ContentEncodingProvider {
+
+        private final ContentEncodingProvider delegate;
+
+        private final DistributionSummary ratio;
+
+        private MeteredContentEncodingProvider(ContentEncodingProvider delegate, DistributionSummary ratio) {
+            this.delegate = delegate;
+            this.ratio = ratio;
+        }
+
+        @Override
+        public ConduitWrapper<StreamSinkConduit> getResponseWrapper() {
+            ConduitWrapper<StreamSinkConduit> encoder = delegate.getResponseWrapper();
+            return (factory, exchange) -> {
+                AtomicLong encodedBytes = new AtomicLong();
+                AtomicLong originalBytes = new AtomicLong();
+                StreamSinkConduit encoded = encoder.wrap(() -> new CountingStreamSinkConduit(factory.create(), encodedBytes), exchange);
+                exchange.addExchangeCompleteListener((completed, nextListener) -> {
+                    if (originalBytes.get() > 0) {
+                        ratio.record((double) encodedBytes.get() / originalBytes.get());
+                    }
+                    nextListener.proceed();
+                });
+                return new CountingStreamSinkConduit(encoded, originalBytes);
+            };
+        }
+    }
+
+    /**
+     * Conduit counting the bytes written through it.
+     */
+    private static final class CountingStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+        private final AtomicLong count;
+
+        private CountingStreamSinkConduit(StreamSinkConduit next, AtomicLong count) {
+            super(next);
+            this.count = count;
+        }
+
+        private <T extends Number> T counted(T written) {
+            if (written.longValue() > 0) {
+                count.addAndGet(written.longValue());
+            }
+            return written;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return counted(super.write(src));
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+            return counted(super.write(srcs, offs, len));
+        }
+
+        @Override
+        public int writeFinal(ByteBuffer src) throws IOException {
+            return counted(super.writeFinal(src));
+        }
+
+        @Override
+        public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+            return counted(super.writeFinal(srcs, offs, len));
+        }
+
+        @Override
+        public long transferFrom(FileChannel src, long position, long count) throws IOException {
+            return counted(super.transferFrom(src, position, count));
+        }
+
+        @Override
+        public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+            return counted(super.transferFrom(source, count, throughBuffer));
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.jingle.microtest.config;
 
+import com.jingle.microtest.domain.converter.ContentsValueCodec;
+import com.jingle.microtest.domain.id.SnowflakeIdentifierGenerator;
 import io.github.jhipster.config.JHipsterConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -19,4 +22,34 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 public class DatabaseConfiguration {
 
     private final Logger log = LoggerFactory.getLogger(DatabaseConfiguration.class);
+
+    /**
+     * Pass the settings of the Snowflake ids to Hibernate, which creates the identifier generators.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer idGeneratorHibernatePropertiesCustomizer(ApplicationProperties applicationProperties) {
+        ApplicationProperties.IdGenerator idGenerator = applicationProperties.getIdGenerator();
+        return hibernateProperties -> {
+            if (idGenerator.getNodeId() != null) {
+                hibernateProperties.put(SnowflakeIdentifierGenerator.NODE_ID, idGenerator.getNodeId());
+            }
+            hibernateProperties.put(SnowflakeIdentifierGenerator.MAX_CLOCK_REGRESSION, idGenerator.getMaxClockRegression());
+        };
+    }
+
+    /**
+     * Codec of the values of the contents, used by the {@code ContentsValueConverter} which Hibernate gets from
+     * the Spring bean factory.
+     */
+    @Bean
+    public ContentsValueCodec contentsValueCodec(ApplicationProperties applicationProperties) {
+        ApplicationProperties.ValueCompression valueCompression = applicationProperties.getValueCompression();
+        if (!valueCompression.isEnabled()) {
+            return new ContentsValueCodec(null, 0);
+        }
+        log.debug("Compressing the values of the contents from {} with {}", valueCompression.getThreshold(),
+            valueCompression.getAlgorithm());
+        return new ContentsValueCodec(valueCompression.getAlgorithm(), (int) Math.min(Integer.MAX_VALUE,
+            valueCompression.getThreshold().toBytes()));
+    }
 }
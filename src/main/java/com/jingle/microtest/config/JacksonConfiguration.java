@@ -1,17 +1,38 @@
 package com.jingle.microtest.config;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 
+import com.jingle.microtest.service.dto.ContentsDTO;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.zalando.problem.ProblemModule;
 import org.zalando.problem.violations.ConstraintViolationProblemModule;
 
+import java.util.List;
+
 @Configuration
-public class JacksonConfiguration {
+public class JacksonConfiguration implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    public JacksonConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
 
     /**
      * Support for Java date and time API.
@@ -43,6 +64,30 @@ public class JacksonConfiguration {
         return new AfterburnerModule();
     }
 
+    /*
+     * Sparse fieldsets: the REST resources select the serialized properties of a DTO by replacing its filter.
+     * The filter is attached through a mix-in, so that other object mappers can still serialize the DTO.
+     */
+    @Bean
+    public SimpleModule sparseFieldsetsModule() {
+        SimpleModule module = new SimpleModule("SparseFieldsetsModule");
+        module.setMixInAnnotation(ContentsDTO.class, ContentsDTOFieldsMixin.class);
+        return module;
+    }
+
+    /*
+     * Serialize all the properties when no fields are selected.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer sparseFieldsetsCustomizer() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+            .addFilter(ContentsDTO.FIELDS_FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    @JsonFilter(ContentsDTO.FIELDS_FILTER)
+    private abstract static class ContentsDTOFieldsMixin {
+    }
+
     /*
      * Module for serialization/deserialization of RFC7807 Problem.
      */
@@ -58,4 +103,29 @@ public class JacksonConfiguration {
     ConstraintViolationProblemModule constraintViolationProblemModule() {
         return new ConstraintViolationProblemModule();
     }
+
+    /*
+     * Binary formats, chosen with the Accept and Content-Type headers. Their object mappers are built like the JSON
+     * one, so they have the same modules and filters. These beans replace the converters Spring MVC registers by
+     * default after the JSON one, so JSON remains the default format.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.smile().build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.cbor().build());
+    }
+
+    /*
+     * MessagePack has no default converter to replace, so it is appended after the others rather than declared as a
+     * bean, which would put it first.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2MessagePackHttpMessageConverter(
+            objectMapperBuilder.getObject().factory(new MessagePackFactory()).build()));
+    }
 }
@@ -0,0 +1,35 @@
+package com.jingle.microtest.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link org.springframework.http.converter.HttpMessageConverter} that can read and write
+ * MessagePack data format, using Jackson 2.x.
+ * <p>
+ * By default, this converter supports {@value #APPLICATION_MSGPACK_VALUE} and {@code application/msgpack} media types.
+ */
+public class MappingJackson2MessagePackHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final String APPLICATION_MSGPACK_VALUE = "application/x-msgpack";
+
+    public static final MediaType APPLICATION_MSGPACK = MediaType.valueOf(APPLICATION_MSGPACK_VALUE);
+
+    public MappingJackson2MessagePackHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper, APPLICATION_MSGPACK, new MediaType("application", "msgpack"));
+        Assert.isInstanceOf(MessagePackFactory.class, objectMapper.getFactory(), "MessagePackFactory required");
+    }
+
+    /**
+     * {@inheritDoc}
+     * The {@code ObjectMapper} must be configured with a {@code MessagePackFactory} instance.
+     */
+    @Override
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        Assert.isInstanceOf(MessagePackFactory.class, objectMapper.getFactory(), "MessagePackFactory required");
+        super.setObjectMapper(objectMapper);
+    }
+}
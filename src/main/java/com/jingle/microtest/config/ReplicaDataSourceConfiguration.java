@@ -0,0 +1,76 @@
+package com.jingle.microtest.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the read replicas, enabled by {@code application.replicas.enabled}.
+ * <p>
+ * The primary pool is configured with {@code spring.datasource}, as without replicas. Each replica gets a pool with
+ * the same settings, but its own url and credentials, and Hikari metrics tagged with its name.
+ * <p>
+ * Replicas lag behind the primary: a read-only transaction may not see the changes just committed by the same user.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaDataSourceConfiguration.class);
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             ApplicationProperties applicationProperties,
+                                                             ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        ApplicationProperties.Replicas properties = applicationProperties.getReplicas();
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (ApplicationProperties.Replicas.Instance instance : properties.getInstances()) {
+            log.debug("Configuring replica {} at {}", instance.getName(), instance.getUrl());
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setPoolName(instance.getName());
+            config.setJdbcUrl(instance.getUrl());
+            config.setUsername(instance.getUsername());
+            config.setPassword(instance.getPassword());
+            config.setConnectionTimeout(properties.getConnectionTimeout());
+            // A replica which is down must not prevent the application from starting
+            config.setInitializationFailTimeout(-1);
+            config.setMetricRegistry(null);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(new ReplicaRoutingDataSource.Replica(new HikariDataSource(config)));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, properties, meterRegistry);
+    }
+
+    /**
+     * The data source used by JPA and Liquibase.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,188 @@
+package com.jingle.microtest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source sending the read-only transactions to the read replicas, and everything else to the primary.
+ * <p>
+ * Replicas are checked periodically, and are only used while they are up and their replication lag is below
+ * {@link ApplicationProperties.Replicas#getMaxLag()}; they are picked in turn. When no replica is usable, or a
+ * connection to the replica fails, the primary is used instead.
+ * <p>
+ * The read-only flag of the transaction is only known once it has started, so this data source must be wrapped
+ * in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final HikariDataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final ApplicationProperties.Replicas properties;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryConnections;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<Replica> replicas, ApplicationProperties.Replicas properties,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(replicas);
+        this.properties = properties;
+        this.primaryConnections = routedConnections(meterRegistry, PRIMARY);
+        for (Replica replica : replicas) {
+            replica.connections = routedConnections(meterRegistry, replica.getName());
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                .description("Whether the replica is used for reads")
+                .tag("pool", replica.getName())
+                .register(meterRegistry);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lag)
+                .description("Replication lag of the replica, at its last check")
+                .baseUnit("seconds")
+                .tag("pool", replica.getName())
+                .register(meterRegistry);
+        }
+    }
+
+    private static Counter routedConnections(MeterRegistry meterRegistry, String pool) {
+        return Counter.builder("datasource.connections.routed")
+            .description("Connections taken from the pool by the routing data source")
+            .tag("pool", pool)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? nextHealthyReplica() : null;
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.connections.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Could not connect to replica {}, reading from the primary until it is back: {}", replica.getName(), e.getMessage());
+                replica.healthy = false;
+            }
+        }
+        Connection connection = primary.getConnection();
+        primaryConnections.increment();
+        return connection;
+    }
+
+    /**
+     * Get a connection with other credentials from the primary, which decides whether it supports it: the replicas
+     * have their own credentials.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Connection connection = primary.getConnection(username, password);
+        primaryConnections.increment();
+        return connection;
+    }
+
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that the replicas are up, and that their replication lag is acceptable.
+     */
+    @Scheduled(fixedDelayString = "${application.replicas.check-interval:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                replica.lag = lagOf(connection);
+                healthy = replica.lag <= properties.getMaxLag();
+            } catch (SQLException e) {
+                log.debug("Replica {} is down: {}", replica.getName(), e.getMessage());
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                log.info("Replica {} is now {}", replica.getName(), healthy ? "used for reads" : "unused, lag " + replica.lag + " s");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    private double lagOf(Connection connection) throws SQLException {
+        if (properties.getLagQuery() == null) {
+            if (!connection.isValid((int) Math.max(1, properties.getConnectionTimeout() / 1000))) {
+                throw new SQLException("The connection is not valid");
+            }
+            return 0;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(properties.getLagQuery())) {
+            return resultSet.next() ? resultSet.getDouble(1) : 0;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    /**
+     * A replica, with its pool and state.
+     */
+    public static final class Replica {
+
+        private final HikariDataSource dataSource;
+
+        private volatile boolean healthy = true;
+
+        private volatile double lag;
+
+        private Counter connections;
+
+        public Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return dataSource.getPoolName();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public double getLag() {
+            return lag;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.jingle.microtest.config;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard used by the current thread, read by {@link ShardRoutingDataSource} when a transaction takes a connection.
+ * <p>
+ * It must be set before the transaction starts: the connection of a running transaction is not changed.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Get the shard of the current thread.
+     *
+     * @return the name of the shard, or {@code null} for the primary database.
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run an action on a shard, and restore the previous shard afterwards.
+     *
+     * @param shard the name of the shard.
+     * @param action the action to run.
+     * @param <T> the type of the result.
+     * @return the result of the action.
+     */
+    public static <T> T callOn(String shard, Supplier<T> action) {
+        String previous = set(shard);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Set the shard of the current thread, which must be restored once done.
+     *
+     * @param shard the name of the shard.
+     * @return the previous shard, to give to {@link #restore(String)}.
+     */
+    public static String set(String shard) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    /**
+     * Restore the shard of the current thread.
+     *
+     * @param previous the shard returned by {@link #set(String)}.
+     */
+    public static void restore(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.jingle.microtest.config;
+
+import com.jingle.microtest.aop.sharding.ShardRoutingAspect;
+import com.jingle.microtest.service.ContentsShardService;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration of the shards holding the contents, enabled by {@code application.sharding.enabled}.
+ * <p>
+ * The data source used by JPA and Liquibase, whether or not it routes to the read replicas, is wrapped in a
+ * {@link ShardRoutingDataSource}, so JPA keeps a single entity manager factory and transaction manager; the shard of
+ * a transaction is the one set in the {@link ShardContext} when it starts. Each shard gets a pool with the settings
+ * of {@code spring.datasource.hikari}, but its own url and credentials, and the schema of the primary database.
+ */
+@Configuration
+@EnableAspectJAutoProxy
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "true")
+public class ShardDataSourceConfiguration {
+
+    private static final String DATA_SOURCE = "dataSource";
+
+    private static final String FAKER_CONTEXT = "faker";
+
+    private final Logger log = LoggerFactory.getLogger(ShardDataSourceConfiguration.class);
+
+    /**
+     * Wrap the data source bean once it is initialized, as it is defined either by Spring Boot or by
+     * {@link ReplicaDataSourceConfiguration}.
+     */
+    @Bean
+    public static BeanPostProcessor shardRoutingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!DATA_SOURCE.equals(beanName) || !(bean instanceof DataSource) || bean instanceof ShardRoutingDataSource) {
+                    return bean;
+                }
+                Binder binder = Binder.get(environment);
+                ApplicationProperties.Sharding properties = binder.bind("application.sharding", ApplicationProperties.Sharding.class)
+                    .orElseGet(ApplicationProperties.Sharding::new);
+                List<HikariDataSource> shards = new ArrayList<>();
+                for (ApplicationProperties.Sharding.Shard shard : properties.getShards()) {
+                    HikariConfig config = binder.bind("spring.datasource.hikari", Bindable.ofInstance(new HikariConfig()))
+                        .orElseGet(HikariConfig::new);
+                    config.setPoolName(shard.getName());
+                    config.setJdbcUrl(shard.getUrl());
+                    config.setUsername(shard.getUsername());
+                    config.setPassword(shard.getPassword());
+                    shards.add(new HikariDataSource(config));
+                }
+                return new ShardRoutingDataSource((DataSource) bean, shards);
+            }
+        };
+    }
+
+    @Bean
+    public ShardRoutingAspect shardRoutingAspect(ContentsShardService contentsShardService) {
+        return new ShardRoutingAspect(contentsShardService);
+    }
+
+    /**
+     * Create or update the schema of the shards, with the changelog of the primary database but without the fake data.
+     */
+    @Bean
+    public SmartInitializingSingleton shardsLiquibase(DataSource dataSource, LiquibaseProperties liquibaseProperties,
+                                                      ResourceLoader resourceLoader) {
+        return () -> {
+            ShardRoutingDataSource shardRoutingDataSource = unwrap(dataSource);
+            String contexts = liquibaseProperties.getContexts() == null ? null
+                : Arrays.stream(liquibaseProperties.getContexts().split(","))
+                    .map(String::trim)
+                    .filter(context -> !FAKER_CONTEXT.equals(context))
+                    .collect(Collectors.joining(","));
+            for (String name : shardRoutingDataSource.getShardNames().subList(1, shardRoutingDataSource.getShardNames().size())) {
+                log.debug("Configuring Liquibase for shard {}", name);
+                SpringLiquibase liquibase = new SpringLiquibase();
+                liquibase.setResourceLoader(resourceLoader);
+                liquibase.setDataSource(shardRoutingDataSource.getShard(name));
+                liquibase.setChangeLog("classpath:config/liquibase/master.xml");
+                liquibase.setContexts(contexts);
+                liquibase.setDefaultSchema(liquibaseProperties.getDefaultSchema());
+                liquibase.setChangeLogParameters(liquibaseProperties.getParameters());
+                liquibase.setShouldRun(liquibaseProperties.isEnabled());
+                try {
+                    liquibase.afterPropertiesSet();
+                } catch (LiquibaseException e) {
+                    throw new IllegalStateException("Could not update the schema of shard " + name, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Record the Hikari metrics of the shard pools, tagged with their names.
+     */
+    @Bean
+    public SmartInitializingSingleton shardsMetrics(DataSource dataSource, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        return () -> meterRegistryProvider.ifAvailable(meterRegistry -> {
+            ShardRoutingDataSource shardRoutingDataSource = unwrap(dataSource);
+            for (String name : shardRoutingDataSource.getShardNames().subList(1, shardRoutingDataSource.getShardNames().size())) {
+                HikariDataSource shard = (HikariDataSource) shardRoutingDataSource.getShard(name);
+                shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            }
+        });
+    }
+
+    private static ShardRoutingDataSource unwrap(DataSource dataSource) {
+        return ShardRoutingDataSource.unwrap(dataSource)
+            .orElseThrow(() -> new IllegalStateException("The data source does not route to the shards"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.jingle.microtest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Data source sending each transaction to the shard set in the {@link ShardContext}, or to the primary database.
+ * <p>
+ * The primary database is the first shard, named {@link #PRIMARY}; it also holds the users and the shard directory.
+ * It may itself route the read-only transactions to its replicas.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = ReplicaRoutingDataSource.PRIMARY;
+
+    private final Map<String, DataSource> shards = new LinkedHashMap<>();
+
+    public ShardRoutingDataSource(DataSource primary, List<HikariDataSource> shards) {
+        this.shards.put(PRIMARY, primary);
+        for (HikariDataSource shard : shards) {
+            if (this.shards.putIfAbsent(shard.getPoolName(), shard) != null) {
+                throw new IllegalArgumentException("Duplicate shard name: " + shard.getPoolName());
+            }
+        }
+        setTargetDataSources(new HashMap<>(this.shards));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Get the shard routing data source wrapped by a data source, if any.
+     *
+     * @param dataSource the data source.
+     * @return the shard routing data source, empty when the sharding is disabled.
+     */
+    public static Optional<ShardRoutingDataSource> unwrap(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(ShardRoutingDataSource.class)
+                ? Optional.of(dataSource.unwrap(ShardRoutingDataSource.class)) : Optional.empty();
+        } catch (SQLException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = ShardContext.current();
+        return shard == null ? PRIMARY : shard;
+    }
+
+    /**
+     * Get the names of the shards, the primary database first.
+     *
+     * @return the names of the shards.
+     */
+    public List<String> getShardNames() {
+        return Collections.unmodifiableList(new ArrayList<>(shards.keySet()));
+    }
+
+    /**
+     * Get the data source of a shard, for work which does not go through JPA.
+     *
+     * @param name the name of the shard.
+     * @return the data source.
+     */
+    public DataSource getShard(String name) {
+        DataSource shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown shard: " + name);
+        }
+        return shard;
+    }
+
+    @Override
+    public void destroy() {
+        // The primary database is a bean of its own, closed by the application context
+        shards.entrySet().stream()
+            .filter(shard -> !PRIMARY.equals(shard.getKey()))
+            .map(shard -> (HikariDataSource) shard.getValue())
+            .forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,140 @@
+package com.jingle.microtest.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wildfly.openssl.OpenSSLProvider;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+
+/**
+ * Security provider of the {@link SSLContext} used by Undertow to terminate TLS.
+ * <p>
+ * Spring Boot creates the server's context with {@code SSLContext.getInstance(server.ssl.protocol)}, so this
+ * provider is registered under a protocol of its own, and its contexts delegate to the OpenSSL engine when its
+ * native library is available, or to JSSE otherwise. Either way, the server session cache is sized and its
+ * timeout set for TLS session resumption.
+ */
+public final class TlsProvider extends Provider {
+
+    public static final String NAME = "Microtest";
+
+    private static final String OPENSSL_PREFIX = "openssl.";
+
+    private static final Logger log = LoggerFactory.getLogger(TlsProvider.class);
+
+    private TlsProvider(String protocol, String engineProtocol, ApplicationProperties.Tls tls) {
+        super(NAME, 1.0, "Microtest TLS, backed by " + engineProtocol);
+        putService(new Service(this, "SSLContext", protocol, TunedSslContextSpi.class.getName(), null, null) {
+
+            @Override
+            public Object newInstance(Object constructorParameter) throws NoSuchAlgorithmException {
+                return new TunedSslContextSpi(SSLContext.getInstance(engineProtocol), tls);
+            }
+        });
+    }
+
+    /**
+     * Register the provider for a TLS protocol.
+     *
+     * @param tls the TLS properties.
+     * @param protocol the protocol configured in {@code server.ssl.protocol}, like {@code TLS}.
+     * @return the protocol to give to Spring Boot instead.
+     */
+    public static synchronized String register(ApplicationProperties.Tls tls, String protocol) {
+        String baseProtocol = protocol.startsWith(NAME + ".") ? protocol.substring(NAME.length() + 1) : protocol;
+        String engineProtocol = tls.isOpenssl() && isOpenSslAvailable(baseProtocol) ? OPENSSL_PREFIX + baseProtocol : baseProtocol;
+        log.info("Terminating TLS with the {} engine", engineProtocol.startsWith(OPENSSL_PREFIX) ? "OpenSSL" : "JSSE");
+        String tunedProtocol = NAME + "." + baseProtocol;
+        Security.removeProvider(NAME);
+        Security.addProvider(new TlsProvider(tunedProtocol, engineProtocol, tls));
+        return tunedProtocol;
+    }
+
+    private static boolean isOpenSslAvailable(String protocol) {
+        try {
+            OpenSSLProvider.register();
+            SSLContext.getInstance(OPENSSL_PREFIX + protocol).init(null, null, null);
+            return true;
+        } catch (GeneralSecurityException | RuntimeException | LinkageError e) {
+            log.warn("OpenSSL is not available, falling back to JSSE: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Context delegating to the context of the engine, which tunes the server session cache once initialized.
+     */
+    private static final class TunedSslContextSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+
+        private final ApplicationProperties.Tls tls;
+
+        private TunedSslContextSpi(SSLContext delegate, ApplicationProperties.Tls tls) {
+            this.delegate = delegate;
+            this.tls = tls;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+            delegate.init(km, tm, sr);
+            SSLSessionContext sessions = delegate.getServerSessionContext();
+            sessions.setSessionCacheSize(tls.getSessionCacheSize());
+            sessions.setSessionTimeout(tls.getSessionTimeout());
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -3,8 +3,12 @@ package com.jingle.microtest.config;
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.JHipsterProperties;
 import io.github.jhipster.web.filter.CachingHttpHeadersFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.undertow.UndertowOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
 import org.springframework.boot.web.server.*;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
@@ -38,9 +42,16 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
 
     private final JHipsterProperties jHipsterProperties;
 
-    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                         ObjectProvider<MeterRegistry> meterRegistry) {
         this.env = env;
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -56,13 +67,15 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
     }
 
     /**
-     * Customize the Servlet engine: Mime types, the document root, the cache.
+     * Customize the Servlet engine: Mime types, the document root, the cache, the compression, TLS.
      */
     @Override
     public void customize(WebServerFactory server) {
         setMimeMappings(server);
         // When running in an IDE or with ./gradlew bootRun, set location of the static web assets.
         setLocationForStaticAssets(server);
+        setCompression(server);
+        setTls(server);
     }
 
     private void setMimeMappings(WebServerFactory server) {
@@ -89,6 +102,42 @@ public class WebConfigurer implements ServletContextInitializer, WebServerFactor
         }
     }
 
+    /**
+     * Compress the responses in Undertow, with the rules of {@link ApplicationProperties.Compression}.
+     * <p>
+     * This replaces Spring Boot's {@code server.compression}, which should stay disabled so that responses are not
+     * encoded twice.
+     */
+    private void setCompression(WebServerFactory server) {
+        ApplicationProperties.Compression compression = applicationProperties.getCompression();
+        if (compression.isEnabled() && server instanceof UndertowServletWebServerFactory) {
+            log.debug("Registering Undertow response compression");
+            ((UndertowServletWebServerFactory) server).addDeploymentInfoCustomizers(deploymentInfo ->
+                deploymentInfo.addInitialHandlerChainWrapper(new CompressionHandlerWrapper(compression, meterRegistry.getIfAvailable())));
+        }
+    }
+
+    /**
+     * Terminate TLS in Undertow with the engine and session resumption settings of {@link ApplicationProperties.Tls}.
+     * <p>
+     * With {@code server.http2.enabled}, HTTP/2 is negotiated with ALPN, by both the OpenSSL and the JSSE engines.
+     */
+    private void setTls(WebServerFactory server) {
+        if (!(server instanceof UndertowServletWebServerFactory)) {
+            return;
+        }
+        UndertowServletWebServerFactory undertow = (UndertowServletWebServerFactory) server;
+        Ssl ssl = undertow.getSsl();
+        if (ssl == null || !ssl.isEnabled()) {
+            return;
+        }
+        ssl.setProtocol(TlsProvider.register(applicationProperties.getTls(), ssl.getProtocol()));
+        if (undertow.getHttp2() != null && undertow.getHttp2().isEnabled()) {
+            // HTTP/2 forbids the CBC cipher suites, which clients may prefer, so the server order is used instead
+            undertow.addBuilderCustomizers(builder -> builder.setSocketOption(UndertowOptions.SSL_USER_CIPHER_SUITES_ORDER, true));
+        }
+    }
+
     /**
      * Resolve path prefix to static resources.
      */
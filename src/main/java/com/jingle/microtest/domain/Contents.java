@@ -3,8 +3,12 @@ package com.jingle.microtest.domain;
 
 import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.jingle.microtest.domain.converter.ContentsValueConverter;
+import com.jingle.microtest.domain.id.SnowflakeIdentifierGenerator;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -19,24 +23,40 @@ import java.time.format.DateTimeFormatter;
 @Entity
 @Table(name = "contents")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+@DynamicUpdate
 public class Contents implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @GeneratedValue(generator = "snowflakeGenerator")
+    @GenericGenerator(name = "snowflakeGenerator", strategy = SnowflakeIdentifierGenerator.STRATEGY)
     private Long id;
 
     @NotNull
     @Column(name = "jhi_value", nullable = false)
+    @Convert(converter = ContentsValueConverter.class)
     private String value;
 
+    /**
+     * The value as it is stored, possibly compressed, read by the queries building {@code ContentsDTO}s so that
+     * the value is only decoded if it is used.
+     */
+    @Column(name = "jhi_value", insertable = false, updatable = false)
+    private byte[] storedValue;
+
     @NotNull
     @Column(name = "created_at", nullable = false)
     private ZonedDateTime createdAt = ZonedDateTime.now();
 
-    @ManyToOne(cascade = CascadeType.MERGE)
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq = 0L;
+
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.MERGE)
     @JsonIgnoreProperties("contents")
     private User userBelongsTo;
 
@@ -75,6 +95,22 @@ public class Contents implements Serializable {
         this.createdAt = createdAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     public User getUserBelongsTo() {
         return userBelongsTo;
     }
@@ -111,6 +147,8 @@ public class Contents implements Serializable {
             "id=" + getId() +
             ", value='" + getValue() + "'" +
             ", createdAt='" + getCreatedAt() + "'" +
+            ", version=" + getVersion() +
+            ", changeSeq=" + getChangeSeq() +
             "}";
     }
 }
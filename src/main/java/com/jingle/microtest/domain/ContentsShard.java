@@ -0,0 +1,106 @@
+package com.jingle.microtest.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+
+/**
+ * The shard holding the contents of a user, stored in the primary database.
+ * <p>
+ * A user being moved to another shard is marked as migrating, and its contents can not be used until the move is over.
+ * The shard holding the rows a move could not delete yet, on the shard the user left or on the target of a failed
+ * move, is kept as the cleanup shard until they are deleted.
+ */
+@Entity
+@Table(name = "contents_shard")
+public class ContentsShard implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @NotNull
+    @Size(max = 50)
+    @Column(name = "shard", length = 50, nullable = false)
+    private String shard;
+
+    @NotNull
+    @Column(name = "migrating", nullable = false)
+    private boolean migrating = false;
+
+    @Size(max = 50)
+    @Column(name = "cleanup_shard", length = 50)
+    private String cleanupShard;
+
+    public ContentsShard() {
+    }
+
+    public ContentsShard(Long userId, String shard) {
+        this.userId = userId;
+        this.shard = shard;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    public void setShard(String shard) {
+        this.shard = shard;
+    }
+
+    public boolean isMigrating() {
+        return migrating;
+    }
+
+    public void setMigrating(boolean migrating) {
+        this.migrating = migrating;
+    }
+
+    public String getCleanupShard() {
+        return cleanupShard;
+    }
+
+    public void setCleanupShard(String cleanupShard) {
+        this.cleanupShard = cleanupShard;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentsShard)) {
+            return false;
+        }
+        return userId != null && userId.equals(((ContentsShard) o).userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsShard{" +
+            "userId=" + getUserId() +
+            ", shard='" + getShard() + "'" +
+            ", migrating='" + isMigrating() + "'" +
+            ", cleanupShard='" + getCleanupShard() + "'" +
+            "}";
+    }
+}
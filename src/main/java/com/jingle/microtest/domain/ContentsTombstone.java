@@ -0,0 +1,81 @@
+package com.jingle.microtest.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * The trace left by a deleted {@link Contents}, so that its deletion can be sent to the clients synchronizing
+ * their copy of the contents.
+ * <p>
+ * It has the id of the deleted content, which is never reused, and the change sequence of its deletion.
+ */
+@Entity
+@Table(name = "contents_tombstone")
+public class ContentsTombstone implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    @NotNull
+    @Column(name = "user_belongs_to_id", nullable = false)
+    private Long ownerId;
+
+    @NotNull
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentsTombstone)) {
+            return false;
+        }
+        return id != null && id.equals(((ContentsTombstone) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsTombstone{" +
+            "id=" + getId() +
+            ", ownerId=" + getOwnerId() +
+            ", changeSeq=" + getChangeSeq() +
+            "}";
+    }
+}
@@ -0,0 +1,195 @@
+package com.jingle.microtest.domain.converter;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encoding of the values of the contents in the database.
+ * <p>
+ * A stored value starts with a flag byte telling how it is encoded. It is followed either by the UTF-8 encoded
+ * value, or by the length of the UTF-8 encoded value on four bytes and the compressed UTF-8 encoded value. A value
+ * is compressed once its UTF-8 encoding reaches the threshold, and only if compressing it saves space.
+ */
+public final class ContentsValueCodec {
+
+    /**
+     * Algorithms compressing the values.
+     */
+    public enum Algorithm {
+        DEFLATE, LZ4
+    }
+
+    static final byte PLAIN = 0;
+
+    static final byte DEFLATE = 1;
+
+    static final byte LZ4 = 2;
+
+    private static final int PLAIN_HEADER = 1;
+
+    private static final int COMPRESSED_HEADER = 5;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final Algorithm algorithm;
+
+    private final int threshold;
+
+    /**
+     * @param algorithm the algorithm compressing the new values, or {@code null} not to compress them.
+     * @param threshold the size of the UTF-8 encoded values from which they are compressed.
+     */
+    public ContentsValueCodec(Algorithm algorithm, int threshold) {
+        this.algorithm = algorithm;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Encode a value to be stored.
+     *
+     * @param value the value.
+     * @return the stored value.
+     */
+    public byte[] encode(String value) {
+        byte[] plain = value.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = null;
+        if (algorithm == Algorithm.DEFLATE && plain.length >= threshold) {
+            compressed = deflate(plain);
+        } else if (algorithm == Algorithm.LZ4 && plain.length >= threshold) {
+            compressed = lz4(plain);
+        }
+        if (compressed != null) {
+            return compressed;
+        }
+        byte[] stored = new byte[PLAIN_HEADER + plain.length];
+        stored[0] = PLAIN;
+        System.arraycopy(plain, 0, stored, PLAIN_HEADER, plain.length);
+        return stored;
+    }
+
+    /**
+     * Decode a stored value, whatever the algorithm it was compressed with.
+     *
+     * @param stored the stored value.
+     * @return the value.
+     * @throws IllegalArgumentException if the stored value is corrupt.
+     */
+    public static String decode(byte[] stored) {
+        if (stored.length == 0 || stored[0] < PLAIN || stored[0] > LZ4) {
+            throw new IllegalArgumentException("Unknown format of stored value");
+        }
+        if (stored[0] == PLAIN) {
+            return new String(stored, PLAIN_HEADER, stored.length - PLAIN_HEADER, StandardCharsets.UTF_8);
+        }
+        if (stored.length < COMPRESSED_HEADER) {
+            throw new IllegalArgumentException("Truncated compressed value");
+        }
+        int length = ((stored[1] & 0xff) << 24) | ((stored[2] & 0xff) << 16) | ((stored[3] & 0xff) << 8) | (stored[4] & 0xff);
+        if (length < 0) {
+            throw new IllegalArgumentException("Corrupt compressed value");
+        }
+        byte[] plain = stored[0] == DEFLATE ? inflate(stored, length) : unLz4(stored, length);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tell whether a stored value would be stored differently if it was written again: if it should now be
+     * compressed, or compressed with another algorithm.
+     * <p>
+     * Values compressed while the compression was enabled are left compressed once it is disabled.
+     *
+     * @param stored the stored value.
+     * @return whether the stored value should be written again.
+     */
+    public boolean isOutdated(byte[] stored) {
+        if (algorithm == null || stored.length == 0) {
+            return false;
+        }
+        if (stored[0] == PLAIN) {
+            return stored.length - PLAIN_HEADER >= threshold;
+        }
+        return stored[0] != (algorithm == Algorithm.DEFLATE ? DEFLATE : LZ4);
+    }
+
+    /**
+     * Compress with Deflate, giving up as soon as the output is not smaller than the plain value would be.
+     */
+    private static byte[] deflate(byte[] plain) {
+        byte[] stored = newCompressed(DEFLATE, plain.length, PLAIN_HEADER + plain.length);
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+            int length = COMPRESSED_HEADER;
+            while (!deflater.finished() && length < stored.length) {
+                length += deflater.deflate(stored, length, stored.length - length);
+            }
+            return deflater.finished() && length < stored.length ? Arrays.copyOf(stored, length) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored, int length) {
+        byte[] plain = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, COMPRESSED_HEADER, stored.length - COMPRESSED_HEADER);
+            int inflated = 0;
+            while (!inflater.finished() && inflated < length) {
+                int count = inflater.inflate(plain, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new IllegalArgumentException("Corrupt compressed value");
+            }
+            return plain;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] lz4(byte[] plain) {
+        LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+        int maxLength = compressor.maxCompressedLength(plain.length);
+        byte[] stored = newCompressed(LZ4, plain.length, COMPRESSED_HEADER + maxLength);
+        int length = COMPRESSED_HEADER + compressor.compress(plain, 0, plain.length, stored, COMPRESSED_HEADER, maxLength);
+        return length < PLAIN_HEADER + plain.length ? Arrays.copyOf(stored, length) : null;
+    }
+
+    private static byte[] unLz4(byte[] stored, int length) {
+        byte[] plain = new byte[length];
+        try {
+            int decompressed = LZ4_FACTORY.safeDecompressor()
+                .decompress(stored, COMPRESSED_HEADER, stored.length - COMPRESSED_HEADER, plain, 0, length);
+            if (decompressed != length) {
+                throw new IllegalArgumentException("Corrupt compressed value");
+            }
+            return plain;
+        } catch (LZ4Exception e) {
+            throw new IllegalArgumentException("Corrupt compressed value", e);
+        }
+    }
+
+    private static byte[] newCompressed(byte flag, int plainLength, int capacity) {
+        byte[] stored = new byte[capacity];
+        stored[0] = flag;
+        stored[1] = (byte) (plainLength >>> 24);
+        stored[2] = (byte) (plainLength >>> 16);
+        stored[3] = (byte) (plainLength >>> 8);
+        stored[4] = (byte) plainLength;
+        return stored;
+    }
+}
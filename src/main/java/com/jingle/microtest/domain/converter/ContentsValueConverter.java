@@ -0,0 +1,30 @@
+package com.jingle.microtest.domain.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Converter storing the values of the contents with the {@link ContentsValueCodec}.
+ * <p>
+ * It is created by Hibernate through the Spring bean factory, which gives it the codec configured from
+ * {@code application.value-compression}.
+ */
+@Converter
+public class ContentsValueConverter implements AttributeConverter<String, byte[]> {
+
+    private final ContentsValueCodec codec;
+
+    public ContentsValueConverter(ContentsValueCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String value) {
+        return value == null ? null : codec.encode(value);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return stored == null ? null : ContentsValueCodec.decode(stored);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * JPA attribute converters.
+ */
+package com.jingle.microtest.domain.converter;
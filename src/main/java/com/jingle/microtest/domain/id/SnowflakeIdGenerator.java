@@ -0,0 +1,131 @@
+package com.jingle.microtest.domain.id;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+/**
+ * Generator of time-ordered 64-bit ids, in the manner of Twitter's Snowflake.
+ * <p>
+ * An id is made of, from the highest to the lowest bits:
+ * <ul>
+ * <li>41 bits of milliseconds since {@link #EPOCH}, which last until 2088;</li>
+ * <li>{@value #NODE_ID_BITS} bits of node id, so that nodes never generate the same id;</li>
+ * <li>{@value #SEQUENCE_BITS} bits of sequence, for the ids generated in the same millisecond.</li>
+ * </ul>
+ * Ids of a node are strictly increasing, and ids of different nodes are sorted by time up to the clock skew between
+ * the nodes. If the clock moves backwards by at most {@code maxClockRegression} milliseconds, for instance when it
+ * is adjusted by NTP, the generator waits for it to catch up; if it moves back further, ids are not generated
+ * at all, since they could collide with ids already generated.
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * Start of the timestamps of the ids, 2019-01-01T00:00:00Z.
+     */
+    public static final long EPOCH = Instant.parse("2019-01-01T00:00:00Z").toEpochMilli();
+
+    public static final int NODE_ID_BITS = 10;
+
+    public static final int SEQUENCE_BITS = 12;
+
+    public static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+
+    private static final int MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    private final long maxClockRegression;
+
+    private final LongSupplier clock;
+
+    private long lastTimestamp = -1L;
+
+    private long sequence;
+
+    public SnowflakeIdGenerator(int nodeId, long maxClockRegression) {
+        this(nodeId, maxClockRegression, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(int nodeId, long maxClockRegression, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("The node id must be between 0 and " + MAX_NODE_ID + ", not " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.maxClockRegression = maxClockRegression;
+        this.clock = clock;
+    }
+
+    /**
+     * Derive a node id from the lowest bits of an IPv4 address, which are distinct for the hosts of a /22 subnet.
+     * <p>
+     * Other addresses are hashed, so their node ids may collide: configure the node ids explicitly in that case.
+     *
+     * @param address the address of the node.
+     * @return the node id.
+     */
+    public static int nodeIdOf(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return ByteBuffer.wrap(bytes).getInt() & MAX_NODE_ID;
+        }
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash & MAX_NODE_ID;
+    }
+
+    public int getNodeId() {
+        return (int) nodeId;
+    }
+
+    /**
+     * Generate a new id.
+     *
+     * @return the id, greater than all the ids previously generated by this generator.
+     * @throws IllegalStateException if the clock moved backwards by more than {@code maxClockRegression}.
+     */
+    public synchronized long nextId() {
+        long timestamp = clock.getAsLong();
+        if (timestamp < lastTimestamp) {
+            timestamp = waitForClock(timestamp);
+        }
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // All the ids of this millisecond are used
+                while (timestamp <= lastTimestamp) {
+                    Thread.yield();
+                    timestamp = clock.getAsLong();
+                }
+            }
+        } else {
+            sequence = 0;
+        }
+        if (timestamp < EPOCH) {
+            throw new IllegalStateException("The clock is before " + Instant.ofEpochMilli(EPOCH));
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_ID_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private long waitForClock(long timestamp) {
+        long regression = lastTimestamp - timestamp;
+        if (regression > maxClockRegression) {
+            throw new IllegalStateException("The clock moved backwards by " + regression + " ms, refusing to generate ids");
+        }
+        while (timestamp < lastTimestamp) {
+            try {
+                Thread.sleep(lastTimestamp - timestamp);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the clock to catch up", e);
+            }
+            timestamp = clock.getAsLong();
+        }
+        return timestamp;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jingle.microtest.domain.id;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Hibernate generator of {@link SnowflakeIdGenerator Snowflake} ids, which are generated in-process, without any
+ * database round trip.
+ * <p>
+ * To use it for an entity, instead of the {@code sequence_generator} sequence:
+ * <pre>
+ * &#64;Id
+ * &#64;GeneratedValue(generator = "snowflakeGenerator")
+ * &#64;GenericGenerator(name = "snowflakeGenerator", strategy = SnowflakeIdentifierGenerator.STRATEGY)
+ * private Long id;
+ * </pre>
+ * The node id is read from the {@value #NODE_ID} setting, set from {@code application.id-generator.node-id}; every
+ * node must have its own. Without it, the node id is derived from the address of the host.
+ */
+public class SnowflakeIdentifierGenerator implements IdentifierGenerator, Configurable {
+
+    public static final String STRATEGY = "com.jingle.microtest.domain.id.SnowflakeIdentifierGenerator";
+
+    public static final String NODE_ID = "microtest.id.snowflake.node_id";
+
+    public static final String MAX_CLOCK_REGRESSION = "microtest.id.snowflake.max_clock_regression";
+
+    private static final long DEFAULT_MAX_CLOCK_REGRESSION = 10;
+
+    private final Logger log = LoggerFactory.getLogger(SnowflakeIdentifierGenerator.class);
+
+    private SnowflakeIdGenerator generator;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        if (!Long.class.equals(type.getReturnedClass())) {
+            throw new MappingException("Snowflake ids are Long, not " + type.getReturnedClass().getName());
+        }
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        Object nodeId = params.containsKey(NODE_ID) ? params.get(NODE_ID) : settings.get(NODE_ID);
+        Object maxClockRegression = params.containsKey(MAX_CLOCK_REGRESSION)
+            ? params.get(MAX_CLOCK_REGRESSION) : settings.get(MAX_CLOCK_REGRESSION);
+        try {
+            generator = new SnowflakeIdGenerator(
+                nodeId != null ? Integer.parseInt(nodeId.toString()) : defaultNodeId(),
+                maxClockRegression != null ? Long.parseLong(maxClockRegression.toString()) : DEFAULT_MAX_CLOCK_REGRESSION);
+        } catch (IllegalArgumentException e) {
+            throw new MappingException("Invalid Snowflake id generator settings: " + e.getMessage(), e);
+        }
+    }
+
+    private int defaultNodeId() {
+        try {
+            int nodeId = SnowflakeIdGenerator.nodeIdOf(InetAddress.getLocalHost());
+            log.warn("No Snowflake node id is configured, using {} derived from the host address", nodeId);
+            return nodeId;
+        } catch (UnknownHostException e) {
+            throw new MappingException("No Snowflake node id is configured, and the host address is unknown", e);
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        try {
+            return generator.nextId();
+        } catch (IllegalStateException e) {
+            throw new IdentifierGenerationException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Hibernate identifier generators.
+ */
+package com.jingle.microtest.domain.id;
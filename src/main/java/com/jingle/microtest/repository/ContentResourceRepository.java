@@ -1,10 +1,18 @@
 package com.jingle.microtest.repository;
 
 import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Spring Data  repository for the Contents entity.
@@ -13,7 +21,265 @@ import java.util.List;
 @Repository
 public interface ContentResourceRepository extends JpaRepository<Contents, Long> {
 
+    /**
+     * Number of rows fetched per round trip when streaming contents.
+     */
+    int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Sub-query resolving the id of the owner from its login, so that bulk statements stay a single round trip.
+     */
+    String OWNER_ID_BY_LOGIN = "(select owner.id from User owner where owner.login = :login)";
+
+    /**
+     * Constructor expression projecting a content and the login of its owner, joined as {@code owner}.
+     */
+    String SELECT_CONTENTS_DTO = "select new com.jingle.microtest.service.dto.ContentsDTO(" +
+        "contents.id, contents.storedValue, contents.createdAt, owner.login, contents.version) " +
+        "from Contents contents join contents.userBelongsTo owner ";
+
+    /**
+     * Same as {@link #SELECT_CONTENTS_DTO}, without the value of the content, for clients which do not need it.
+     */
+    String SELECT_CONTENTS_SUMMARY_DTO = "select new com.jingle.microtest.service.dto.ContentsDTO(" +
+        "contents.id, contents.createdAt, owner.login, contents.version) " +
+        "from Contents contents join contents.userBelongsTo owner ";
+
+    /**
+     * Same as {@link #SELECT_CONTENTS_DTO}, with the change sequence of the content.
+     */
+    String SELECT_CONTENTS_CHANGE_DTO = "select new com.jingle.microtest.service.dto.ContentsDTO(" +
+        "contents.id, contents.storedValue, contents.createdAt, owner.login, contents.version, contents.changeSeq) " +
+        "from Contents contents join contents.userBelongsTo owner ";
+
     @Query("select userResource from Contents userResource where userResource.userBelongsTo.login = ?#{principal.username}")
     List<Contents> findByUserBelongsToIsCurrentUser();
 
+    /**
+     * Get all the contents owned by a user, using the {@code (user_belongs_to_id, created_at)} index.
+     * <p>
+     * Rows are projected to {@link ContentsDTO}, so the owner is neither loaded nor managed.
+     *
+     * @param login the login of the owner.
+     * @return the list of contents, oldest first.
+     */
+    @Query(SELECT_CONTENTS_DTO + "where owner.login = :login order by contents.createdAt asc, contents.id asc")
+    List<ContentsDTO> findAllByOwnerLogin(@Param("login") String login);
+
+    /**
+     * Get the first page of the contents owned by a user.
+     *
+     * @param login the login of the owner.
+     * @param pageable the page size, the offset is expected to be 0.
+     * @return the list of contents, oldest first.
+     */
+    @Query(SELECT_CONTENTS_DTO + "where owner.login = :login order by contents.createdAt asc, contents.id asc")
+    List<ContentsDTO> findAllByOwnerLogin(@Param("login") String login, Pageable pageable);
+
+    /**
+     * Get the page of the contents owned by a user which starts right after the {@code (createdAt, id)} position.
+     * <p>
+     * This is a keyset seek on the {@code (user_belongs_to_id, created_at)} index, so its cost does not depend on
+     * how many rows come before the position.
+     *
+     * @param login the login of the owner.
+     * @param createdAt the creation date of the last content of the previous page.
+     * @param id the id of the last content of the previous page.
+     * @param pageable the page size, the offset is expected to be 0.
+     * @return the list of contents, oldest first.
+     */
+    @Query(SELECT_CONTENTS_DTO + "where owner.login = :login " +
+        "and (contents.createdAt > :createdAt or (contents.createdAt = :createdAt and contents.id > :id)) " +
+        "order by contents.createdAt asc, contents.id asc")
+    List<ContentsDTO> findAllByOwnerLoginAfter(@Param("login") String login, @Param("createdAt") ZonedDateTime createdAt,
+                                               @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Same as {@link #findAllByOwnerLogin(String, Pageable)}, without reading the values.
+     *
+     * @param login the login of the owner.
+     * @param pageable the page size, the offset is expected to be 0.
+     * @return the list of contents without their value, oldest first.
+     */
+    @Query(SELECT_CONTENTS_SUMMARY_DTO + "where owner.login = :login order by contents.createdAt asc, contents.id asc")
+    List<ContentsDTO> findAllSummariesByOwnerLogin(@Param("login") String login, Pageable pageable);
+
+    /**
+     * Same as {@link #findAllByOwnerLoginAfter(String, ZonedDateTime, Long, Pageable)}, without reading the values.
+     *
+     * @param login the login of the owner.
+     * @param createdAt the creation date of the last content of the previous page.
+     * @param id the id of the last content of the previous page.
+     * @param pageable the page size, the offset is expected to be 0.
+     * @return the list of contents without their value, oldest first.
+     */
+    @Query(SELECT_CONTENTS_SUMMARY_DTO + "where owner.login = :login " +
+        "and (contents.createdAt > :createdAt or (contents.createdAt = :createdAt and contents.id > :id)) " +
+        "order by contents.createdAt asc, contents.id asc")
+    List<ContentsDTO> findAllSummariesByOwnerLoginAfter(@Param("login") String login, @Param("createdAt") ZonedDateTime createdAt,
+                                                        @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Get one content, if it is owned by the given user.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return the content, or an empty {@link Optional} if it does not exist or belongs to another user.
+     */
+    @Query(SELECT_CONTENTS_DTO + "where contents.id = :id and owner.login = :login")
+    Optional<ContentsDTO> findOneByIdAndOwnerLogin(@Param("id") Long id, @Param("login") String login);
+
+    /**
+     * Get the contents with the given ids which are owned by a user.
+     *
+     * @param ids the ids of the contents.
+     * @param login the login of the owner.
+     * @return the list of contents, in no particular order.
+     */
+    @Query(SELECT_CONTENTS_DTO + "where contents.id in :ids and owner.login = :login")
+    List<ContentsDTO> findAllByIdInAndOwnerLogin(@Param("ids") Collection<Long> ids, @Param("login") String login);
+
+    /**
+     * Get one content entity, if it is owned by the given user.
+     * <p>
+     * The owner is checked through its id, so it is not loaded.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return the entity, or an empty {@link Optional} if it does not exist or belongs to another user.
+     */
+    @Query("select contents from Contents contents where contents.id = :id and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    Optional<Contents> findEntityByIdAndOwnerLogin(@Param("id") Long id, @Param("login") String login);
+
+    /**
+     * Get the contents of a user changed after a position, ordered by {@code (changeSeq, id)}.
+     *
+     * @param login the login of the owner.
+     * @param changeSeq the change sequence of the position.
+     * @param id the id of the position.
+     * @param pageable the maximum number of contents to read.
+     * @return the list of contents, with their change sequence.
+     */
+    @Query(SELECT_CONTENTS_CHANGE_DTO + "where owner.login = :login " +
+        "and (contents.changeSeq > :changeSeq or (contents.changeSeq = :changeSeq and contents.id > :id)) " +
+        "order by contents.changeSeq asc, contents.id asc")
+    List<ContentsDTO> findAllByOwnerLoginChangedAfter(@Param("login") String login, @Param("changeSeq") Long changeSeq,
+                                                      @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Stream all the contents owned by a user through a forward-only cursor.
+     * <p>
+     * Rows are fetched {@link #STREAM_FETCH_SIZE} at a time and projected to {@link ContentsDTO}, so nothing is
+     * kept in the persistence context. The stream must be consumed and closed inside a transaction.
+     *
+     * @param login the login of the owner.
+     * @return the stream of contents, oldest first.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(SELECT_CONTENTS_DTO + "where owner.login = :login order by contents.createdAt asc, contents.id asc")
+    Stream<ContentsDTO> streamAllByOwnerLogin(@Param("login") String login);
+
+    /**
+     * Same as {@link #streamAllByOwnerLogin(String)}, for the contents of all the users.
+     *
+     * @return the stream of contents, by id.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(SELECT_CONTENTS_DTO + "order by contents.id asc")
+    Stream<ContentsDTO> streamAll();
+
+    /*
+     * Bulk statements below run as a single SQL statement and never load the entities. Hibernate invalidates
+     * the Contents second-level cache region, and the collection regions mapped on the contents table, when
+     * they are executed. Updates are "versioned", so they increment the version used as ETag, and set the change
+     * sequence read by the clients synchronizing their contents. Deletes must be preceded by the insertion of the
+     * tombstones, see {@link ContentsTombstoneRepository}.
+     */
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Contents contents where contents.id = :id and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int deleteByIdAndOwnerLogin(@Param("id") Long id, @Param("login") String login);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Contents contents set contents.value = :value, contents.createdAt = :createdAt, " +
+        "contents.changeSeq = :changeSeq " +
+        "where contents.id = :id and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int updateByIdAndOwnerLogin(@Param("id") Long id, @Param("login") String login, @Param("value") String value,
+                                @Param("createdAt") ZonedDateTime createdAt, @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Contents contents set contents.value = :value, contents.createdAt = :createdAt, " +
+        "contents.changeSeq = :changeSeq " +
+        "where contents.id = :id and contents.version = :version and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int updateByIdAndVersionAndOwnerLogin(@Param("id") Long id, @Param("version") Long version, @Param("login") String login,
+                                          @Param("value") String value, @Param("createdAt") ZonedDateTime createdAt,
+                                          @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Contents contents where contents.id in :ids and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int deleteAllByIdInAndOwnerLogin(@Param("ids") Collection<Long> ids, @Param("login") String login);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Contents contents where contents.createdAt >= :from and contents.createdAt < :to " +
+        "and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int deleteAllByCreatedAtBetweenAndOwnerLogin(@Param("from") ZonedDateTime from, @Param("to") ZonedDateTime to,
+                                                 @Param("login") String login);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Contents contents set contents.value = :value, contents.changeSeq = :changeSeq " +
+        "where contents.id in :ids and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int updateValueByIdInAndOwnerLogin(@Param("value") String value, @Param("ids") Collection<Long> ids,
+                                       @Param("login") String login, @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update versioned Contents contents set contents.value = :value, contents.changeSeq = :changeSeq " +
+        "where contents.createdAt >= :from and contents.createdAt < :to and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int updateValueByCreatedAtBetweenAndOwnerLogin(@Param("value") String value, @Param("from") ZonedDateTime from,
+                                                   @Param("to") ZonedDateTime to, @Param("login") String login,
+                                                   @Param("changeSeq") Long changeSeq);
+
+
+    /**
+     * Get the id of a user, without going through the user caches, which must not hold the owners copied to the shards.
+     *
+     * @param login the login of the user.
+     * @return the id of the user.
+     */
+    @Query("select owner.id from User owner where owner.login = :login")
+    Optional<Long> findOwnerIdByLogin(@Param("login") String login);
+
+    boolean existsByUserBelongsToId(Long ownerId);
+
+    /**
+     * Get the id of the owner of a content.
+     *
+     * @param id the id of the content.
+     * @return the id of the owner, or nothing if the content does not exist or has no owner.
+     */
+    @Query("select contents.userBelongsTo.id from Contents contents where contents.id = :id")
+    List<Long> findAllOwnerIdsById(@Param("id") Long id);
+
+    /**
+     * Get the ids of the contents which exist among the given ones.
+     *
+     * @param ids the ids of the contents.
+     * @return the ids of the existing contents, in no particular order.
+     */
+    @Query("select contents.id from Contents contents where contents.id in :ids")
+    List<Long> findAllExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Get the ids of the contents owned by a user among the given ones.
+     *
+     * @param ids the ids of the contents.
+     * @param login the login of the owner.
+     * @return the ids of the contents of the user, in no particular order.
+     */
+    @Query("select contents.id from Contents contents where contents.id in :ids and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    List<Long> findAllIdsByIdInAndOwnerLogin(@Param("ids") Collection<Long> ids, @Param("login") String login);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Contents contents where contents.userBelongsTo.id = :ownerId")
+    int deleteAllByOwnerId(@Param("ownerId") Long ownerId);
+
 }
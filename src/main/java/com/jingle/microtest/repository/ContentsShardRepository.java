@@ -0,0 +1,89 @@
+package com.jingle.microtest.repository;
+
+import com.jingle.microtest.domain.ContentsShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data  repository for the ContentsShard entity, the shard directory.
+ * <p>
+ * It is only read from the primary database. It is cached by {@link com.jingle.microtest.service.ContentsShardService},
+ * through which the migrations must be started and ended.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface ContentsShardRepository extends JpaRepository<ContentsShard, Long> {
+
+    /**
+     * Get the users owning contents in the current database, but missing from the shard directory: their contents
+     * were created before the sharding was enabled.
+     *
+     * @return the ids of the users.
+     */
+    @Query("select distinct contents.userBelongsTo.id from Contents contents " +
+        "where not exists (select directory from ContentsShard directory where directory.userId = contents.userBelongsTo.id)")
+    List<Long> findAllUnassignedOwnerIds();
+
+    /**
+     * Mark a user as migrating, unless it is no longer on the given shard or is already migrating.
+     *
+     * @param userId the id of the user.
+     * @param shard the shard the user is expected to be on.
+     * @return the number of users marked, 0 or 1.
+     */
+    @Modifying
+    @Query("update ContentsShard directory set directory.migrating = true " +
+        "where directory.userId = :userId and directory.shard = :shard and directory.migrating = false")
+    int startMigration(@Param("userId") Long userId, @Param("shard") String shard);
+
+    /**
+     * Place a migrating user on a shard, and record the shard holding the rows the move left.
+     *
+     * @param userId the id of the user.
+     * @param shard the new shard of the user.
+     * @param cleanupShard the shard holding rows to delete, if any.
+     * @return the number of users placed, 0 or 1.
+     */
+    @Modifying
+    @Query("update ContentsShard directory set directory.shard = :shard, directory.migrating = false, " +
+        "directory.cleanupShard = :cleanupShard where directory.userId = :userId")
+    int finishMigration(@Param("userId") Long userId, @Param("shard") String shard, @Param("cleanupShard") String cleanupShard);
+
+    /**
+     * Leave a migrating user on its shard, and record the shard holding the rows the move left.
+     *
+     * @param userId the id of the user.
+     * @param cleanupShard the shard holding rows to delete, if any.
+     * @return the number of users left, 0 or 1.
+     */
+    @Modifying
+    @Query("update ContentsShard directory set directory.migrating = false, directory.cleanupShard = :cleanupShard " +
+        "where directory.userId = :userId")
+    int abortMigration(@Param("userId") Long userId, @Param("cleanupShard") String cleanupShard);
+
+    /**
+     * Get the users whose moves left rows to delete.
+     *
+     * @return the ids of the users.
+     */
+    @Query("select directory.userId from ContentsShard directory where directory.cleanupShard is not null")
+    List<Long> findAllUserIdsToCleanUp();
+
+    /**
+     * Get the entry of a user, and lock it until the end of the transaction.
+     *
+     * @param userId the id of the user.
+     * @return the entry, if any.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select directory from ContentsShard directory where directory.userId = :userId")
+    Optional<ContentsShard> findOneForUpdate(@Param("userId") Long userId);
+}
@@ -0,0 +1,68 @@
+package com.jingle.microtest.repository;
+
+import com.jingle.microtest.domain.ContentsTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static com.jingle.microtest.repository.ContentResourceRepository.OWNER_ID_BY_LOGIN;
+
+/**
+ * Spring Data  repository for the ContentsTombstone entity.
+ * <p>
+ * Tombstones of a bulk delete are copied from the contents by an {@code INSERT ... SELECT} statement, which must
+ * run before the delete itself, in the same transaction.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface ContentsTombstoneRepository extends JpaRepository<ContentsTombstone, Long> {
+
+    /**
+     * Get the tombstones of a user after a position, ordered by {@code (changeSeq, id)}.
+     *
+     * @param login the login of the owner.
+     * @param changeSeq the change sequence of the position.
+     * @param id the id of the position.
+     * @param pageable the maximum number of tombstones to read.
+     * @return the list of tombstones.
+     */
+    @Query("select tombstone from ContentsTombstone tombstone where tombstone.ownerId = " + OWNER_ID_BY_LOGIN + " " +
+        "and (tombstone.changeSeq > :changeSeq or (tombstone.changeSeq = :changeSeq and tombstone.id > :id)) " +
+        "order by tombstone.changeSeq asc, tombstone.id asc")
+    List<ContentsTombstone> findAllByOwnerLoginAfter(@Param("login") String login, @Param("changeSeq") Long changeSeq,
+                                                     @Param("id") Long id, Pageable pageable);
+
+    @Modifying(flushAutomatically = true)
+    @Query("insert into ContentsTombstone (id, ownerId, changeSeq) select :id, owner.id, :changeSeq " +
+        "from User owner where owner.login = :login")
+    int insertByIdAndOwnerLogin(@Param("id") Long id, @Param("login") String login, @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true)
+    @Query("insert into ContentsTombstone (id, ownerId, changeSeq) select contents.id, contents.userBelongsTo.id, :changeSeq " +
+        "from Contents contents where contents.id = :id")
+    int insertById(@Param("id") Long id, @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true)
+    @Query("insert into ContentsTombstone (id, ownerId, changeSeq) select contents.id, contents.userBelongsTo.id, :changeSeq " +
+        "from Contents contents where contents.id in :ids and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int insertAllByIdInAndOwnerLogin(@Param("ids") Collection<Long> ids, @Param("login") String login,
+                                     @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true)
+    @Query("insert into ContentsTombstone (id, ownerId, changeSeq) select contents.id, contents.userBelongsTo.id, :changeSeq " +
+        "from Contents contents where contents.createdAt >= :from and contents.createdAt < :to " +
+        "and contents.userBelongsTo.id = " + OWNER_ID_BY_LOGIN)
+    int insertAllByCreatedAtBetweenAndOwnerLogin(@Param("from") ZonedDateTime from, @Param("to") ZonedDateTime to,
+                                                 @Param("login") String login, @Param("changeSeq") Long changeSeq);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from ContentsTombstone tombstone where tombstone.ownerId = :ownerId")
+    int deleteAllByOwnerId(@Param("ownerId") Long ownerId);
+}
@@ -1,9 +1,17 @@
 package com.jingle.microtest.service;
 
 import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.dto.ContentsChangeToken;
+import com.jingle.microtest.service.dto.ContentsChangesDTO;
+import com.jingle.microtest.service.dto.ContentsCursor;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import org.springframework.data.domain.Slice;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Service Interface for managing {@link Contents}.
@@ -18,6 +26,14 @@ public interface ContentResourceService {
      */
     Contents save(Contents contents);
 
+    /**
+     * Save several contents in a single transaction.
+     *
+     * @param contents the entities to save.
+     * @return the persisted entities, in the same order.
+     */
+    List<Contents> saveAll(List<Contents> contents);
+
     /**
      * Get all the contents.
      *
@@ -25,6 +41,52 @@ public interface ContentResourceService {
      */
     List<Contents> findAll();
 
+    /**
+     * Get all the contents owned by a user.
+     *
+     * @param login the login of the owner.
+     * @return the list of contents.
+     */
+    List<ContentsDTO> findAllByOwner(String login);
+
+    /**
+     * Get a page of the contents owned by a user, ordered by creation date.
+     *
+     * @param login the login of the owner.
+     * @param after the position to start after, or {@code null} for the first page.
+     * @param size the maximum number of contents to return.
+     * @param withValue whether the values must be read; if not, the contents are returned without value.
+     * @return the slice of contents, which tells whether a next page exists.
+     */
+    Slice<ContentsDTO> findAllByOwner(String login, ContentsCursor after, int size, boolean withValue);
+
+    /**
+     * Get the contents with the given ids, if they are owned by the given user.
+     *
+     * @param login the login of the owner.
+     * @param ids the ids of the contents.
+     * @return the contents found, in the order of the ids. Unknown ids and contents of other users are skipped.
+     */
+    List<ContentsDTO> findAllByOwner(String login, Collection<Long> ids);
+
+    /**
+     * Get the contents owned by a user created, updated or deleted after a synchronization token.
+     *
+     * @param login the login of the owner.
+     * @param since the position to start after, {@link ContentsChangeToken#START} for a full synchronization.
+     * @param size the maximum number of changes to return.
+     * @return the changes, and the token to start after on the next synchronization.
+     */
+    ContentsChangesDTO findChangesByOwner(String login, ContentsChangeToken since, int size);
+
+    /**
+     * Process all the contents owned by a user one at a time, without holding them all in memory.
+     *
+     * @param login the login of the owner.
+     * @param action the action to run on each content, oldest first.
+     */
+    void forEachByOwner(String login, Consumer<ContentsDTO> action);
+
 
     /**
      * Get the "id" content.
@@ -34,10 +96,90 @@ public interface ContentResourceService {
      */
     Optional<Contents> findOne(Long id);
 
+    /**
+     * Get the "id" content, if it is owned by the given user.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return the content.
+     */
+    Optional<ContentsDTO> findOneByOwner(Long id, String login);
+
     /**
      * Delete the "id" content.
      *
      * @param id the id of the entity.
      */
     void delete(Long id);
+
+    /**
+     * Update a content, if it is owned by the given user.
+     *
+     * @param contentsDTO the content to update.
+     * @param login the login of the owner.
+     * @param expectedVersion the version the content must still have, or {@code null} to update it whatever its version.
+     * @return true if the content was updated, false if it does not exist, belongs to another user or has another version.
+     */
+    boolean updateByOwner(ContentsDTO contentsDTO, String login, Long expectedVersion);
+
+    /**
+     * Partially update a content, if it is owned by the given user.
+     * <p>
+     * Only the non-null fields of the DTO are applied.
+     *
+     * @param id the id of the content.
+     * @param contentsDTO the fields to change.
+     * @param login the login of the owner.
+     * @return the updated content, or an empty {@link Optional} if it does not exist or belongs to another user.
+     */
+    Optional<ContentsDTO> partialUpdateByOwner(Long id, ContentsDTO contentsDTO, String login);
+
+    /**
+     * Delete the "id" content, if it is owned by the given user.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return true if the content was deleted, false if it does not exist or belongs to another user.
+     */
+    boolean deleteByOwner(Long id, String login);
+
+    /**
+     * Delete the contents of a user with the given ids.
+     *
+     * @param login the login of the owner.
+     * @param ids the ids of the entities.
+     * @return the number of deleted entities.
+     */
+    int deleteAllByOwner(String login, Collection<Long> ids);
+
+    /**
+     * Delete the contents of a user created in the {@code [from, to)} range.
+     *
+     * @param login the login of the owner.
+     * @param from the start of the range, inclusive.
+     * @param to the end of the range, exclusive.
+     * @return the number of deleted entities.
+     */
+    int deleteAllByOwner(String login, ZonedDateTime from, ZonedDateTime to);
+
+    /**
+     * Set the value of the contents of a user with the given ids.
+     *
+     * @param login the login of the owner.
+     * @param ids the ids of the entities.
+     * @param value the new value.
+     * @return the number of updated entities.
+     */
+    int updateValueByOwner(String login, Collection<Long> ids, String value);
+
+    /**
+     * Set the value of the contents of a user created in the {@code [from, to)} range.
+     *
+     * @param login the login of the owner.
+     * @param from the start of the range, inclusive.
+     * @param to the end of the range, exclusive.
+     * @param value the new value.
+     * @return the number of updated entities.
+     */
+    int updateValueByOwner(String login, ZonedDateTime from, ZonedDateTime to, String value);
 }
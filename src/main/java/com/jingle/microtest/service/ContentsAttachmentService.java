@@ -0,0 +1,508 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.service.dto.ContentsAttachmentDTO;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import com.jingle.microtest.web.rest.errors.BadRequestAlertException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Service storing the binary attachments of the contents, in a local directory.
+ * <p>
+ * The attachment of a content is split into chunk files of {@link ApplicationProperties.Attachments#getChunkSize()},
+ * named after the SHA-256 digest of the attachment, next to a metadata file. An upload is streamed to new chunk
+ * files, through a small buffer, and becomes visible when its metadata file replaces the previous one; so readers
+ * never see a partial attachment, and an attachment is never held in memory.
+ * <p>
+ * Attachments are deleted with their content. The ones of contents deleted by date range, or by another node, are
+ * purged regularly.
+ */
+@Service
+public class ContentsAttachmentService {
+
+    private static final String METADATA = "attachment.properties";
+
+    private static final String UPLOAD_PREFIX = "upload-";
+
+    /**
+     * Property of the metadata holding the login of the owner of the content.
+     */
+    private static final String OWNER = "owner";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    /**
+     * Age after which the files of an upload which did not complete are deleted.
+     */
+    private static final Duration UPLOAD_TIME_TO_LIVE = Duration.ofDays(1);
+
+    private final Logger log = LoggerFactory.getLogger(ContentsAttachmentService.class);
+
+    private final ContentResourceService contentResourceService;
+
+    private final ContentsShardService contentsShardService;
+
+    private final ContentResourceRepository contentResourceRepository;
+
+    private final Path root;
+
+    private final long chunkSize;
+
+    /**
+     * Locks serializing the publication and the deletion of the attachments, by content id.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ContentsAttachmentService(ContentResourceService contentResourceService, ContentsShardService contentsShardService,
+                                     ContentResourceRepository contentResourceRepository,
+                                     ApplicationProperties applicationProperties) throws IOException {
+        this.contentResourceService = contentResourceService;
+        this.contentsShardService = contentsShardService;
+        this.contentResourceRepository = contentResourceRepository;
+        this.root = Files.createDirectories(Paths.get(applicationProperties.getAttachments().getDirectory()));
+        this.chunkSize = applicationProperties.getAttachments().getChunkSize().toBytes();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Store the attachment of a content owned by a user, replacing the previous one.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @param fileName the name of the attached file.
+     * @param contentType the media type of the attachment.
+     * @param content the attachment, read to its end but not closed.
+     * @param expectedSha256 the SHA-256 digest the attachment must have, or {@code null} not to check it.
+     * @return the stored attachment, or an empty {@link Optional} if the content does not exist or belongs to another user.
+     * @throws BadRequestAlertException if the attachment does not have the expected digest.
+     * @throws IOException if the attachment could not be read or written.
+     */
+    public Optional<ContentsAttachmentDTO> store(Long id, String login, String fileName, String contentType, InputStream content,
+                                                 byte[] expectedSha256) throws IOException {
+        log.debug("Request to store the attachment of Contents : {}", id);
+        if (!contentResourceService.findOneByOwner(id, login).isPresent()) {
+            return Optional.empty();
+        }
+        Path directory = Files.createDirectories(directoryOf(id));
+        String upload = UPLOAD_PREFIX + UUID.randomUUID() + "-";
+        MessageDigest digest = sha256();
+        List<Path> chunks = new ArrayList<>();
+        long size = 0;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            FileChannel chunk = null;
+            long chunkWritten = chunkSize;
+            try {
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    int offset = 0;
+                    while (offset < read) {
+                        if (chunkWritten == chunkSize) {
+                            if (chunk != null) {
+                                chunk.force(false);
+                                chunk.close();
+                            }
+                            Path path = directory.resolve(upload + chunks.size());
+                            chunks.add(path);
+                            chunk = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                            chunkWritten = 0;
+                        }
+                        int length = (int) Math.min(read - offset, chunkSize - chunkWritten);
+                        ByteBuffer bytes = ByteBuffer.wrap(buffer, offset, length);
+                        while (bytes.hasRemaining()) {
+                            chunk.write(bytes);
+                        }
+                        offset += length;
+                        chunkWritten += length;
+                        size += length;
+                    }
+                }
+                if (chunk != null) {
+                    chunk.force(false);
+                }
+            } finally {
+                if (chunk != null) {
+                    chunk.close();
+                }
+            }
+            byte[] sha256 = digest.digest();
+            if (expectedSha256 != null && !MessageDigest.isEqual(sha256, expectedSha256)) {
+                throw new BadRequestAlertException("The attachment does not match its digest", "contentsAttachment", "digestmismatch");
+            }
+            ContentsAttachmentDTO attachment = new ContentsAttachmentDTO();
+            attachment.setId(id);
+            attachment.setFileName(fileName);
+            attachment.setContentType(contentType);
+            attachment.setSize(size);
+            attachment.setSha256(String.format("%064x", new BigInteger(1, sha256)));
+            attachment.setCreatedAt(ZonedDateTime.now(ZoneOffset.UTC));
+            attachment.setChunkSize(chunkSize);
+            Path metadata = directory.resolve(upload + METADATA);
+            try (OutputStream output = Files.newOutputStream(metadata, StandardOpenOption.CREATE_NEW)) {
+                Properties properties = toProperties(attachment);
+                properties.setProperty(OWNER, StringUtils.lowerCase(login, Locale.ENGLISH));
+                properties.store(output, null);
+            }
+            publish(directory, attachment, chunks, metadata);
+            log.debug("Stored attachment : {}", attachment);
+            return Optional.of(attachment);
+        } finally {
+            for (Path path : chunks) {
+                Files.deleteIfExists(path);
+            }
+            Files.deleteIfExists(directory.resolve(upload + METADATA));
+        }
+    }
+
+    /**
+     * Move the chunks and the metadata of an upload to their final names, and delete the previous attachment.
+     */
+    private void publish(Path directory, ContentsAttachmentDTO attachment, List<Path> chunks, Path metadata) throws IOException {
+        synchronized (lockOf(attachment.getId())) {
+            Set<Path> kept = new HashSet<>();
+            for (int index = 0; index < chunks.size(); index++) {
+                Path chunk = chunkOf(attachment, index);
+                Files.move(chunks.get(index), chunk, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                kept.add(chunk);
+            }
+            Path published = directory.resolve(METADATA);
+            Files.move(metadata, published, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            kept.add(published);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (!kept.contains(file) && !file.getFileName().toString().startsWith(UPLOAD_PREFIX)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the attachment of a content owned by a user.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return the attachment, or an empty {@link Optional} if the content has none, does not exist or belongs to another user.
+     */
+    public Optional<ContentsAttachmentDTO> findOne(Long id, String login) {
+        log.debug("Request to get the attachment of Contents : {}", id);
+        if (!contentResourceService.findOneByOwner(id, login).isPresent()) {
+            return Optional.empty();
+        }
+        try (Reader reader = Files.newBufferedReader(directoryOf(id).resolve(METADATA), StandardCharsets.ISO_8859_1)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            return Optional.of(fromProperties(id, properties));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Open the parts of the chunk files holding a range of an attachment.
+     * <p>
+     * The chunks are opened together, while no upload can replace them: an open chunk stays readable until it is
+     * closed, even if the attachment is replaced or deleted meanwhile.
+     *
+     * @param attachment the attachment.
+     * @param start the first byte of the range.
+     * @param end the last byte of the range, inclusive.
+     * @return the parts of the chunks, in order, to be closed by the caller, or an empty {@link Optional} if the
+     * attachment was replaced or deleted since it was read.
+     * @throws IOException if a chunk could not be opened.
+     */
+    public Optional<List<ChunkRange>> openChunks(ContentsAttachmentDTO attachment, long start, long end) throws IOException {
+        List<ChunkRange> ranges = new ArrayList<>();
+        long size = attachment.getChunkSize();
+        synchronized (lockOf(attachment.getId())) {
+            try {
+                for (long index = start / size; index <= end / size; index++) {
+                    long chunkStart = index * size;
+                    long position = Math.max(start, chunkStart) - chunkStart;
+                    long last = Math.min(end, chunkStart + size - 1) - chunkStart;
+                    FileChannel channel = FileChannel.open(chunkOf(attachment, index), StandardOpenOption.READ);
+                    ranges.add(new ChunkRange(channel, position, last - position + 1));
+                }
+                return Optional.of(ranges);
+            } catch (NoSuchFileException e) {
+                close(ranges);
+                return Optional.empty();
+            } catch (IOException | RuntimeException e) {
+                close(ranges);
+                throw e;
+            }
+        }
+    }
+
+    private static void close(List<ChunkRange> ranges) throws IOException {
+        for (ChunkRange range : ranges) {
+            range.close();
+        }
+    }
+
+    /**
+     * Delete the attachment of a content owned by a user.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return false if the content has no attachment, does not exist or belongs to another user.
+     */
+    public boolean delete(Long id, String login) {
+        log.debug("Request to delete the attachment of Contents : {}", id);
+        if (!contentResourceService.findOneByOwner(id, login).isPresent()) {
+            return false;
+        }
+        return deleteDirectory(id);
+    }
+
+    /**
+     * Delete the attachments of deleted contents, once the transaction which deleted them is committed.
+     * <p>
+     * Only the attachments of the owner of the contents are deleted. Those stored before their owner was recorded
+     * are only deleted if their content no longer exists.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener
+    public void onContentsEvent(ContentsEventDTO event) {
+        if (ContentsEventDTO.DELETED.equals(event.getType()) && event.getIds() != null) {
+            event.getIds().forEach(id -> deleteDirectoryOf(id, event.getLogin()));
+        }
+    }
+
+    private void deleteDirectoryOf(Long id, String login) {
+        synchronized (lockOf(id)) {
+            String owner;
+            try (Reader reader = Files.newBufferedReader(directoryOf(id).resolve(METADATA), StandardCharsets.ISO_8859_1)) {
+                Properties properties = new Properties();
+                properties.load(reader);
+                owner = properties.getProperty(OWNER);
+            } catch (NoSuchFileException e) {
+                owner = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (owner != null && !owner.equals(login)) {
+                log.warn("Not deleting the attachment of Contents : {}, which belongs to another user", id);
+                return;
+            }
+            if (owner == null) {
+                Set<Long> existing = new HashSet<>();
+                contentsShardService.onAllShards(false, shard ->
+                    existing.addAll(contentResourceRepository.findAllExistingIds(Collections.singleton(id))));
+                if (!existing.isEmpty()) {
+                    return;
+                }
+            }
+            deleteDirectory(id);
+        }
+    }
+
+    /**
+     * Delete the attachments whose content no longer exists on any shard, and the uploads which did not complete.
+     */
+    @Scheduled(cron = "${application.attachments.purge-cron:0 0 4 * * ?}")
+    public void purge() throws IOException {
+        Map<Long, Path> batch = new HashMap<>();
+        Instant expired = Instant.now().minus(UPLOAD_TIME_TO_LIVE);
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(root)) {
+            for (Path bucket : buckets) {
+                try (DirectoryStream<Path> directories = Files.newDirectoryStream(bucket)) {
+                    for (Path directory : directories) {
+                        purgeExpiredUploads(directory, expired);
+                        batch.put(Long.valueOf(directory.getFileName().toString()), directory);
+                        if (batch.size() == PURGE_BATCH_SIZE) {
+                            purgeOrphans(batch);
+                        }
+                    }
+                }
+            }
+        }
+        purgeOrphans(batch);
+    }
+
+    private void purgeExpiredUploads(Path directory, Instant expired) throws IOException {
+        try (DirectoryStream<Path> uploads = Files.newDirectoryStream(directory, UPLOAD_PREFIX + "*")) {
+            for (Path upload : uploads) {
+                if (Files.getLastModifiedTime(upload).toInstant().isBefore(expired)) {
+                    Files.deleteIfExists(upload);
+                }
+            }
+        }
+    }
+
+    private void purgeOrphans(Map<Long, Path> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<Long> existing = new HashSet<>();
+        // Not from a replica, which may not have the contents whose attachment was just uploaded
+        contentsShardService.onAllShards(false, shard -> existing.addAll(contentResourceRepository.findAllExistingIds(batch.keySet())));
+        batch.keySet().stream()
+            .filter(id -> !existing.contains(id))
+            .forEach(id -> {
+                log.debug("Purging the attachment of deleted Contents : {}", id);
+                deleteDirectory(id);
+            });
+        batch.clear();
+    }
+
+    private boolean deleteDirectory(Long id) {
+        Path directory = directoryOf(id);
+        synchronized (lockOf(id)) {
+            if (!Files.exists(directory)) {
+                return false;
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Spread the attachments over 256 directories, by the low bits of the content id.
+     */
+    private Path directoryOf(Long id) {
+        return root.resolve(String.format("%02x", id & 0xff)).resolve(id.toString());
+    }
+
+    private Path chunkOf(ContentsAttachmentDTO attachment, long index) {
+        return directoryOf(attachment.getId()).resolve(attachment.getSha256() + "-" + index);
+    }
+
+    private Object lockOf(Long id) {
+        return locks[(int) Math.floorMod(id, (long) LOCK_STRIPES)];
+    }
+
+    private static Properties toProperties(ContentsAttachmentDTO attachment) {
+        Properties properties = new Properties();
+        if (attachment.getFileName() != null) {
+            properties.setProperty("fileName", attachment.getFileName());
+        }
+        if (attachment.getContentType() != null) {
+            properties.setProperty("contentType", attachment.getContentType());
+        }
+        properties.setProperty("size", Long.toString(attachment.getSize()));
+        properties.setProperty("sha256", attachment.getSha256());
+        properties.setProperty("createdAt", attachment.getCreatedAt().toString());
+        properties.setProperty("chunkSize", Long.toString(attachment.getChunkSize()));
+        return properties;
+    }
+
+    private static ContentsAttachmentDTO fromProperties(Long id, Properties properties) {
+        ContentsAttachmentDTO attachment = new ContentsAttachmentDTO();
+        attachment.setId(id);
+        attachment.setFileName(properties.getProperty("fileName"));
+        attachment.setContentType(properties.getProperty("contentType"));
+        attachment.setSize(Long.parseLong(properties.getProperty("size")));
+        attachment.setSha256(properties.getProperty("sha256"));
+        attachment.setCreatedAt(ZonedDateTime.parse(properties.getProperty("createdAt")));
+        attachment.setChunkSize(Long.parseLong(properties.getProperty("chunkSize")));
+        return attachment;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A range of bytes of an open chunk file.
+     */
+    public static final class ChunkRange implements Closeable {
+
+        private final FileChannel channel;
+
+        private final long position;
+
+        private final long count;
+
+        ChunkRange(FileChannel channel, long position, long count) {
+            this.channel = channel;
+            this.position = position;
+            this.count = count;
+        }
+
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Service maintaining the monthly partitions of the contents, on PostgreSQL.
+ * <p>
+ * The partitions of the coming months are created ahead, so that new contents never go to the default partition.
+ * When a retention is set, the partitions of the expired months are detached and dropped, which is much cheaper than
+ * deleting their rows one by one; the tombstones of their contents are written first, and a deletion event is
+ * published for each of their owners, as for a bulk delete. Expired contents held by the default partition are
+ * deleted row by row.
+ * <p>
+ * It runs on every shard, holding a PostgreSQL advisory lock, so that several nodes can run it at the same time.
+ * Nothing is done on other databases, or if the contents are not partitioned.
+ */
+@Service
+public class ContentsPartitionService {
+
+    static final String PARTITION_PREFIX = "contents_p";
+
+    private static final String DEFAULT_PARTITION = "contents_default";
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("uuuuMM");
+
+    private static final String CHANGE_SEQUENCE = "contents_change_seq";
+
+    /**
+     * Key of the advisory lock held while maintaining the partitions.
+     */
+    private static final long LOCK_KEY = 0x636f6e74656e7473L;
+
+    private final Logger log = LoggerFactory.getLogger(ContentsPartitionService.class);
+
+    private final ContentsShardService contentsShardService;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ApplicationProperties.Partitioning properties;
+
+    public ContentsPartitionService(ContentsShardService contentsShardService, EntityManager entityManager,
+                                    ApplicationEventPublisher eventPublisher, ApplicationProperties applicationProperties) {
+        this.contentsShardService = contentsShardService;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.properties = applicationProperties.getPartitioning();
+    }
+
+    /**
+     * Create the partitions of the coming months, and drop the expired ones, on every shard.
+     */
+    @Scheduled(cron = "${application.partitioning.cron:0 30 3 * * ?}")
+    public void maintainPartitions() {
+        if (!(dialect() instanceof PostgreSQL81Dialect)) {
+            return;
+        }
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        contentsShardService.onAllShards(false, shard -> {
+            maintainPartitions(shard, current);
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void maintainPartitions(String shard, YearMonth current) {
+        entityManager.createNativeQuery("select pg_advisory_xact_lock(" + LOCK_KEY + ")").getSingleResult();
+        List<String> partitions = entityManager.createNativeQuery("select child.relname from pg_inherits " +
+            "join pg_class parent on parent.oid = pg_inherits.inhparent " +
+            "join pg_class child on child.oid = pg_inherits.inhrelid " +
+            "where parent.relname = 'contents'").getResultList();
+        if (partitions.isEmpty()) {
+            log.debug("The contents of shard {} are not partitioned", shard);
+            return;
+        }
+        List<YearMonth> months = partitions.stream()
+            .map(ContentsPartitionService::monthOf)
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+        for (YearMonth month : missingMonths(months, current, properties.getPremadeMonths())) {
+            createPartition(shard, month, partitions.contains(DEFAULT_PARTITION));
+        }
+        if (properties.getRetentionMonths() > 0) {
+            for (YearMonth month : expiredMonths(months, current, properties.getRetentionMonths())) {
+                dropPartition(shard, month);
+            }
+            if (partitions.contains(DEFAULT_PARTITION)) {
+                deleteExpiredDefaultContents(shard, current.minusMonths(properties.getRetentionMonths()));
+            }
+        }
+    }
+
+    /**
+     * Create the partition of a month, moving to it the contents of this month held by the default partition.
+     */
+    private void createPartition(String shard, YearMonth month, boolean hasDefaultPartition) {
+        String partition = partitionName(month);
+        log.info("Creating partition {} on shard {}", partition, shard);
+        String from = "'" + month.atDay(1) + "'";
+        String to = "'" + month.plusMonths(1).atDay(1) + "'";
+        execute("create table " + partition + " (like contents including defaults)");
+        if (hasDefaultPartition) {
+            execute("with moved as (delete from " + DEFAULT_PARTITION + " where created_at >= " + from + " and created_at < " + to +
+                " returning *) insert into " + partition + " select * from moved");
+        }
+        execute("alter table contents attach partition " + partition + " for values from (" + from + ") to (" + to + ")");
+    }
+
+    /**
+     * Drop the partition of an expired month, after writing the tombstones of its contents.
+     */
+    @SuppressWarnings("unchecked")
+    private void dropPartition(String shard, YearMonth month) {
+        String partition = partitionName(month);
+        log.info("Dropping expired partition {} on shard {}", partition, shard);
+        // The owners are locked before the change sequence is allocated, as for any change of their contents
+        List<String> owners = entityManager.createNativeQuery("select owner.login from jhi_user owner where owner.id in " +
+            "(select user_belongs_to_id from " + partition + ") order by owner.id for update").getResultList();
+        execute("insert into contents_tombstone (id, user_belongs_to_id, change_seq) " +
+            "select id, user_belongs_to_id, " + nextChangeSeq() + " from " + partition + " where user_belongs_to_id is not null");
+        execute("alter table contents detach partition " + partition);
+        execute("drop table " + partition);
+        entityManager.getEntityManagerFactory().getCache().evict(Contents.class);
+        ZonedDateTime from = month.atDay(1).atStartOfDay(ZoneOffset.UTC);
+        owners.forEach(login -> eventPublisher.publishEvent(
+            ContentsEventDTO.of(ContentsEventDTO.DELETED, login, from, from.plusMonths(1))));
+    }
+
+    /**
+     * Delete the expired contents of the default partition, which are older than every partition.
+     */
+    @SuppressWarnings("unchecked")
+    private void deleteExpiredDefaultContents(String shard, YearMonth oldestKept) {
+        String before = "'" + oldestKept.atDay(1) + "'";
+        List<String> owners = entityManager.createNativeQuery("select owner.login from jhi_user owner where owner.id in " +
+            "(select user_belongs_to_id from " + DEFAULT_PARTITION + " where created_at < " + before + ") " +
+            "order by owner.id for update").getResultList();
+        if (owners.isEmpty()) {
+            return;
+        }
+        log.info("Deleting expired contents of the default partition on shard {}", shard);
+        execute("insert into contents_tombstone (id, user_belongs_to_id, change_seq) select id, user_belongs_to_id, " +
+            nextChangeSeq() + " from " + DEFAULT_PARTITION + " where created_at < " + before + " and user_belongs_to_id is not null");
+        execute("delete from " + DEFAULT_PARTITION + " where created_at < " + before);
+        entityManager.getEntityManagerFactory().getCache().evict(Contents.class);
+        ZonedDateTime to = oldestKept.atDay(1).atStartOfDay(ZoneOffset.UTC);
+        owners.forEach(login -> eventPublisher.publishEvent(
+            ContentsEventDTO.of(ContentsEventDTO.DELETED, login, Instant.EPOCH.atZone(ZoneOffset.UTC), to)));
+    }
+
+    /**
+     * Get the months which need a partition, from the current one on, and which do not have one yet.
+     *
+     * @param existing the months of the existing partitions.
+     * @param current the current month.
+     * @param premadeMonths the number of months after the current one which need a partition.
+     * @return the months, in order.
+     */
+    static List<YearMonth> missingMonths(Collection<YearMonth> existing, YearMonth current, int premadeMonths) {
+        List<YearMonth> missing = new ArrayList<>();
+        for (int i = 0; i <= premadeMonths; i++) {
+            if (!existing.contains(current.plusMonths(i))) {
+                missing.add(current.plusMonths(i));
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Get the months whose partition has expired.
+     *
+     * @param existing the months of the existing partitions.
+     * @param current the current month.
+     * @param retentionMonths the number of months kept before the current one.
+     * @return the months, in order.
+     */
+    static List<YearMonth> expiredMonths(Collection<YearMonth> existing, YearMonth current, int retentionMonths) {
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        return existing.stream()
+            .filter(month -> month.isBefore(oldestKept))
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + PARTITION_MONTH.format(month);
+    }
+
+    /**
+     * Get the month of a partition from its name.
+     *
+     * @param partition the name of the partition.
+     * @return the month, or empty if it is not a monthly partition.
+     */
+    static Optional<YearMonth> monthOf(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_MONTH));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void execute(String sql) {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        });
+    }
+
+    private Long nextChangeSeq() {
+        String sql = dialect().getSequenceNextValString(CHANGE_SEQUENCE);
+        return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+    }
+
+    private Dialect dialect() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+}
@@ -0,0 +1,405 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Service searching the contents of a user by their value, with an embedded Lucene index.
+ * <p>
+ * The index holds a document per content, with the login of its owner, so a search only matches the contents of the
+ * user and never reads the contents table. It is kept up to date from the changes published by
+ * {@link ContentResourceService}: once their transaction is committed, the changed contents are read again and
+ * indexed by a single thread, in order, and become searchable within {@link ApplicationProperties.Search#getRefreshInterval()}.
+ * <p>
+ * The index can be rebuilt from the contents of all the shards at any time, while it is searched. It is kept in
+ * memory, and rebuilt at startup, unless a directory is configured.
+ */
+@Service
+public class ContentsSearchService {
+
+    /**
+     * Maximum number of results which can be paged through, as each page collects all the results before it.
+     */
+    public static final int MAX_RESULTS = 10000;
+
+    private static final String ID = "id";
+
+    private static final String OWNER = "owner";
+
+    private static final String VALUE = "value";
+
+    private static final String CREATED_AT = "createdAt";
+
+    private static final String VERSION = "version";
+
+    /**
+     * Indexed with the generation the document was written by, so that a rebuild can delete the documents it did not
+     * write, whose contents no longer exist.
+     */
+    private static final String GENERATION = "generation";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsSearchService.class);
+
+    private final ContentResourceService contentResourceService;
+
+    private final ContentsShardService contentsShardService;
+
+    private final ContentResourceRepository contentResourceRepository;
+
+    private final ApplicationProperties.Search properties;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final Directory directory;
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    private final ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
+    /**
+     * Single thread writing to the index, so that the changes are applied in the order they were committed.
+     */
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contents-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Only used by the indexer thread.
+     */
+    private long generation = System.currentTimeMillis();
+
+    public ContentsSearchService(ContentResourceService contentResourceService, ContentsShardService contentsShardService,
+                                 ContentResourceRepository contentResourceRepository,
+                                 ApplicationProperties applicationProperties) throws IOException {
+        this.contentResourceService = contentResourceService;
+        this.contentsShardService = contentsShardService;
+        this.contentResourceRepository = contentResourceRepository;
+        this.properties = applicationProperties.getSearch();
+        this.directory = properties.getDirectory() == null
+            ? new ByteBuffersDirectory()
+            : FSDirectory.open(Paths.get(properties.getDirectory()));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+        double maxStaleSec = properties.getRefreshInterval() / 1000.0;
+        this.reopenThread = new ControlledRealTimeReopenThread<>(writer, searcherManager, maxStaleSec, maxStaleSec / 10);
+        reopenThread.setName("contents-index-refresh");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+    }
+
+    /**
+     * Search the contents owned by a user.
+     * <p>
+     * The query is made of words, all of which must be found in the value; it supports the
+     * {@link SimpleQueryParser} operators, such as {@code "..."} for phrases, {@code |} and {@code -}.
+     *
+     * @param login the login of the owner.
+     * @param text the query.
+     * @param pageable the page to return, within the first {@link #MAX_RESULTS} results.
+     * @return the page of contents, best matches first, with the total number of matches.
+     */
+    public Page<ContentsDTO> search(String login, String text, Pageable pageable) {
+        log.debug("Request to search the contents of user : {} for : {}", login, text);
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, VALUE);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = new BooleanQuery.Builder()
+            .add(new TermQuery(new Term(OWNER, StringUtils.lowerCase(login, Locale.ENGLISH))), BooleanClause.Occur.FILTER)
+            .add(parser.parse(text), BooleanClause.Occur.MUST)
+            .build();
+        int offset = (int) Math.min(pageable.getOffset(), MAX_RESULTS);
+        int size = Math.min(pageable.getPageSize(), MAX_RESULTS - offset);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopScoreDocCollector collector = TopScoreDocCollector.create(Math.max(1, offset + size), Integer.MAX_VALUE);
+                searcher.search(query, collector);
+                List<ContentsDTO> contents = new ArrayList<>();
+                for (ScoreDoc hit : collector.topDocs(offset, size).scoreDocs) {
+                    contents.add(toContents(searcher.doc(hit.doc)));
+                }
+                return new PageImpl<>(contents, pageable, collector.getTotalHits());
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Index a change of the contents, once the transaction which made it is committed.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener
+    public void onContentsEvent(ContentsEventDTO event) {
+        submit(() -> {
+            try {
+                index(event);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not index the change {}, searches may miss it until the index is rebuilt: {}", event, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Rebuild the index from the contents of all the shards, in the background.
+     * <p>
+     * The index can still be searched and updated meanwhile: the documents are replaced one by one, and the ones
+     * of the contents which no longer exist are deleted last.
+     *
+     * @return the number of contents indexed, once done.
+     */
+    public CompletableFuture<Long> rebuild() {
+        log.debug("Request to rebuild the contents index");
+        CompletableFuture<Long> indexed = CompletableFuture.supplyAsync(this::rebuildIndex, indexer);
+        indexed.whenComplete((count, e) -> {
+            if (e != null) {
+                log.error("Could not rebuild the contents index", e);
+            }
+        });
+        return indexed;
+    }
+
+    /**
+     * Wait until the changes submitted so far are indexed, and can be searched.
+     */
+    public void refresh() {
+        try {
+            indexer.submit(() -> {
+                searcherManager.maybeRefreshBlocking();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not refresh the contents index", e.getCause());
+        }
+    }
+
+    /**
+     * Build the index at startup if it is kept in memory, or if asked to.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (properties.isRebuildOnStartup() || writer.getDocStats().numDocs == 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Commit the index to its directory, so that the changes are kept across restarts.
+     */
+    @Scheduled(fixedDelayString = "${application.search.commit-interval:60000}")
+    public void commit() throws IOException {
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    private void index(ContentsEventDTO event) throws IOException {
+        String login = event.getLogin();
+        if (event.getIds() != null) {
+            Map<Long, ContentsDTO> contents = new HashMap<>();
+            if (!ContentsEventDTO.DELETED.equals(event.getType())) {
+                readFromPrimary(login, () -> contentResourceService.findAllByOwner(login, event.getIds()))
+                    .forEach(content -> contents.put(content.getId(), content));
+            }
+            for (Long id : event.getIds()) {
+                ContentsDTO content = contents.get(id);
+                if (content == null) {
+                    // Only the documents of the user: a change never removes the contents of another one
+                    writer.deleteDocuments(new BooleanQuery.Builder()
+                        .add(new TermQuery(new Term(ID, id.toString())), BooleanClause.Occur.FILTER)
+                        .add(new TermQuery(new Term(OWNER, login)), BooleanClause.Occur.FILTER)
+                        .build());
+                } else {
+                    writer.updateDocument(new Term(ID, id.toString()), toDocument(content));
+                }
+            }
+            return;
+        }
+        long from = event.getFrom().toInstant().toEpochMilli();
+        long to = event.getTo().toInstant().toEpochMilli();
+        Query range = new BooleanQuery.Builder()
+            .add(new TermQuery(new Term(OWNER, login)), BooleanClause.Occur.FILTER)
+            .add(LongPoint.newRangeQuery(CREATED_AT, from, to - 1), BooleanClause.Occur.FILTER)
+            .build();
+        if (ContentsEventDTO.DELETED.equals(event.getType())) {
+            writer.deleteDocuments(range);
+            return;
+        }
+        reindex(range, action -> readFromPrimary(login, () -> {
+            contentResourceService.forEachByOwner(login, content -> {
+                long createdAt = content.getCreatedAt().toInstant().toEpochMilli();
+                if (createdAt >= from && createdAt < to) {
+                    action.accept(content);
+                }
+            });
+            return null;
+        }));
+    }
+
+    private long rebuildIndex() {
+        long[] count = {0};
+        long start = System.currentTimeMillis();
+        reindex(new MatchAllDocsQuery(), action -> contentsShardService.onAllShards(false, shard -> {
+            try (Stream<ContentsDTO> contents = contentResourceRepository.streamAll()) {
+                contents.forEach(content -> {
+                    action.accept(content);
+                    count[0]++;
+                });
+            }
+            return null;
+        }));
+        log.info("Rebuilt the contents index with {} contents in {} ms", count[0], System.currentTimeMillis() - start);
+        return count[0];
+    }
+
+    /**
+     * Replace the documents matching a query with the given contents.
+     *
+     * @param scope the query matching the documents to replace.
+     * @param contents the source of the contents, given the action indexing a content.
+     */
+    private void reindex(Query scope, Consumer<Consumer<ContentsDTO>> contents) {
+        generation = Math.max(generation + 1, System.currentTimeMillis());
+        try {
+            contents.accept(content -> {
+                try {
+                    writer.updateDocument(new Term(ID, content.getId().toString()), toDocument(content));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.deleteDocuments(new BooleanQuery.Builder()
+                .add(scope, BooleanClause.Occur.FILTER)
+                .add(LongPoint.newRangeQuery(GENERATION, Long.MIN_VALUE, generation - 1), BooleanClause.Occur.FILTER)
+                .build());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read the contents of a user in a read-write transaction on its shard, so that they are never read from a
+     * replica which has not received the change yet.
+     */
+    private <T> T readFromPrimary(String login, Supplier<T> action) {
+        return contentsShardService.onShard(contentsShardService.shardOf(login), false, action);
+    }
+
+    private Document toDocument(ContentsDTO content) {
+        Document document = new Document();
+        document.add(new StringField(ID, content.getId().toString(), Field.Store.YES));
+        document.add(new StringField(OWNER, content.getLogin(), Field.Store.YES));
+        if (content.getValue() != null) {
+            document.add(new TextField(VALUE, content.getValue(), Field.Store.YES));
+        }
+        if (content.getCreatedAt() != null) {
+            long createdAt = content.getCreatedAt().toInstant().toEpochMilli();
+            document.add(new LongPoint(CREATED_AT, createdAt));
+            document.add(new StoredField(CREATED_AT, createdAt));
+        }
+        if (content.getVersion() != null) {
+            document.add(new StoredField(VERSION, content.getVersion()));
+        }
+        document.add(new LongPoint(GENERATION, generation));
+        return document;
+    }
+
+    private static ContentsDTO toContents(Document document) {
+        IndexableField createdAt = document.getField(CREATED_AT);
+        IndexableField version = document.getField(VERSION);
+        return new ContentsDTO(
+            Long.valueOf(document.get(ID)),
+            document.get(VALUE),
+            createdAt == null ? null : Instant.ofEpochMilli(createdAt.numericValue().longValue()).atZone(ZoneOffset.UTC),
+            document.get(OWNER),
+            version == null ? null : version.numericValue().longValue());
+    }
+
+    private void submit(Runnable task) {
+        try {
+            indexer.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("The contents index is closed, a change is not indexed");
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        indexer.shutdown();
+        if (!indexer.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("The contents index was closed before all the changes were indexed");
+        }
+        reopenThread.close();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+}
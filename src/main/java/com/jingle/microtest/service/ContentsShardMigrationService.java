@@ -0,0 +1,397 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.config.ShardRoutingDataSource;
+import com.jingle.microtest.domain.ContentsShard;
+import com.jingle.microtest.domain.User;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.ContentsShardRepository;
+import com.jingle.microtest.repository.ContentsTombstoneRepository;
+import com.jingle.microtest.repository.UserRepository;
+import com.jingle.microtest.service.dto.ContentsShardMoveDTO;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Service moving the contents of users between shards.
+ * <p>
+ * A user being moved is first marked as migrating in the shard directory, so that its contents can no longer be
+ * used, and its operations already started are given {@link ApplicationProperties.Sharding#getMigrationGracePeriod()}
+ * to complete. Its contents and tombstones are then copied in batches, as they are, to the target shard, which
+ * becomes the shard of the user; they are deleted from the source shard last, so a failed move leaves the user on
+ * the source shard.
+ * <p>
+ * The moves run one at a time, in the background. The shard left by a move, or the target of a failed move, is
+ * recorded in the shard directory until the rows of the user are deleted from it; the deletions which fail are
+ * retried every {@link ApplicationProperties.Sharding#getCleanupInterval()}. Until then, the scans of all the shards
+ * see these rows twice.
+ * <p>
+ * Each shard has its own change sequence: the one of the target shard is moved past the one of the source shard,
+ * so that the synchronization tokens of the user stay valid.
+ */
+@Service
+public class ContentsShardMigrationService {
+
+    private static final String CHANGE_SEQUENCE = "contents_change_seq";
+
+    private static final String CONTENTS_COLUMNS = "id, jhi_value, created_at, version, change_seq, user_belongs_to_id";
+
+    private static final String TOMBSTONE_COLUMNS = "id, user_belongs_to_id, change_seq";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsShardMigrationService.class);
+
+    private final ContentsShardService contentsShardService;
+
+    private final ContentsShardRepository contentsShardRepository;
+
+    private final ContentResourceRepository contentResourceRepository;
+
+    private final ContentsTombstoneRepository contentsTombstoneRepository;
+
+    private final UserRepository userRepository;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationProperties.Sharding properties;
+
+    /**
+     * Single thread running the moves, so that only one user is fenced at a time.
+     */
+    private final ExecutorService mover = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contents-shard-mover");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ContentsShardMigrationService(ContentsShardService contentsShardService, ContentsShardRepository contentsShardRepository,
+                                         ContentResourceRepository contentResourceRepository,
+                                         ContentsTombstoneRepository contentsTombstoneRepository, UserRepository userRepository,
+                                         EntityManager entityManager, ApplicationProperties applicationProperties) {
+        this.contentsShardService = contentsShardService;
+        this.contentsShardRepository = contentsShardRepository;
+        this.contentResourceRepository = contentResourceRepository;
+        this.contentsTombstoneRepository = contentsTombstoneRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.properties = applicationProperties.getSharding();
+    }
+
+    /**
+     * Count the contents of each shard.
+     *
+     * @return the number of contents, by shard name.
+     */
+    public Map<String, Long> countByShard() {
+        log.debug("Request to count the contents of each shard");
+        return contentsShardService.onAllShards(true, shard -> contentResourceRepository.count());
+    }
+
+    /**
+     * Move the contents of a user to another shard, in the background.
+     *
+     * @param login the login of the user.
+     * @param target the name of the target shard.
+     * @return the move, completed with the number of contents moved once done, or empty if the user does not exist.
+     * @throws ConcurrencyFailureException if the contents of the user are already being moved.
+     */
+    public Optional<CompletableFuture<ContentsShardMoveDTO>> migrate(String login, String target) {
+        log.debug("Request to move the contents of user : {} to shard {}", login, target);
+        if (!contentsShardService.getShardNames().contains(target)) {
+            throw new IllegalArgumentException("Unknown shard: " + target);
+        }
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Optional<Long> userId = contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false,
+            () -> contentResourceRepository.findOwnerIdByLogin(ownerLogin));
+        if (!userId.isPresent()) {
+            return Optional.empty();
+        }
+        ContentsShardMoveDTO move = new ContentsShardMoveDTO(ownerLogin, contentsShardService.shardOf(ownerLogin), target);
+        return Optional.of(submit("move the contents of user " + ownerLogin, () -> run(userId.get(), move)));
+    }
+
+    private ContentsShardMoveDTO run(Long userId, ContentsShardMoveDTO move) {
+        move.setMoved(move.getSource().equals(move.getTarget()) ? 0L
+            : move(userId, move.getLogin(), move.getSource(), move.getTarget()));
+        return move;
+    }
+
+    private <T> CompletableFuture<T> submit(String description, Supplier<T> job) {
+        CompletableFuture<T> result = CompletableFuture.supplyAsync(job, mover);
+        result.whenComplete((done, e) -> {
+            if (e != null) {
+                log.error("Could not {}", description, e);
+            }
+        });
+        return result;
+    }
+
+    private long move(Long userId, String login, String source, String target) {
+        if (!contentsShardService.startMigration(userId, login, source)) {
+            throw new ConcurrencyFailureException("The contents of user " + login + " are already being moved");
+        }
+        long moved;
+        try {
+            Thread.sleep(properties.getMigrationGracePeriod());
+            contentsShardService.copyOwner(target, userId, login);
+            // Left by a previous move which failed to delete them
+            cleanUp(userId, true);
+            deleteAll(target, userId);
+            moved = copyRows("contents", CONTENTS_COLUMNS, userId, source, target);
+            copyRows("contents_tombstone", TOMBSTONE_COLUMNS, userId, source, target);
+            advanceChangeSequence(source, target);
+            contentsShardService.finishMigration(userId, login, target, source);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(userId, login, target);
+            throw new IllegalStateException("Interrupted while moving the contents of user " + login, e);
+        } catch (RuntimeException e) {
+            log.error("Could not move the contents of user {} from shard {} to shard {}", login, source, target, e);
+            abort(userId, login, target);
+            throw e;
+        }
+        tryCleanUp(userId);
+        log.info("Moved {} contents of user {} from shard {} to shard {}", moved, login, source, target);
+        return moved;
+    }
+
+    private void abort(Long userId, String login, String target) {
+        contentsShardService.abortMigration(userId, login, target);
+        tryCleanUp(userId);
+    }
+
+    /**
+     * Delete the rows that the moves of users left on the shards they are not on, the deletions which failed being
+     * retried.
+     */
+    @Scheduled(fixedDelayString = "${application.sharding.cleanup-interval:60000}")
+    public void cleanUpMoves() {
+        if (contentsShardService.getShardNames().size() == 1) {
+            return;
+        }
+        contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, true, contentsShardRepository::findAllUserIdsToCleanUp)
+            .forEach(this::tryCleanUp);
+    }
+
+    private void tryCleanUp(Long userId) {
+        try {
+            cleanUp(userId, false);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete the contents left by the move of user {}, will retry: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the rows of a user from its cleanup shard, while its entry in the shard directory is locked, so that it
+     * can not be moved to this shard meanwhile.
+     *
+     * @param userId the id of the user.
+     * @param fenced whether the user is being moved by the caller; otherwise the rows of a user being moved are kept.
+     */
+    private void cleanUp(Long userId, boolean fenced) {
+        contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false, () -> {
+            contentsShardRepository.findOneForUpdate(userId)
+                .filter(entry -> entry.getCleanupShard() != null && entry.isMigrating() == fenced)
+                .ifPresent(entry -> {
+                    if (!entry.getCleanupShard().equals(entry.getShard())) {
+                        deleteAll(entry.getCleanupShard(), userId);
+                        log.debug("Deleted the contents left by the move of user {} on shard {}", userId, entry.getCleanupShard());
+                    }
+                    entry.setCleanupShard(null);
+                });
+            return null;
+        });
+    }
+
+    private void deleteAll(String shard, Long userId) {
+        contentsShardService.onShard(shard, false, () -> {
+            contentsTombstoneRepository.deleteAllByOwnerId(userId);
+            return contentResourceRepository.deleteAllByOwnerId(userId);
+        });
+    }
+
+    /**
+     * Copy the rows of a user from a shard to another, in batches ordered by id, in a transaction per batch.
+     * <p>
+     * The rows are copied through JDBC, column by column, so they are not changed by the mapping of the entities.
+     *
+     * @param table the table of the rows, which has {@code id} and {@code user_belongs_to_id} columns.
+     * @param columns the columns to copy, {@code id} first.
+     * @return the number of rows copied.
+     */
+    private long copyRows(String table, String columns, Long userId, String source, String target) {
+        String select = "select " + columns + " from " + table + " where user_belongs_to_id = ? and id > ? order by id";
+        String insert = "insert into " + table + " (" + columns + ") values (" +
+            StringUtils.repeat("?", ", ", columns.split(",").length) + ")";
+        long copied = 0;
+        long last = Long.MIN_VALUE;
+        while (true) {
+            long after = last;
+            List<Object[]> rows = contentsShardService.onShard(source, false, () -> session().doReturningWork(connection -> {
+                List<Object[]> batch = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(select)) {
+                    statement.setMaxRows(properties.getMigrationBatchSize());
+                    statement.setLong(1, userId);
+                    statement.setLong(2, after);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        int columnCount = resultSet.getMetaData().getColumnCount();
+                        while (resultSet.next()) {
+                            Object[] row = new Object[columnCount];
+                            for (int i = 0; i < columnCount; i++) {
+                                row[i] = resultSet.getObject(i + 1);
+                            }
+                            batch.add(row);
+                        }
+                    }
+                }
+                return batch;
+            }));
+            if (rows.isEmpty()) {
+                return copied;
+            }
+            contentsShardService.onShard(target, false, () -> session().doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                    for (Object[] row : rows) {
+                        for (int i = 0; i < row.length; i++) {
+                            statement.setObject(i + 1, row[i]);
+                        }
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch();
+                }
+            }));
+            copied += rows.size();
+            last = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+        }
+    }
+
+    /**
+     * Move the change sequence of the target shard past the one of the source shard.
+     */
+    private void advanceChangeSequence(String source, String target) {
+        long sourceValue = contentsShardService.onShard(source, false, this::nextChangeSeq);
+        contentsShardService.onShard(target, false, () -> {
+            long targetValue = nextChangeSeq();
+            if (targetValue >= sourceValue) {
+                return targetValue;
+            }
+            Dialect dialect = dialect();
+            String sql;
+            if (dialect instanceof PostgreSQL81Dialect) {
+                sql = "select setval('" + CHANGE_SEQUENCE + "', " + sourceValue + ")";
+            } else if (dialect instanceof H2Dialect) {
+                sql = "alter sequence " + CHANGE_SEQUENCE + " restart with " + (sourceValue + 1);
+            } else {
+                log.warn("Could not move the change sequence of shard {} to {}, clients may miss changes until their next " +
+                    "full synchronization", target, sourceValue);
+                return targetValue;
+            }
+            session().doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(sql);
+                }
+            });
+            return sourceValue;
+        });
+    }
+
+    /**
+     * List the users whose shard is not the one they would be placed on, after shards were added.
+     *
+     * @return the moves, not started.
+     */
+    public List<ContentsShardMoveDTO> planRebalance() {
+        log.debug("Request to plan the rebalancing of the shards");
+        return Collections.unmodifiableList(new ArrayList<>(plan(true).values()));
+    }
+
+    /**
+     * Move the users whose shard is not the one they would be placed on, after shards were added, in the background.
+     * <p>
+     * Users whose contents were created before the sharding was enabled are first assigned to the primary database.
+     * The users are moved one at a time; a user which could not be moved is skipped.
+     *
+     * @return the moves, completed with the number of contents moved once done, {@code null} for the skipped users.
+     */
+    public CompletableFuture<List<ContentsShardMoveDTO>> rebalance() {
+        log.debug("Request to rebalance the shards");
+        return submit("rebalance the shards", () -> {
+            Map<Long, ContentsShardMoveDTO> moves = plan(false);
+            moves.forEach((userId, move) -> {
+                try {
+                    run(userId, move);
+                } catch (RuntimeException e) {
+                    log.warn("Skipped the move of user {} to shard {}: {}", move.getLogin(), move.getTarget(), e.getMessage());
+                }
+            });
+            return Collections.unmodifiableList(new ArrayList<>(moves.values()));
+        });
+    }
+
+    /**
+     * Plan the moves, by user id.
+     *
+     * @param dryRun whether the users without a shard are left unassigned.
+     */
+    private Map<Long, ContentsShardMoveDTO> plan(boolean dryRun) {
+        return contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false, () -> {
+            List<ContentsShard> directory = new ArrayList<>(contentsShardRepository.findAll());
+            for (Long userId : contentsShardRepository.findAllUnassignedOwnerIds()) {
+                ContentsShard assigned = new ContentsShard(userId, ShardRoutingDataSource.PRIMARY);
+                directory.add(dryRun ? assigned : contentsShardRepository.save(assigned));
+            }
+            Map<Long, ContentsShardMoveDTO> planned = new LinkedHashMap<>();
+            for (ContentsShard entry : directory) {
+                String target = contentsShardService.defaultShardOf(entry.getUserId());
+                if (!entry.isMigrating() && !target.equals(entry.getShard())) {
+                    userRepository.findById(entry.getUserId()).map(User::getLogin)
+                        .ifPresent(login -> planned.put(entry.getUserId(), new ContentsShardMoveDTO(login, entry.getShard(), target)));
+                }
+            }
+            return planned;
+        });
+    }
+
+    private Long nextChangeSeq() {
+        String sql = dialect().getSequenceNextValString(CHANGE_SEQUENCE);
+        return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+    }
+
+    private Dialect dialect() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    private Session session() {
+        return entityManager.unwrap(Session.class);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        mover.shutdownNow();
+    }
+}
@@ -0,0 +1,306 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ShardContext;
+import com.jingle.microtest.config.ShardRoutingDataSource;
+import com.jingle.microtest.domain.ContentsShard;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.ContentsShardRepository;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Service locating the shard holding the contents of a user, and running transactions on the shards.
+ * <p>
+ * The shard of each user is stored in the shard directory, in the primary database. A user gets a shard the first
+ * time its contents are used: the primary database if it already has contents there, created before the sharding
+ * was enabled, or else the shard picked from its id among the configured shards.
+ * <p>
+ * The contents of a shard reference their owner, so the owner is copied to the shard, with its id and login only,
+ * before its contents are used there. These copies can not log in, and must never be read through the user caches.
+ * <p>
+ * The shard of each user is cached in {@link #SHARD_DIRECTORY_CACHE} for a short time, so that most calls do not
+ * read the directory. The entry of a user is evicted when this node starts or ends moving it; the other nodes see
+ * the move when their entry expires, within the migration grace period. The owners already copied to a shard are
+ * remembered in the bounded {@link #SHARD_COPIED_OWNERS_CACHE}.
+ * <p>
+ * When the sharding is disabled, the primary database is the only shard.
+ */
+@Service
+public class ContentsShardService {
+
+    public static final String SHARD_DIRECTORY_CACHE = "shardDirectory";
+
+    public static final String SHARD_COPIED_OWNERS_CACHE = "shardCopiedOwners";
+
+    /**
+     * Password hash of the copies of the users, which no password matches.
+     */
+    private static final String NO_PASSWORD_HASH = "!";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsShardService.class);
+
+    private final ContentsShardRepository contentsShardRepository;
+
+    private final ContentResourceRepository contentResourceRepository;
+
+    private final EntityManager entityManager;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final List<String> shardNames;
+
+    /**
+     * Shards of the users not being moved, by login.
+     */
+    private final Cache<Object, Object> directory;
+
+    /**
+     * Owners already copied to a shard, as {@code shard/id/login}.
+     */
+    private final Cache<Object, Object> copiedOwners;
+
+    public ContentsShardService(ContentsShardRepository contentsShardRepository, ContentResourceRepository contentResourceRepository,
+                                EntityManager entityManager, PlatformTransactionManager transactionManager, DataSource dataSource,
+                                CacheManager cacheManager) {
+        this.contentsShardRepository = contentsShardRepository;
+        this.contentResourceRepository = contentResourceRepository;
+        this.entityManager = entityManager;
+        this.transactionManager = transactionManager;
+        this.directory = cacheManager.getCache(SHARD_DIRECTORY_CACHE);
+        this.copiedOwners = cacheManager.getCache(SHARD_COPIED_OWNERS_CACHE);
+        this.shardNames = ShardRoutingDataSource.unwrap(dataSource)
+            .map(ShardRoutingDataSource::getShardNames)
+            .orElse(Collections.singletonList(ShardRoutingDataSource.PRIMARY));
+    }
+
+    /**
+     * Get the names of the shards, the primary database first.
+     *
+     * @return the names of the shards.
+     */
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+
+    /**
+     * Get the shard a user is placed on when it has no contents yet.
+     * <p>
+     * It depends on the number of shards: when a shard is added, {@link ContentsShardMigrationService#rebalance()}
+     * moves the users whose shard has changed.
+     *
+     * @param userId the id of the user.
+     * @return the name of the shard.
+     */
+    public String defaultShardOf(Long userId) {
+        return shardNames.get((int) Math.floorMod(userId, (long) shardNames.size()));
+    }
+
+    /**
+     * Get the shard holding the contents of a user, and make it ready to be used by this user.
+     *
+     * @param login the login of the user.
+     * @return the name of the shard, the primary database for an unknown user.
+     * @throws ConcurrencyFailureException if the contents of the user are being moved to another shard.
+     */
+    public String shardOf(String login) {
+        if (shardNames.size() == 1) {
+            return ShardRoutingDataSource.PRIMARY;
+        }
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Placement placement = (Placement) directory.get(ownerLogin);
+        if (placement == null) {
+            Optional<ContentsShard> entry;
+            try {
+                entry = findOrAssign(ownerLogin);
+            } catch (DataIntegrityViolationException e) {
+                // Assigned at the same time by another request
+                entry = findOrAssign(ownerLogin);
+            }
+            if (!entry.isPresent()) {
+                return ShardRoutingDataSource.PRIMARY;
+            }
+            if (entry.get().isMigrating()) {
+                throw new ConcurrencyFailureException("The contents of user " + ownerLogin + " are being moved to another shard");
+            }
+            placement = new Placement(entry.get().getUserId(), entry.get().getShard());
+            directory.put(ownerLogin, placement);
+        }
+        copyOwner(placement.shard, placement.userId, ownerLogin);
+        return placement.shard;
+    }
+
+    private Optional<ContentsShard> findOrAssign(String login) {
+        return onShard(ShardRoutingDataSource.PRIMARY, false, () -> contentResourceRepository.findOwnerIdByLogin(login)
+            .map(userId -> contentsShardRepository.findById(userId).orElseGet(() -> {
+                String shard = contentResourceRepository.existsByUserBelongsToId(userId)
+                    ? ShardRoutingDataSource.PRIMARY : defaultShardOf(userId);
+                log.debug("Assigning shard {} to user : {}", shard, login);
+                return contentsShardRepository.saveAndFlush(new ContentsShard(userId, shard));
+            })));
+    }
+
+    /**
+     * Mark a user as migrating in the shard directory, so that its contents can no longer be used.
+     *
+     * @param userId the id of the user.
+     * @param login the login of the user.
+     * @param shard the shard the user is expected to be on.
+     * @return false if the user is no longer on this shard, or is already migrating.
+     */
+    public boolean startMigration(Long userId, String login, String shard) {
+        try {
+            return onShard(ShardRoutingDataSource.PRIMARY, false, () -> contentsShardRepository.startMigration(userId, shard)) > 0;
+        } finally {
+            directory.remove(StringUtils.lowerCase(login, Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Place a migrating user on its new shard, so that its contents can be used again.
+     *
+     * @param userId the id of the user.
+     * @param login the login of the user.
+     * @param shard the new shard of the user.
+     * @param cleanupShard the shard holding the rows the move left, to delete.
+     */
+    public void finishMigration(Long userId, String login, String shard, String cleanupShard) {
+        try {
+            onShard(ShardRoutingDataSource.PRIMARY, false, () -> contentsShardRepository.finishMigration(userId, shard, cleanupShard));
+        } finally {
+            directory.remove(StringUtils.lowerCase(login, Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Leave a migrating user on its shard, so that its contents can be used again.
+     *
+     * @param userId the id of the user.
+     * @param login the login of the user.
+     * @param cleanupShard the shard holding the rows the move left, to delete, if any.
+     */
+    public void abortMigration(Long userId, String login, String cleanupShard) {
+        try {
+            onShard(ShardRoutingDataSource.PRIMARY, false, () -> contentsShardRepository.abortMigration(userId, cleanupShard));
+        } finally {
+            directory.remove(StringUtils.lowerCase(login, Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Copy the id and login of a user to a shard, unless it was already done.
+     * <p>
+     * A user of the shard which has the same login but another id is a copy of a user who changed its login: its
+     * login is replaced by its id, so that it no longer clashes.
+     *
+     * @param shard the name of the shard.
+     * @param userId the id of the user.
+     * @param login the login of the user.
+     */
+    public void copyOwner(String shard, Long userId, String login) {
+        if (ShardRoutingDataSource.PRIMARY.equals(shard) || copiedOwners.containsKey(shard + "/" + userId + "/" + login)) {
+            return;
+        }
+        log.debug("Copying user : {} to shard {}", login, shard);
+        onShard(shard, false, () -> {
+            userStatement("update jhi_user set login = concat('#', cast(id as varchar(20))) where login = :login and id <> :id")
+                .setParameter("login", login)
+                .setParameter("id", userId)
+                .executeUpdate();
+            int updated = userStatement("update jhi_user set login = :login where id = :id")
+                .setParameter("login", login)
+                .setParameter("id", userId)
+                .executeUpdate();
+            if (updated == 0) {
+                userStatement("insert into jhi_user (id, login, password_hash, is_service, activated, created_by) " +
+                    "values (:id, :login, :passwordHash, false, false, 'system')")
+                    .setParameter("id", userId)
+                    .setParameter("login", login)
+                    .setParameter("passwordHash", NO_PASSWORD_HASH)
+                    .executeUpdate();
+            }
+            return updated;
+        });
+        copiedOwners.put(shard + "/" + userId + "/" + login, Boolean.TRUE);
+    }
+
+    /**
+     * Create a native statement on the users table, which only invalidates the users in the second-level cache.
+     */
+    @SuppressWarnings("rawtypes")
+    private NativeQuery userStatement(String sql) {
+        return entityManager.createNativeQuery(sql).unwrap(NativeQuery.class).addSynchronizedQuerySpace("jhi_user");
+    }
+
+    /**
+     * Run an action in a transaction on a shard.
+     * <p>
+     * The current transaction is joined if it runs on the same shard, otherwise it is suspended.
+     *
+     * @param shard the name of the shard.
+     * @param readOnly whether the transaction is read-only.
+     * @param action the action to run.
+     * @param <T> the type of the result.
+     * @return the result of the action.
+     */
+    public <T> T onShard(String shard, boolean readOnly, Supplier<T> action) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        String current = ShardContext.current() == null ? ShardRoutingDataSource.PRIMARY : ShardContext.current();
+        if (!current.equals(shard)) {
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+        return ShardContext.callOn(shard, () -> transactionTemplate.execute(status -> action.get()));
+    }
+
+    /**
+     * Run an action in a transaction on each shard in turn.
+     *
+     * @param readOnly whether the transactions are read-only.
+     * @param action the action to run, given the name of the shard.
+     * @param <T> the type of the results.
+     * @return the results of the action, by shard name.
+     */
+    public <T> Map<String, T> onAllShards(boolean readOnly, Function<String, T> action) {
+        Map<String, T> results = new LinkedHashMap<>();
+        for (String shard : shardNames) {
+            results.put(shard, onShard(shard, readOnly, () -> action.apply(shard)));
+        }
+        return results;
+    }
+
+    /**
+     * Shard of a user, as cached.
+     */
+    private static final class Placement {
+
+        private final Long userId;
+
+        private final String shard;
+
+        private Placement(Long userId, String shard) {
+            this.userId = userId;
+            this.shard = shard;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service pushing the changes of a user's contents to its Server-Sent Events subscribers.
+ * <p>
+ * Subscriptions are asynchronous requests, so an idle subscriber does not hold any thread. Each subscriber has a
+ * bounded buffer of events, drained by the task executor; a subscriber whose buffer is full is disconnected
+ * rather than slowing down the others, and is expected to catch up with {@code /contents/changes} when it
+ * reconnects.
+ */
+@Service
+public class ContentsStreamService {
+
+    private static final String HEARTBEAT = "heartbeat";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsStreamService.class);
+
+    private final ConcurrentMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final ApplicationProperties.ContentsStream properties;
+
+    private final Executor taskExecutor;
+
+    public ContentsStreamService(ApplicationProperties applicationProperties, @Qualifier("taskExecutor") Executor taskExecutor) {
+        this.properties = applicationProperties.getContentsStream();
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Subscribe to the changes of the contents owned by a user.
+     *
+     * @param login the login of the owner.
+     * @return the emitter of the events, to return from the controller.
+     */
+    public SseEmitter subscribe(String login) {
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Subscriber subscriber = new Subscriber(ownerLogin, new SseEmitter(properties.getTimeout()), properties.getBufferSize());
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.computeIfAbsent(ownerLogin, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        log.debug("User {} subscribed to contents events", ownerLogin);
+        return subscriber.emitter;
+    }
+
+    /**
+     * Send a change to the subscribers of its owner, once the transaction which made it is committed.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener
+    public void onContentsEvent(ContentsEventDTO event) {
+        Set<Subscriber> ownerSubscribers = subscribers.getOrDefault(event.getLogin(), Collections.emptySet());
+        for (Subscriber subscriber : ownerSubscribers) {
+            SseEmitter.SseEventBuilder sseEvent = SseEmitter.event().name(event.getType()).data(event, MediaType.APPLICATION_JSON);
+            if (subscriber.buffer.offer(sseEvent)) {
+                drain(subscriber);
+            } else {
+                log.debug("Disconnecting a slow subscriber of user {}", subscriber.login);
+                unsubscribe(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Send a comment to all the subscribers, so that idle connections are not closed by proxies, and
+     * subscribers which went away are detected.
+     * <p>
+     * A subscriber with a full buffer already has events to receive, so it is skipped.
+     */
+    @Scheduled(fixedDelayString = "${application.contents-stream.heartbeat-interval:15000}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(ownerSubscribers -> ownerSubscribers.forEach(subscriber -> {
+            if (subscriber.buffer.offer(SseEmitter.event().comment(HEARTBEAT))) {
+                drain(subscriber);
+            }
+        }));
+    }
+
+    private void drain(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> drainNow(subscriber));
+        } catch (RejectedExecutionException e) {
+            // Also a TaskRejectedException from the Spring executors: the events stay buffered, and are drained with the
+            // next event or heartbeat
+            log.debug("Could not drain the events of a subscriber of user {}: {}", subscriber.login, e.getMessage());
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void drainNow(Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.buffer.poll()) != null) {
+                subscriber.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send an event to a subscriber of user {}: {}", subscriber.login, e.getMessage());
+            unsubscribe(subscriber);
+            subscriber.buffer.clear();
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event may have been buffered after the last poll, but before the flag was reset.
+        if (!subscriber.buffer.isEmpty()) {
+            drain(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.login, (login, ownerSubscribers) -> {
+            ownerSubscribers.remove(subscriber);
+            return ownerSubscribers.isEmpty() ? null : ownerSubscribers;
+        });
+    }
+
+    private static final class Subscriber {
+
+        private final String login;
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(String login, SseEmitter emitter, int bufferSize) {
+            this.login = login;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
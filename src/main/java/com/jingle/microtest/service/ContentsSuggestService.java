@@ -0,0 +1,311 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import com.jingle.microtest.service.util.RadixTrie;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Service suggesting the values of a user's contents which start with what the user typed.
+ * <p>
+ * The values of each user are held in a {@link RadixTrie}, loaded from the database the first time the user asks for
+ * suggestions. The tries are then kept up to date from the changes published by {@link ContentResourceService}: once
+ * their transaction is committed, the changed contents are read again by a single thread, in order, and their values
+ * replaced. A change of a range of contents drops the trie of their owner, which is loaded again on its next use.
+ * <p>
+ * The heap used by the tries is estimated, and the tries of the least recently used users are evicted when it
+ * goes over {@link ApplicationProperties.Suggest#getMaxMemory()}.
+ */
+@Service
+public class ContentsSuggestService {
+
+    /**
+     * Estimated heap used by an entry of the values of a user by content id, besides the value.
+     */
+    private static final long VALUE_ENTRY_BYTES = 64;
+
+    private final Logger log = LoggerFactory.getLogger(ContentsSuggestService.class);
+
+    private final ContentResourceService contentResourceService;
+
+    private final ContentsShardService contentsShardService;
+
+    private final long maxMemory;
+
+    /**
+     * Suggestions of the users, the least recently used first.
+     */
+    private final LinkedHashMap<String, Suggestions> suggestions = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Suggestions being loaded, by user, which must not be kept if their user changed meanwhile. Guarded by
+     * {@link #suggestions}.
+     */
+    private final Map<String, List<Suggestions>> loading = new HashMap<>();
+
+    /**
+     * Guarded by {@link #suggestions}.
+     */
+    private long estimatedBytes;
+
+    /**
+     * Guarded by {@link #suggestions}.
+     */
+    private long entries;
+
+    private final Counter loads;
+
+    private final Counter evictions;
+
+    /**
+     * Single thread applying the changes, so that they are applied in the order they were committed.
+     */
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contents-suggest-updater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ContentsSuggestService(ContentResourceService contentResourceService, ContentsShardService contentsShardService,
+                                  ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.contentResourceService = contentResourceService;
+        this.contentsShardService = contentsShardService;
+        this.maxMemory = applicationProperties.getSuggest().getMaxMemory().toBytes();
+        this.loads = Counter.builder("contents.suggest.loads")
+            .description("Suggestions of a user loaded from the database")
+            .register(meterRegistry);
+        this.evictions = Counter.builder("contents.suggest.evictions")
+            .description("Suggestions of a user evicted to stay under the maximum memory")
+            .register(meterRegistry);
+        Gauge.builder("contents.suggest.users", this, service -> service.stats()[0])
+            .description("Users whose suggestions are in memory")
+            .register(meterRegistry);
+        Gauge.builder("contents.suggest.entries", this, service -> service.stats()[1])
+            .description("Contents whose values are in memory")
+            .register(meterRegistry);
+        Gauge.builder("contents.suggest.memory", this, service -> service.stats()[2])
+            .description("Estimated heap used by the suggestions")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("contents.suggest.memory.per.entry", this, service -> {
+            long[] stats = service.stats();
+            return stats[1] == 0 ? 0 : (double) stats[2] / stats[1];
+        })
+            .description("Estimated heap used by the suggestions per content")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Get the values of the contents of a user which start with a prefix, ignoring case.
+     *
+     * @param login the login of the owner.
+     * @param prefix the prefix.
+     * @param limit the maximum number of values to return.
+     * @return the distinct values, in alphabetical order.
+     */
+    public List<String> suggest(String login, String prefix, int limit) {
+        log.debug("Request to suggest the contents of user : {} starting with : {}", login, prefix);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Suggestions owner;
+        synchronized (suggestions) {
+            owner = suggestions.get(ownerLogin);
+        }
+        if (owner == null) {
+            owner = load(ownerLogin);
+        }
+        synchronized (owner) {
+            return owner.trie.findByPrefix(key(prefix), limit);
+        }
+    }
+
+    private Suggestions load(String login) {
+        Suggestions loaded = new Suggestions();
+        synchronized (suggestions) {
+            loading.computeIfAbsent(login, key -> new ArrayList<>()).add(loaded);
+        }
+        try {
+            readFromPrimary(login, () -> {
+                contentResourceService.forEachByOwner(login, loaded::put);
+                return null;
+            });
+        } finally {
+            synchronized (suggestions) {
+                List<Suggestions> pending = loading.get(login);
+                pending.remove(loaded);
+                if (pending.isEmpty()) {
+                    loading.remove(login);
+                }
+            }
+        }
+        loads.increment();
+        synchronized (suggestions) {
+            if (!loaded.stale && !suggestions.containsKey(login)) {
+                suggestions.put(login, loaded);
+                estimatedBytes += loaded.estimatedBytes();
+                entries += loaded.values.size();
+                evict();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Apply a change of the contents to the suggestions of their owner, once the transaction which made it is committed.
+     *
+     * @param event the change.
+     */
+    @TransactionalEventListener
+    public void onContentsEvent(ContentsEventDTO event) {
+        try {
+            updater.execute(() -> {
+                try {
+                    update(event);
+                } catch (RuntimeException e) {
+                    log.warn("Could not apply the change {} to the suggestions, dropping them: {}", event, e.getMessage());
+                    drop(event.getLogin());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("The suggestions are closed, a change is not applied");
+        }
+    }
+
+    private void update(ContentsEventDTO event) {
+        String login = event.getLogin();
+        synchronized (suggestions) {
+            loading.getOrDefault(login, new ArrayList<>()).forEach(pending -> pending.stale = true);
+            if (!suggestions.containsKey(login)) {
+                return;
+            }
+        }
+        if (event.getIds() == null) {
+            drop(login);
+            return;
+        }
+        List<ContentsDTO> contents = ContentsEventDTO.DELETED.equals(event.getType()) ? new ArrayList<>()
+            : readFromPrimary(login, () -> contentResourceService.findAllByOwner(login, event.getIds()));
+        synchronized (suggestions) {
+            Suggestions owner = suggestions.get(login);
+            if (owner == null) {
+                return;
+            }
+            long before = owner.estimatedBytes();
+            int beforeEntries = owner.values.size();
+            synchronized (owner) {
+                event.getIds().forEach(owner::remove);
+                contents.forEach(owner::put);
+            }
+            estimatedBytes += owner.estimatedBytes() - before;
+            entries += owner.values.size() - beforeEntries;
+            evict();
+        }
+    }
+
+    private void drop(String login) {
+        synchronized (suggestions) {
+            Suggestions owner = suggestions.remove(login);
+            if (owner != null) {
+                estimatedBytes -= owner.estimatedBytes();
+                entries -= owner.values.size();
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used suggestions while over the maximum memory. Guarded by {@link #suggestions}.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Suggestions>> eldest = suggestions.entrySet().iterator();
+        while (estimatedBytes > maxMemory && eldest.hasNext()) {
+            Map.Entry<String, Suggestions> entry = eldest.next();
+            log.debug("Evicting the suggestions of user : {}", entry.getKey());
+            estimatedBytes -= entry.getValue().estimatedBytes();
+            entries -= entry.getValue().values.size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Get the number of users, contents and estimated bytes of the suggestions in memory.
+     */
+    private long[] stats() {
+        synchronized (suggestions) {
+            return new long[]{suggestions.size(), entries, estimatedBytes};
+        }
+    }
+
+    /**
+     * Read the contents of a user in a read-write transaction on its shard, so that they are never read from a
+     * replica which has not received the last changes yet.
+     */
+    private <T> T readFromPrimary(String login, Supplier<T> action) {
+        return contentsShardService.onShard(contentsShardService.shardOf(login), false, action);
+    }
+
+    private static String key(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void close() {
+        updater.shutdownNow();
+    }
+
+    /**
+     * Values of the contents of a user, by content id and in a trie.
+     */
+    private static final class Suggestions {
+
+        private final RadixTrie trie = new RadixTrie();
+
+        private final Map<Long, String> values = new HashMap<>();
+
+        private long valuesBytes;
+
+        private boolean stale;
+
+        private void put(ContentsDTO content) {
+            remove(content.getId());
+            if (content.getValue() != null) {
+                trie.add(key(content.getValue()), content.getValue());
+                values.put(content.getId(), content.getValue());
+                valuesBytes += VALUE_ENTRY_BYTES + RadixTrie.stringBytes(content.getValue());
+            }
+        }
+
+        private void remove(Long id) {
+            String value = values.remove(id);
+            if (value != null) {
+                trie.remove(key(value));
+                valuesBytes -= VALUE_ENTRY_BYTES + RadixTrie.stringBytes(value);
+            }
+        }
+
+        private long estimatedBytes() {
+            return trie.getEstimatedBytes() + valuesBytes;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.domain.converter.ContentsValueCodec;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Service rewriting the stored values of the contents in the current format of the {@link ContentsValueCodec}.
+ * <p>
+ * The values are written in the current format as they change; this service rewrites the others: the values to
+ * compress since the compression was enabled or its algorithm changed. The contents are scanned by id in batches,
+ * in a transaction per batch, and a value is only rewritten if it did not change meanwhile. The versions of the
+ * contents are left as they are, as their values stay the same.
+ */
+@Service
+public class ContentsValueRecompressionService {
+
+    private static final String SELECT = "select id, jhi_value from contents where id > ? order by id";
+
+    private static final String UPDATE = "update contents set jhi_value = ? where id = ? and jhi_value = ?";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsValueRecompressionService.class);
+
+    private final ContentsShardService contentsShardService;
+
+    private final EntityManager entityManager;
+
+    private final ContentsValueCodec codec;
+
+    private final ApplicationProperties.ValueCompression properties;
+
+    public ContentsValueRecompressionService(ContentsShardService contentsShardService, EntityManager entityManager,
+                                             ContentsValueCodec codec, ApplicationProperties applicationProperties) {
+        this.contentsShardService = contentsShardService;
+        this.entityManager = entityManager;
+        this.codec = codec;
+        this.properties = applicationProperties.getValueCompression();
+    }
+
+    /**
+     * Rewrite the outdated values of the contents of every shard.
+     *
+     * @return the number of values rewritten.
+     */
+    @Scheduled(cron = "${application.value-compression.recompress-cron:0 30 4 * * ?}")
+    public long recompress() {
+        log.debug("Request to recompress the values of the contents");
+        long rewritten = 0;
+        for (String shard : contentsShardService.getShardNames()) {
+            long rewrittenOnShard = recompress(shard);
+            if (rewrittenOnShard > 0) {
+                log.info("Rewrote {} values of the contents of shard {}", rewrittenOnShard, shard);
+            }
+            rewritten += rewrittenOnShard;
+        }
+        return rewritten;
+    }
+
+    private long recompress(String shard) {
+        long rewritten = 0;
+        long last = Long.MIN_VALUE;
+        while (true) {
+            long after = last;
+            long[] batch = contentsShardService.onShard(shard, false, () -> session().doReturningWork(connection -> {
+                List<Object[]> outdated = new ArrayList<>();
+                long lastId = after;
+                int count = 0;
+                try (PreparedStatement statement = connection.prepareStatement(SELECT)) {
+                    statement.setMaxRows(properties.getRecompressBatchSize());
+                    statement.setLong(1, after);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            lastId = resultSet.getLong(1);
+                            count++;
+                            byte[] stored = resultSet.getBytes(2);
+                            if (stored != null && codec.isOutdated(stored)) {
+                                byte[] encoded = codec.encode(ContentsValueCodec.decode(stored));
+                                if (!Arrays.equals(encoded, stored)) {
+                                    outdated.add(new Object[] { lastId, stored, encoded });
+                                }
+                            }
+                        }
+                    }
+                }
+                int updated = 0;
+                if (!outdated.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+                        for (Object[] row : outdated) {
+                            statement.setBytes(1, (byte[]) row[2]);
+                            statement.setLong(2, (Long) row[0]);
+                            statement.setBytes(3, (byte[]) row[1]);
+                            statement.addBatch();
+                        }
+                        for (int result : statement.executeBatch()) {
+                            updated += Math.max(result, 0);
+                        }
+                    }
+                }
+                return new long[] { count, lastId, updated };
+            }));
+            rewritten += batch[2];
+            if (batch[0] < properties.getRecompressBatchSize()) {
+                return rewritten;
+            }
+            last = batch[1];
+        }
+    }
+
+    private Session session() {
+        return entityManager.unwrap(Session.class);
+    }
+}
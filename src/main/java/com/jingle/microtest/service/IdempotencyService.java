@@ -0,0 +1,136 @@
+package com.jingle.microtest.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jingle.microtest.web.rest.errors.IdempotencyKeyReusedException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Service remembering the results of the requests sent with an {@code Idempotency-Key} header, so that a
+ * retried request gets the original result instead of being executed again.
+ * <p>
+ * Results are kept in the {@link #IDEMPOTENCY_KEYS_CACHE} cache, which is bounded and evicts keys after a
+ * time-to-live. Keys are scoped by user, so two users cannot see each other's results. A key is bound to the
+ * SHA-256 digest of the request it was first sent with, and cannot be reused for another request.
+ * <p>
+ * The keys of the requests still running are kept apart from the cache, so that they are never evicted before the
+ * request completes; there are at most as many of them as requests being served.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEYS_CACHE = "idempotencyKeys";
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final Cache<Object, Object> results;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Digests of the requests running, by key.
+     */
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+
+    public IdempotencyService(CacheManager cacheManager, ObjectMapper objectMapper) {
+        this.results = cacheManager.getCache(IDEMPOTENCY_KEYS_CACHE);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Run an action once per key and user, and return its result.
+     * <p>
+     * If the key was already used for the same request, the stored result is returned without running the action.
+     * If the action fails, the key is released so that the request can be retried.
+     *
+     * @param login the login of the user sending the request.
+     * @param key the idempotency key of the request, or {@code null} to always run the action.
+     * @param request the body of the request, compared to the one the key was first sent with.
+     * @param action the action to run.
+     * @param <T> the type of the result.
+     * @return the result of the action, or the result of the first request with the same key.
+     * @throws ConcurrencyFailureException if a request with the same key is still running.
+     * @throws IdempotencyKeyReusedException if the key was sent with another request.
+     */
+    public <T> T execute(String login, String key, Object request, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        String scopedKey = StringUtils.lowerCase(login, Locale.ENGLISH) + ":" + key;
+        String digest = digest(request);
+        Object stored = results.get(scopedKey);
+        if (stored != null) {
+            return replay(scopedKey, digest, stored);
+        }
+        String running = pending.putIfAbsent(scopedKey, digest);
+        if (running != null) {
+            if (!running.equals(digest)) {
+                throw new IdempotencyKeyReusedException();
+            }
+            throw new ConcurrencyFailureException("A request with the same idempotency key is in progress");
+        }
+        try {
+            // The first request may have completed since the cache was read
+            stored = results.get(scopedKey);
+            if (stored != null) {
+                return replay(scopedKey, digest, stored);
+            }
+            T result = action.get();
+            results.put(scopedKey, new Result(digest, result));
+            return result;
+        } finally {
+            pending.remove(scopedKey);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T replay(String scopedKey, String digest, Object stored) {
+        Result result = (Result) stored;
+        if (!result.digest.equals(digest)) {
+            throw new IdempotencyKeyReusedException();
+        }
+        log.debug("Replaying the result of idempotency key : {}", scopedKey);
+        return (T) result.value;
+    }
+
+    private String digest(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Result of a request, with the digest of the request.
+     */
+    private static final class Result {
+
+        private final String digest;
+
+        private final Object value;
+
+        private Result(String digest, Object value) {
+            this.digest = digest;
+            this.value = value;
+        }
+    }
+}
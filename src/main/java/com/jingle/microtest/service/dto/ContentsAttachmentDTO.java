@@ -0,0 +1,100 @@
+package com.jingle.microtest.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A DTO representing the binary attachment of a content.
+ * <p>
+ * {@code sha256} is the hexadecimal SHA-256 digest of the attachment. The attachment is stored in chunks of
+ * {@code chunkSize} bytes, the last one being shorter.
+ */
+public class ContentsAttachmentDTO {
+
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    private String fileName;
+
+    private String contentType;
+
+    private long size;
+
+    private String sha256;
+
+    private ZonedDateTime createdAt;
+
+    @JsonIgnore
+    private long chunkSize;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsAttachmentDTO{" +
+            "id=" + id +
+            ", fileName='" + fileName + "'" +
+            ", contentType='" + contentType + "'" +
+            ", size=" + size +
+            ", sha256='" + sha256 + "'" +
+            ", createdAt='" + createdAt + "'" +
+            "}";
+    }
+}
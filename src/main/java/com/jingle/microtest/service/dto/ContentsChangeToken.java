@@ -0,0 +1,97 @@
+package com.jingle.microtest.service.dto;
+
+import com.jingle.microtest.domain.ContentsTombstone;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Optional;
+
+/**
+ * An opaque position in the changes of a user's contents, ordered by {@code (changeSeq, id)}.
+ * <p>
+ * Contents changed by the same statement share their change sequence, so the id is needed to resume
+ * in the middle of them.
+ */
+public final class ContentsChangeToken implements Comparable<ContentsChangeToken> {
+
+    /**
+     * The position before any change, used for a full synchronization.
+     */
+    public static final ContentsChangeToken START = new ContentsChangeToken(0L, 0L);
+
+    private static final Comparator<ContentsChangeToken> ORDER = Comparator
+        .comparing(ContentsChangeToken::getChangeSeq)
+        .thenComparing(ContentsChangeToken::getId);
+
+    private static final String SEPARATOR = "|";
+
+    private final Long changeSeq;
+
+    private final Long id;
+
+    public ContentsChangeToken(Long changeSeq, Long id) {
+        this.changeSeq = changeSeq;
+        this.id = id;
+    }
+
+    public static ContentsChangeToken of(ContentsDTO contents) {
+        return new ContentsChangeToken(contents.getChangeSeq(), contents.getId());
+    }
+
+    public static ContentsChangeToken of(ContentsTombstone tombstone) {
+        return new ContentsChangeToken(tombstone.getChangeSeq(), tombstone.getId());
+    }
+
+    /**
+     * Decode a token previously produced by {@link #encode()}.
+     *
+     * @param token the opaque token sent by the client.
+     * @return the position, or an empty {@link Optional} if the token is not valid.
+     */
+    public static Optional<ContentsChangeToken> decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = decoded.indexOf(SEPARATOR);
+            if (separatorIndex <= 0) {
+                return Optional.empty();
+            }
+            Long changeSeq = Long.valueOf(decoded.substring(0, separatorIndex));
+            Long id = Long.valueOf(decoded.substring(separatorIndex + 1));
+            return Optional.of(new ContentsChangeToken(changeSeq, id));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Encode this position as an opaque, URL-safe token.
+     *
+     * @return the token.
+     */
+    public String encode() {
+        String raw = changeSeq + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public int compareTo(ContentsChangeToken other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsChangeToken{" +
+            "changeSeq=" + changeSeq +
+            ", id=" + id +
+            "}";
+    }
+}
@@ -0,0 +1,68 @@
+package com.jingle.microtest.service.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing the changes of a user's contents since a synchronization token.
+ * <p>
+ * {@code changed} holds the contents created or updated, in their current state, and {@code deleted} the ids
+ * of the deleted contents, as strings like the ids of the contents. {@code token} is the position to send back on
+ * the next synchronization, and {@code hasMore} tells whether more changes are already waiting after it.
+ */
+public class ContentsChangesDTO {
+
+    private List<ContentsDTO> changed = new ArrayList<>();
+
+    @JsonSerialize(contentUsing = ToStringSerializer.class)
+    private List<Long> deleted = new ArrayList<>();
+
+    private String token;
+
+    private boolean hasMore;
+
+    public List<ContentsDTO> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<ContentsDTO> changed) {
+        this.changed = changed;
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsChangesDTO{" +
+            "changed=" + changed.size() +
+            ", deleted=" + deleted.size() +
+            ", token='" + token + '\'' +
+            ", hasMore=" + hasMore +
+            "}";
+    }
+}
@@ -0,0 +1,85 @@
+package com.jingle.microtest.service.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * An opaque position in a user's contents list, ordered by {@code (createdAt, id)}.
+ * <p>
+ * The next page starts strictly after this position, so fetching a page costs the same
+ * whatever its depth, as opposed to offset pagination.
+ */
+public final class ContentsCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final ZonedDateTime createdAt;
+
+    private final Long id;
+
+    public ContentsCursor(ZonedDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * Get the cursor pointing right after the given content.
+     *
+     * @param contents the last content of a page.
+     * @return the cursor.
+     */
+    public static ContentsCursor of(ContentsDTO contents) {
+        return new ContentsCursor(contents.getCreatedAt(), contents.getId());
+    }
+
+    /**
+     * Decode a cursor previously produced by {@link #encode()}.
+     *
+     * @param token the opaque token sent by the client.
+     * @return the cursor, or an empty {@link Optional} if the token is not valid.
+     */
+    public static Optional<ContentsCursor> decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = decoded.indexOf(SEPARATOR);
+            if (separatorIndex <= 0) {
+                return Optional.empty();
+            }
+            Instant createdAt = Instant.parse(decoded.substring(0, separatorIndex));
+            Long id = Long.valueOf(decoded.substring(separatorIndex + 1));
+            return Optional.of(new ContentsCursor(ZonedDateTime.ofInstant(createdAt, ZoneOffset.UTC), id));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Encode this cursor as an opaque, URL-safe token.
+     *
+     * @return the token.
+     */
+    public String encode() {
+        String raw = createdAt.toInstant().toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsCursor{" +
+            "createdAt=" + createdAt +
+            ", id=" + id +
+            "}";
+    }
+}
@@ -0,0 +1,166 @@
+package com.jingle.microtest.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.domain.converter.ContentsValueCodec;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A DTO representing a content, with the login of its owner.
+ * <p>
+ * It is built directly by the repository queries, so reading contents never loads the owning {@code User}.
+ * When serialized by the application object mapper, it goes through the {@link #FIELDS_FILTER} filter, which
+ * lets clients select the properties they need.
+ * <p>
+ * The queries give the value as it is stored, possibly compressed: it is only decoded when it is first read, so
+ * the values which are not serialized are never decompressed.
+ * <p>
+ * The id is serialized as a string: Snowflake ids are above 2<sup>53</sup>, so JavaScript numbers can not hold
+ * them exactly. Ids sent as numbers or as strings are both accepted.
+ */
+public class ContentsDTO {
+
+    /**
+     * Id of the Jackson filter selecting the serialized properties.
+     */
+    public static final String FIELDS_FILTER = "contentsFields";
+
+    /**
+     * Names of the properties which can be selected.
+     */
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("id", "value", "createdAt", "login", "version")));
+
+    /**
+     * Maximum length of the values.
+     */
+    public static final int VALUE_MAX_LENGTH = 65536;
+
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    @NotNull
+    @Size(max = VALUE_MAX_LENGTH)
+    private String value;
+
+    @JsonIgnore
+    private byte[] storedValue;
+
+    private ZonedDateTime createdAt;
+
+    private String login;
+
+    private Long version;
+
+    @JsonIgnore
+    private Long changeSeq;
+
+    public ContentsDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ContentsDTO(Long id, String value, ZonedDateTime createdAt, String login, Long version) {
+        this.id = id;
+        this.value = value;
+        this.createdAt = createdAt;
+        this.login = login;
+        this.version = version;
+    }
+
+    public ContentsDTO(Long id, byte[] storedValue, ZonedDateTime createdAt, String login, Long version) {
+        this(id, (String) null, createdAt, login, version);
+        this.storedValue = storedValue;
+    }
+
+    public ContentsDTO(Long id, ZonedDateTime createdAt, String login, Long version) {
+        this(id, (String) null, createdAt, login, version);
+    }
+
+    public ContentsDTO(Long id, String value, ZonedDateTime createdAt, String login, Long version, Long changeSeq) {
+        this(id, value, createdAt, login, version);
+        this.changeSeq = changeSeq;
+    }
+
+    public ContentsDTO(Long id, byte[] storedValue, ZonedDateTime createdAt, String login, Long version, Long changeSeq) {
+        this(id, storedValue, createdAt, login, version);
+        this.changeSeq = changeSeq;
+    }
+
+    public ContentsDTO(Contents contents) {
+        this(contents.getId(), contents.getValue(), contents.getCreatedAt(),
+            contents.getUserBelongsTo() == null ? null : contents.getUserBelongsTo().getLogin(), contents.getVersion());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getValue() {
+        if (storedValue != null) {
+            value = ContentsValueCodec.decode(storedValue);
+            storedValue = null;
+        }
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+        this.storedValue = null;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsDTO{" +
+            "id=" + id +
+            ", value='" + getValue() + '\'' +
+            ", createdAt=" + createdAt +
+            ", login='" + login + '\'' +
+            ", version=" + version +
+            "}";
+    }
+}
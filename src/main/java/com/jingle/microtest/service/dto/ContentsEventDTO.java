@@ -0,0 +1,111 @@
+package com.jingle.microtest.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A DTO representing a change of a user's contents, published once the transaction making it is committed.
+ * <p>
+ * The changed contents are given by {@code ids}, or by a {@code [from, to)} creation date range for bulk changes
+ * selected by date. Clients fetch the new state of the contents with their ids, or with {@code /contents/changes}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContentsEventDTO {
+
+    public static final String CREATED = "created";
+
+    public static final String UPDATED = "updated";
+
+    public static final String DELETED = "deleted";
+
+    @JsonIgnore
+    private String login;
+
+    private String type;
+
+    @JsonSerialize(contentUsing = ToStringSerializer.class)
+    private List<Long> ids;
+
+    private ZonedDateTime from;
+
+    private ZonedDateTime to;
+
+    public ContentsEventDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public static ContentsEventDTO of(String type, String login, Collection<Long> ids) {
+        ContentsEventDTO event = new ContentsEventDTO();
+        event.setType(type);
+        event.setLogin(login);
+        event.setIds(new ArrayList<>(ids));
+        return event;
+    }
+
+    public static ContentsEventDTO of(String type, String login, ZonedDateTime from, ZonedDateTime to) {
+        ContentsEventDTO event = new ContentsEventDTO();
+        event.setType(type);
+        event.setLogin(login);
+        event.setFrom(from);
+        event.setTo(to);
+        return event;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public ZonedDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(ZonedDateTime from) {
+        this.from = from;
+    }
+
+    public ZonedDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(ZonedDateTime to) {
+        this.to = to;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsEventDTO{" +
+            "login='" + login + '\'' +
+            ", type='" + type + '\'' +
+            ", ids=" + ids +
+            ", from=" + from +
+            ", to=" + to +
+            "}";
+    }
+}
@@ -0,0 +1,69 @@
+package com.jingle.microtest.service.dto;
+
+/**
+ * A DTO representing the move of a user's contents to another shard.
+ * <p>
+ * {@code moved} is the number of contents copied to the target shard, or {@code null} when the move was only planned
+ * or was skipped.
+ */
+public class ContentsShardMoveDTO {
+
+    private String login;
+
+    private String source;
+
+    private String target;
+
+    private Long moved;
+
+    public ContentsShardMoveDTO() {
+    }
+
+    public ContentsShardMoveDTO(String login, String source, String target) {
+        this.login = login;
+        this.source = source;
+        this.target = target;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public Long getMoved() {
+        return moved;
+    }
+
+    public void setMoved(Long moved) {
+        this.moved = moved;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsShardMoveDTO{" +
+            "login='" + login + "'" +
+            ", source='" + source + "'" +
+            ", target='" + target + "'" +
+            ", moved=" + moved +
+            "}";
+    }
+}
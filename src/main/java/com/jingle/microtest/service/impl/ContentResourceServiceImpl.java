@@ -1,30 +1,90 @@
 package com.jingle.microtest.service.impl;
 
+import com.jingle.microtest.aop.sharding.ShardKey;
 import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.domain.ContentsTombstone;
+import com.jingle.microtest.repository.ContentsTombstoneRepository;
 import com.jingle.microtest.service.ContentResourceService;
+import com.jingle.microtest.service.ContentsShardService;
 import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.service.dto.ContentsChangeToken;
+import com.jingle.microtest.service.dto.ContentsChangesDTO;
+import com.jingle.microtest.service.dto.ContentsCursor;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import com.jingle.microtest.service.mapper.ContentsMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service Implementation for managing {@link Contents}.
+ * <p>
+ * Every change is published as a {@link ContentsEventDTO}, delivered to the listeners once the transaction is committed.
+ * <p>
+ * The contents of a user are all stored on the same shard: the methods used on behalf of a user run on its shard,
+ * given by their {@link ShardKey} parameter, and the other ones go through all the shards.
  */
 @Service
 @Transactional
 public class ContentResourceServiceImpl implements ContentResourceService {
 
+    private static final String CHANGE_SEQUENCE = "contents_change_seq";
+
     private final Logger log = LoggerFactory.getLogger(ContentResourceServiceImpl.class);
 
     private final ContentResourceRepository contentResourceRepository;
 
-    public ContentResourceServiceImpl(ContentResourceRepository contentResourceRepository) {
+    private final ContentsMapper contentsMapper;
+
+    private final ContentsShardService contentsShardService;
+
+    private final EntityManager entityManager;
+
+    private final ContentsTombstoneRepository contentsTombstoneRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ContentResourceServiceImpl(ContentResourceRepository contentResourceRepository, ContentsMapper contentsMapper,
+                                      ContentsShardService contentsShardService, EntityManager entityManager,
+                                      ContentsTombstoneRepository contentsTombstoneRepository,
+                                      ApplicationEventPublisher eventPublisher) {
         this.contentResourceRepository = contentResourceRepository;
+        this.contentsMapper = contentsMapper;
+        this.contentsShardService = contentsShardService;
+        this.entityManager = entityManager;
+        this.contentsTombstoneRepository = contentsTombstoneRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -34,13 +94,51 @@ public class ContentResourceServiceImpl implements ContentResourceService {
      * @return the persisted entity.
      */
     @Override
-    public Contents save(Contents contents) {
+    public Contents save(@ShardKey Contents contents) {
         log.debug("Request to save Contents : {}", contents);
-        return contentResourceRepository.save(contents);
+        boolean created = contents.getId() == null;
+        Set<Long> ownerIds = new HashSet<>();
+        if (contents.getUserBelongsTo() != null) {
+            ownerIds.add(contents.getUserBelongsTo().getId());
+        }
+        contents.setChangeSeq(nextChangeSeq(ownerIds));
+        Contents result = contentResourceRepository.save(contents);
+        if (result.getUserBelongsTo() != null) {
+            eventPublisher.publishEvent(ContentsEventDTO.of(created ? ContentsEventDTO.CREATED : ContentsEventDTO.UPDATED,
+                result.getUserBelongsTo().getLogin(), Collections.singletonList(result.getId())));
+        }
+        return result;
+    }
+
+    /**
+     * Save several contents in a single transaction.
+     * <p>
+     * Identifiers are generated in-process by the Snowflake generator, without any database round trip,
+     * so inserts are only issued at flush time and are grouped into JDBC batches of
+     * {@code hibernate.jdbc.batch_size} statements. All the contents share the same change sequence.
+     *
+     * @param contents the entities to save.
+     * @return the persisted entities.
+     */
+    @Override
+    public List<Contents> saveAll(@ShardKey List<Contents> contents) {
+        log.debug("Request to save {} Contents", contents.size());
+        Long changeSeq = nextChangeSeq(contents.stream()
+            .filter(content -> content.getUserBelongsTo() != null)
+            .map(content -> content.getUserBelongsTo().getId())
+            .collect(Collectors.toSet()));
+        contents.forEach(content -> content.setChangeSeq(changeSeq));
+        List<Contents> result = contentResourceRepository.saveAll(contents);
+        result.stream()
+            .filter(content -> content.getUserBelongsTo() != null)
+            .collect(Collectors.groupingBy(content -> content.getUserBelongsTo().getLogin(),
+                Collectors.mapping(Contents::getId, Collectors.toList())))
+            .forEach((login, ids) -> eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.CREATED, login, ids)));
+        return result;
     }
 
     /**
-     * Get all the contents.
+     * Get all the contents, from all the shards.
      *
      * @return the list of entities.
      */
@@ -48,12 +146,175 @@ public class ContentResourceServiceImpl implements ContentResourceService {
     @Transactional(readOnly = true)
     public List<Contents> findAll() {
         log.debug("Request to get all contents");
-        return contentResourceRepository.findAll();
+        return contentsShardService.onAllShards(true, shard -> contentResourceRepository.findAll()).values().stream()
+            .flatMap(List::stream)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get all the contents owned by a user.
+     *
+     * @param login the login of the owner.
+     * @return the list of contents.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ContentsDTO> findAllByOwner(@ShardKey String login) {
+        log.debug("Request to get all contents of user : {}", login);
+        return contentResourceRepository.findAllByOwnerLogin(StringUtils.lowerCase(login, Locale.ENGLISH));
     }
 
+    /**
+     * Get a page of the contents owned by a user, ordered by creation date.
+     * <p>
+     * One more content than requested is read, to know whether a next page exists without a count query.
+     * When the values are not needed, they are left out of the SQL projection.
+     *
+     * @param login the login of the owner.
+     * @param after the position to start after, or {@code null} for the first page.
+     * @param size the maximum number of contents to return.
+     * @param withValue whether the values must be read.
+     * @return the slice of contents.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ContentsDTO> findAllByOwner(@ShardKey String login, ContentsCursor after, int size, boolean withValue) {
+        log.debug("Request to get a page of contents of user : {} after {}", login, after);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Pageable pageable = PageRequest.of(0, size + 1);
+        List<ContentsDTO> contents;
+        if (withValue) {
+            contents = after == null
+                ? contentResourceRepository.findAllByOwnerLogin(ownerLogin, pageable)
+                : contentResourceRepository.findAllByOwnerLoginAfter(ownerLogin, after.getCreatedAt(), after.getId(), pageable);
+        } else {
+            contents = after == null
+                ? contentResourceRepository.findAllSummariesByOwnerLogin(ownerLogin, pageable)
+                : contentResourceRepository.findAllSummariesByOwnerLoginAfter(ownerLogin, after.getCreatedAt(), after.getId(), pageable);
+        }
+        boolean hasNext = contents.size() > size;
+        return new SliceImpl<>(hasNext ? contents.subList(0, size) : contents, PageRequest.of(0, size), hasNext);
+    }
 
     /**
-     * Get one content by id.
+     * Get the contents with the given ids, if they are owned by the given user.
+     * <p>
+     * Contents held by the second-level cache are read from it, and the misses are fetched with a single
+     * {@code IN} query.
+     *
+     * @param login the login of the owner.
+     * @param ids the ids of the contents.
+     * @return the contents found, in the order of the ids.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ContentsDTO> findAllByOwner(@ShardKey String login, Collection<Long> ids) {
+        log.debug("Request to get Contents : {} of user : {}", ids, login);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Map<Long, ContentsDTO> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        Long ownerId = null;
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (!cache.contains(Contents.class, id)) {
+                misses.add(id);
+                continue;
+            }
+            if (ownerId == null) {
+                Optional<Long> owner = contentResourceRepository.findOwnerIdByLogin(ownerLogin);
+                if (!owner.isPresent()) {
+                    return new ArrayList<>();
+                }
+                ownerId = owner.get();
+            }
+            Contents cached = entityManager.find(Contents.class, id);
+            if (cached != null && cached.getUserBelongsTo() != null
+                && ownerId.equals(persistenceUnitUtil.getIdentifier(cached.getUserBelongsTo()))) {
+                found.put(id, new ContentsDTO(cached.getId(), cached.getValue(), cached.getCreatedAt(), ownerLogin, cached.getVersion()));
+            }
+        }
+        if (!misses.isEmpty()) {
+            contentResourceRepository.findAllByIdInAndOwnerLogin(misses, ownerLogin)
+                .forEach(content -> found.put(content.getId(), content));
+        }
+        List<ContentsDTO> result = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (found.containsKey(id)) {
+                result.add(found.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the changes of the contents owned by a user after a synchronization token.
+     * <p>
+     * Contents and tombstones are both read in {@code (changeSeq, id)} order from the token on, and merged, so the
+     * cost depends on the number of changes and not on the number of contents. A full synchronization, from
+     * {@link ContentsChangeToken#START}, skips the tombstones since the client has nothing to delete.
+     * <p>
+     * The changes of a user get their sequences in the order they are committed, as the user is locked before a
+     * sequence is allocated, and both kinds of changes are read from the same snapshot: so a change is never
+     * committed after the returned position with a lower sequence, and no change is missed.
+     *
+     * @param login the login of the owner.
+     * @param since the position to start after.
+     * @param size the maximum number of changes to return.
+     * @return the changes.
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public ContentsChangesDTO findChangesByOwner(@ShardKey String login, ContentsChangeToken since, int size) {
+        log.debug("Request to get the changes of contents of user : {} after {}", login, since);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        Pageable pageable = PageRequest.of(0, size + 1);
+        List<ContentsDTO> changed = contentResourceRepository.findAllByOwnerLoginChangedAfter(ownerLogin,
+            since.getChangeSeq(), since.getId(), pageable);
+        List<ContentsTombstone> deleted = since.compareTo(ContentsChangeToken.START) == 0 ? new ArrayList<>()
+            : contentsTombstoneRepository.findAllByOwnerLoginAfter(ownerLogin, since.getChangeSeq(), since.getId(), pageable);
+        ContentsChangesDTO changes = new ContentsChangesDTO();
+        ContentsChangeToken last = since;
+        int changedIndex = 0;
+        int deletedIndex = 0;
+        while (changedIndex + deletedIndex < size && (changedIndex < changed.size() || deletedIndex < deleted.size())) {
+            if (deletedIndex == deleted.size() || (changedIndex < changed.size()
+                && ContentsChangeToken.of(changed.get(changedIndex)).compareTo(ContentsChangeToken.of(deleted.get(deletedIndex))) < 0)) {
+                ContentsDTO content = changed.get(changedIndex++);
+                changes.getChanged().add(content);
+                last = ContentsChangeToken.of(content);
+            } else {
+                ContentsTombstone tombstone = deleted.get(deletedIndex++);
+                changes.getDeleted().add(tombstone.getId());
+                last = ContentsChangeToken.of(tombstone);
+            }
+        }
+        changes.setToken(last.encode());
+        changes.setHasMore(changedIndex < changed.size() || deletedIndex < deleted.size());
+        return changes;
+    }
+
+    /**
+     * Process all the contents owned by a user one at a time.
+     * <p>
+     * Rows are read through a forward-only cursor and projected to DTOs, so the persistence context
+     * does not grow with the number of rows.
+     *
+     * @param login the login of the owner.
+     * @param action the action to run on each content.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachByOwner(@ShardKey String login, Consumer<ContentsDTO> action) {
+        log.debug("Request to process all contents of user : {}", login);
+        try (Stream<ContentsDTO> contents = contentResourceRepository.streamAllByOwnerLogin(StringUtils.lowerCase(login, Locale.ENGLISH))) {
+            contents.forEach(action);
+        }
+    }
+
+
+    /**
+     * Get one content by id, looking for it on each shard in turn.
      *
      * @param id the id of the entity.
      * @return the entity.
@@ -62,17 +323,262 @@ public class ContentResourceServiceImpl implements ContentResourceService {
     @Transactional(readOnly = true)
     public Optional<Contents> findOne(Long id) {
         log.debug("Request to get Contents : {}", id);
-        return contentResourceRepository.findById(id);
+        for (String shard : contentsShardService.getShardNames()) {
+            Optional<Contents> contents = contentsShardService.onShard(shard, true, () -> contentResourceRepository.findById(id));
+            if (contents.isPresent()) {
+                return contents;
+            }
+        }
+        return Optional.empty();
     }
 
     /**
-     * Delete the content by id.
+     * Get one content by id, if it is owned by the given user.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return the content.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ContentsDTO> findOneByOwner(Long id, @ShardKey String login) {
+        log.debug("Request to get Contents : {} of user : {}", id, login);
+        return contentResourceRepository.findOneByIdAndOwnerLogin(id, StringUtils.lowerCase(login, Locale.ENGLISH));
+    }
+
+    /**
+     * Delete the content by id, on the shard holding it.
      *
      * @param id the id of the entity.
      */
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Contents : {}", id);
+        for (String shard : contentsShardService.getShardNames()) {
+            boolean deleted = contentsShardService.onShard(shard, false, () -> {
+                Long changeSeq = nextChangeSeq(new HashSet<>(contentResourceRepository.findAllOwnerIdsById(id)));
+                if (contentsTombstoneRepository.insertById(id, changeSeq) == 0) {
+                    return false;
+                }
+                contentResourceRepository.deleteById(id);
+                return true;
+            });
+            if (deleted) {
+                return;
+            }
+        }
+        // Fails as when the content does not exist
         contentResourceRepository.deleteById(id);
     }
+
+    /**
+     * Update a content, if it is owned by the given user.
+     * <p>
+     * The ownership check, the optional version check and the update are done by the same statement.
+     *
+     * @param contentsDTO the content to update.
+     * @param login the login of the owner.
+     * @param expectedVersion the version the content must still have, or {@code null}.
+     * @return true if the content was updated.
+     */
+    @Override
+    public boolean updateByOwner(ContentsDTO contentsDTO, @ShardKey String login, Long expectedVersion) {
+        log.debug("Request to update Contents : {} of user : {} at version : {}", contentsDTO, login, expectedVersion);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        ZonedDateTime createdAt = contentsDTO.getCreatedAt() == null ? ZonedDateTime.now() : contentsDTO.getCreatedAt();
+        int updated = expectedVersion == null
+            ? contentResourceRepository.updateByIdAndOwnerLogin(contentsDTO.getId(), ownerLogin,
+                contentsDTO.getValue(), createdAt, nextChangeSeq(ownerLogin))
+            : contentResourceRepository.updateByIdAndVersionAndOwnerLogin(contentsDTO.getId(), expectedVersion, ownerLogin,
+                contentsDTO.getValue(), createdAt, nextChangeSeq(ownerLogin));
+        if (updated == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.UPDATED, ownerLogin, Collections.singletonList(contentsDTO.getId())));
+        return true;
+    }
+
+    /**
+     * Partially update a content, if it is owned by the given user.
+     * <p>
+     * {@link Contents} uses dynamic updates, so the UPDATE statement only sets the changed columns.
+     *
+     * @param id the id of the content.
+     * @param contentsDTO the fields to change.
+     * @param login the login of the owner.
+     * @return the updated content.
+     */
+    @Override
+    public Optional<ContentsDTO> partialUpdateByOwner(Long id, ContentsDTO contentsDTO, @ShardKey String login) {
+        log.debug("Request to partially update Contents : {} of user : {} with : {}", id, login, contentsDTO);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        return contentResourceRepository.findEntityByIdAndOwnerLogin(id, ownerLogin)
+            .map(existing -> {
+                contentsMapper.partialUpdate(existing, contentsDTO);
+                existing.setChangeSeq(nextChangeSeq(ownerLogin));
+                return contentResourceRepository.saveAndFlush(existing);
+            })
+            .map(updated -> {
+                eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.UPDATED, ownerLogin, Collections.singletonList(id)));
+                return new ContentsDTO(updated.getId(), updated.getValue(), updated.getCreatedAt(), ownerLogin, updated.getVersion());
+            });
+    }
+
+    /**
+     * Delete a content, if it is owned by the given user.
+     * <p>
+     * The ownership check and the delete are done by the same statement, and the tombstone is only written
+     * if a content was deleted.
+     *
+     * @param id the id of the content.
+     * @param login the login of the owner.
+     * @return true if the content was deleted.
+     */
+    @Override
+    public boolean deleteByOwner(Long id, @ShardKey String login) {
+        log.debug("Request to delete Contents : {} of user : {}", id, login);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        if (contentResourceRepository.deleteByIdAndOwnerLogin(id, ownerLogin) == 0) {
+            return false;
+        }
+        contentsTombstoneRepository.insertByIdAndOwnerLogin(id, ownerLogin, nextChangeSeq(ownerLogin));
+        eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.DELETED, ownerLogin, Collections.singletonList(id)));
+        return true;
+    }
+
+    /**
+     * Delete the contents of a user with the given ids, in a single statement after the one writing their tombstones.
+     * <p>
+     * The ids of the contents of the user are selected first, so that the change only names them: the listeners
+     * must not act on the contents of other users.
+     *
+     * @param login the login of the owner.
+     * @param ids the ids of the entities.
+     * @return the number of deleted entities.
+     */
+    @Override
+    public int deleteAllByOwner(@ShardKey String login, Collection<Long> ids) {
+        log.debug("Request to delete Contents of user : {} with ids : {}", login, ids);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        List<Long> owned = contentResourceRepository.findAllIdsByIdInAndOwnerLogin(ids, ownerLogin);
+        if (owned.isEmpty()) {
+            return 0;
+        }
+        contentsTombstoneRepository.insertAllByIdInAndOwnerLogin(owned, ownerLogin, nextChangeSeq(ownerLogin));
+        int deleted = contentResourceRepository.deleteAllByIdInAndOwnerLogin(owned, ownerLogin);
+        if (deleted > 0) {
+            eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.DELETED, ownerLogin, owned));
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete the contents of a user created in a range, in a single statement after the one writing their tombstones.
+     *
+     * @param login the login of the owner.
+     * @param from the start of the range, inclusive.
+     * @param to the end of the range, exclusive.
+     * @return the number of deleted entities.
+     */
+    @Override
+    public int deleteAllByOwner(@ShardKey String login, ZonedDateTime from, ZonedDateTime to) {
+        log.debug("Request to delete Contents of user : {} created between {} and {}", login, from, to);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        contentsTombstoneRepository.insertAllByCreatedAtBetweenAndOwnerLogin(from, to, ownerLogin, nextChangeSeq(ownerLogin));
+        int deleted = contentResourceRepository.deleteAllByCreatedAtBetweenAndOwnerLogin(from, to, ownerLogin);
+        if (deleted > 0) {
+            eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.DELETED, ownerLogin, from, to));
+        }
+        return deleted;
+    }
+
+    /**
+     * Set the value of the contents of a user with the given ids, in a single statement.
+     * <p>
+     * As for the deletion, the change only names the contents of the user.
+     *
+     * @param login the login of the owner.
+     * @param ids the ids of the entities.
+     * @param value the new value.
+     * @return the number of updated entities.
+     */
+    @Override
+    public int updateValueByOwner(@ShardKey String login, Collection<Long> ids, String value) {
+        log.debug("Request to update Contents of user : {} with ids : {}", login, ids);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        List<Long> owned = contentResourceRepository.findAllIdsByIdInAndOwnerLogin(ids, ownerLogin);
+        if (owned.isEmpty()) {
+            return 0;
+        }
+        int updated = contentResourceRepository.updateValueByIdInAndOwnerLogin(value, owned, ownerLogin, nextChangeSeq(ownerLogin));
+        if (updated > 0) {
+            eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.UPDATED, ownerLogin, owned));
+        }
+        return updated;
+    }
+
+    /**
+     * Set the value of the contents of a user created in a range, in a single statement.
+     *
+     * @param login the login of the owner.
+     * @param from the start of the range, inclusive.
+     * @param to the end of the range, exclusive.
+     * @param value the new value.
+     * @return the number of updated entities.
+     */
+    @Override
+    public int updateValueByOwner(@ShardKey String login, ZonedDateTime from, ZonedDateTime to, String value) {
+        log.debug("Request to update Contents of user : {} created between {} and {}", login, from, to);
+        String ownerLogin = StringUtils.lowerCase(login, Locale.ENGLISH);
+        int updated = contentResourceRepository.updateValueByCreatedAtBetweenAndOwnerLogin(value, from, to, ownerLogin, nextChangeSeq(ownerLogin));
+        if (updated > 0) {
+            eventPublisher.publishEvent(ContentsEventDTO.of(ContentsEventDTO.UPDATED, ownerLogin, from, to));
+        }
+        return updated;
+    }
+
+    /**
+     * Allocate the change sequence of a change of the contents of a user, once the user is locked.
+     *
+     * @param login the login of the owner.
+     * @return the change sequence.
+     * @see #nextChangeSeq(Set)
+     */
+    private Long nextChangeSeq(String login) {
+        entityManager.createNativeQuery("select id from jhi_user where login = :login for update")
+            .setParameter("login", login)
+            .getResultList();
+        return nextChangeSeq();
+    }
+
+    /**
+     * Allocate the change sequence of a change of the contents of some users, once the users are locked.
+     * <p>
+     * The users stay locked until the end of the transaction, so that the changes of a user get their sequences one
+     * transaction after the other, each one committed before the next one gets a higher sequence. A client reading
+     * the changes after a position thus never misses a change committed later with a lower sequence.
+     *
+     * @param ownerIds the ids of the owners.
+     * @return the change sequence.
+     */
+    private Long nextChangeSeq(Set<Long> ownerIds) {
+        if (!ownerIds.isEmpty()) {
+            // In the order of the ids, so that transactions changing the contents of several users do not deadlock
+            entityManager.createNativeQuery("select id from jhi_user where id in (:ids) order by id for update")
+                .setParameter("ids", new TreeSet<>(ownerIds))
+                .getResultList();
+        }
+        return nextChangeSeq();
+    }
+
+    /**
+     * Allocate the next value of the contents change sequence, in the SQL dialect of the database.
+     *
+     * @return the change sequence.
+     */
+    private Long nextChangeSeq() {
+        String sql = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+            .getJdbcServices().getDialect().getSequenceNextValString(CHANGE_SEQUENCE);
+        return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+    }
 }
@@ -0,0 +1,61 @@
+package com.jingle.microtest.service.mapper;
+
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.dto.ContentsDTO;
+
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Mapper for the entity {@link Contents} and its DTO called {@link ContentsDTO}.
+ * <p>
+ * The owner is never mapped from the DTO: it is always set by the caller from the current user.
+ */
+@Service
+public class ContentsMapper {
+
+    public List<ContentsDTO> contentsToContentsDTOs(List<Contents> contents) {
+        return contents.stream()
+            .filter(Objects::nonNull)
+            .map(this::contentsToContentsDTO)
+            .collect(Collectors.toList());
+    }
+
+    public ContentsDTO contentsToContentsDTO(Contents contents) {
+        return new ContentsDTO(contents);
+    }
+
+    public Contents contentsDTOToContents(ContentsDTO contentsDTO) {
+        if (contentsDTO == null) {
+            return null;
+        }
+        Contents contents = new Contents();
+        contents.setId(contentsDTO.getId());
+        contents.setValue(contentsDTO.getValue());
+        if (contentsDTO.getCreatedAt() != null) {
+            contents.setCreatedAt(contentsDTO.getCreatedAt());
+        }
+        return contents;
+    }
+
+    /**
+     * Copy the non-null fields of the DTO to the entity, leaving the others untouched.
+     * <p>
+     * The fields are all required, so a {@code null} field means it was not given: removing one must be rejected
+     * before, as the DTO cannot tell it apart.
+     *
+     * @param contents the entity to update.
+     * @param contentsDTO the fields to change.
+     */
+    public void partialUpdate(Contents contents, ContentsDTO contentsDTO) {
+        if (contentsDTO.getValue() != null) {
+            contents.setValue(contentsDTO.getValue());
+        }
+        if (contentsDTO.getCreatedAt() != null) {
+            contents.setCreatedAt(contentsDTO.getCreatedAt());
+        }
+    }
+}
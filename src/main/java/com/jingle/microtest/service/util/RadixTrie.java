@@ -0,0 +1,266 @@
+package com.jingle.microtest.service.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Radix trie mapping string keys to values, for prefix lookups.
+ * <p>
+ * Each edge holds the longest label shared by the keys below it, so a trie has at most two nodes per key, and
+ * the children of a node are kept in a sorted array rather than a map. A key added several times is counted, and
+ * only removed with its last occurrence.
+ * <p>
+ * The trie keeps an estimate of its heap size, for a 64-bit JVM with compressed references. It is not thread-safe.
+ */
+public final class RadixTrie {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     * Header and fields of a {@link Node}.
+     */
+    private static final long NODE_BYTES = 32;
+
+    private final Node root = new Node("");
+
+    private int size;
+
+    private long estimatedBytes = NODE_BYTES + stringBytes("");
+
+    /**
+     * Add an occurrence of a key.
+     *
+     * @param key the key.
+     * @param value the value returned for the key, replacing the previous one.
+     */
+    public void add(String key, String value) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = indexOf(node, key.charAt(position));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(position));
+                estimatedBytes += NODE_BYTES + stringBytes(leaf.label);
+                setChildren(node, insert(node.children, -index - 1, leaf));
+                node = leaf;
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonLength(child.label, key, position);
+            if (common < child.label.length()) {
+                // The key leaves the edge before its end: split it
+                Node middle = new Node(child.label.substring(0, common));
+                estimatedBytes += NODE_BYTES + stringBytes(middle.label) - stringBytes(child.label);
+                child.label = child.label.substring(common);
+                estimatedBytes += stringBytes(child.label);
+                setChildren(middle, new Node[]{child});
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+        if (node.count == 0) {
+            size++;
+        }
+        node.count++;
+        estimatedBytes += stringBytes(value) - stringBytes(node.value);
+        node.value = value;
+    }
+
+    /**
+     * Remove an occurrence of a key.
+     *
+     * @param key the key.
+     * @return false if the key was not found.
+     */
+    public boolean remove(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            path.add(node);
+            int index = indexOf(node, key.charAt(position));
+            if (index < 0 || !key.startsWith(node.children[index].label, position)) {
+                return false;
+            }
+            node = node.children[index];
+            position += node.label.length();
+        }
+        if (node.count == 0) {
+            return false;
+        }
+        if (--node.count > 0) {
+            return true;
+        }
+        size--;
+        estimatedBytes -= stringBytes(node.value);
+        node.value = null;
+        if (node == root) {
+            return true;
+        }
+        Node parent = path.get(path.size() - 1);
+        if (node.children.length == 0) {
+            estimatedBytes -= NODE_BYTES + stringBytes(node.label);
+            setChildren(parent, remove(parent.children, indexOf(parent, node.label.charAt(0))));
+            if (parent != root && parent.count == 0 && parent.children.length == 1) {
+                merge(path.get(path.size() - 2), parent);
+            }
+        } else if (node.children.length == 1) {
+            merge(parent, node);
+        }
+        return true;
+    }
+
+    /**
+     * Get the values of the keys starting with a prefix, in the order of the keys.
+     *
+     * @param prefix the prefix.
+     * @param limit the maximum number of values to return.
+     * @return the values.
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            int index = indexOf(node, prefix.charAt(position));
+            if (index < 0) {
+                return Collections.emptyList();
+            }
+            Node child = node.children[index];
+            int common = commonLength(child.label, prefix, position);
+            if (position + common < prefix.length() && common < child.label.length()) {
+                return Collections.emptyList();
+            }
+            node = child;
+            position += common;
+        }
+        List<String> values = new ArrayList<>(Math.min(limit, size));
+        collect(node, values, limit);
+        return values;
+    }
+
+    /**
+     * Get the number of distinct keys.
+     *
+     * @return the number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get an estimate of the heap used by the trie, values included.
+     *
+     * @return the number of bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Estimate the heap used by a string, on Java 8.
+     *
+     * @param value the string, or {@code null}.
+     * @return the number of bytes.
+     */
+    public static long stringBytes(String value) {
+        return value == null ? 0 : 24 + align(16 + 2L * value.length());
+    }
+
+    private static void collect(Node node, List<String> values, int limit) {
+        if (values.size() >= limit) {
+            return;
+        }
+        if (node.count > 0) {
+            values.add(node.value);
+        }
+        for (Node child : node.children) {
+            collect(child, values, limit);
+        }
+    }
+
+    /**
+     * Replace a node which has no key and a single child by this child.
+     */
+    private void merge(Node parent, Node node) {
+        Node child = node.children[0];
+        estimatedBytes -= NODE_BYTES + stringBytes(node.label) + arrayBytes(node.children) + stringBytes(child.label);
+        child.label = node.label + child.label;
+        estimatedBytes += stringBytes(child.label);
+        parent.children[indexOf(parent, node.label.charAt(0))] = child;
+    }
+
+    private void setChildren(Node node, Node[] children) {
+        estimatedBytes += arrayBytes(children) - arrayBytes(node.children);
+        node.children = children;
+    }
+
+    private static int indexOf(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char label = node.children[middle].label.charAt(0);
+            if (label < first) {
+                low = middle + 1;
+            } else if (label > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int commonLength(String label, String key, int position) {
+        int length = Math.min(label.length(), key.length() - position);
+        int common = 0;
+        while (common < length && label.charAt(common) == key.charAt(position + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    private static Node[] insert(Node[] children, int index, Node child) {
+        Node[] inserted = new Node[children.length + 1];
+        System.arraycopy(children, 0, inserted, 0, index);
+        inserted[index] = child;
+        System.arraycopy(children, index, inserted, index + 1, children.length - index);
+        return inserted;
+    }
+
+    private static Node[] remove(Node[] children, int index) {
+        if (children.length == 1) {
+            return NO_CHILDREN;
+        }
+        Node[] removed = Arrays.copyOf(children, children.length - 1);
+        System.arraycopy(children, index + 1, removed, index, children.length - index - 1);
+        return removed;
+    }
+
+    private static long arrayBytes(Node[] array) {
+        return array.length == 0 ? 0 : align(16 + 4L * array.length);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static final class Node {
+
+        private String label;
+
+        private Node[] children = NO_CHILDREN;
+
+        private String value;
+
+        private int count;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
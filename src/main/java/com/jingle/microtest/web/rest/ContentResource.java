@@ -1,30 +1,61 @@
 package com.jingle.microtest.web.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.jingle.microtest.config.MappingJackson2MessagePackHttpMessageConverter;
 import com.jingle.microtest.domain.Contents;
 import com.jingle.microtest.domain.User;
 import com.jingle.microtest.repository.UserRepository;
 import com.jingle.microtest.service.ContentResourceService;
+import com.jingle.microtest.service.IdempotencyService;
+import com.jingle.microtest.service.dto.ContentsChangeToken;
+import com.jingle.microtest.service.dto.ContentsChangesDTO;
+import com.jingle.microtest.service.dto.ContentsCursor;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.mapper.ContentsMapper;
 import com.jingle.microtest.web.rest.errors.BadRequestAlertException;
+import com.jingle.microtest.web.rest.vm.ContentsBatchResultVM;
+import com.jingle.microtest.web.rest.vm.ContentsBulkUpdateVM;
 import io.github.jhipster.web.util.HeaderUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.cloudfoundry.com.fasterxml.jackson.annotation.JsonView;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * REST controller for managing {@link Contents}.
@@ -37,6 +68,34 @@ public class ContentResource {
 
     private static final String ENTITY_NAME = "contents";
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final String APPLICATION_MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    /**
+     * Fields a merge patch cannot remove.
+     */
+    private static final List<String> REQUIRED_FIELDS = Arrays.asList("value", "createdAt");
+
+    /**
+     * Formats the contents can be read in, in the order they are chosen when the client accepts several of them.
+     */
+    private static final List<MediaType> REPRESENTATION_TYPES = Collections.unmodifiableList(Arrays.asList(
+        MediaType.APPLICATION_JSON,
+        MediaType.valueOf("application/x-jackson-smile"),
+        MediaType.valueOf("application/cbor"),
+        MediaType.valueOf(MappingJackson2MessagePackHttpMessageConverter.APPLICATION_MSGPACK_VALUE)));
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -44,96 +103,363 @@ public class ContentResource {
 
     private final UserRepository userRepository;
 
-    public ContentResource(ContentResourceService contentResourceService, UserRepository userRepository) {
+    private final ContentsMapper contentsMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final IdempotencyService idempotencyService;
+
+    public ContentResource(ContentResourceService contentResourceService, UserRepository userRepository,
+                           ContentsMapper contentsMapper, ObjectMapper objectMapper, Validator validator,
+                           IdempotencyService idempotencyService) {
         this.contentResourceService = contentResourceService;
         this.userRepository = userRepository;
+        this.contentsMapper = contentsMapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * {@code POST  /contents} : Create a new content.
+     * <p>
+     * When an {@code Idempotency-Key} header is given, a retry of the request with the same key gets the response
+     * of the first one, and no other content is created. The key cannot be reused for another content.
      *
-     * @param contents the content to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new contents, or with status {@code 400 (Bad Request)} if the contents has already an ID.
+     * @param contentsDTO the content to create.
+     * @param idempotencyKey the key identifying the request across retries, if any.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new contents, or with status {@code 400 (Bad Request)} if the contents has already an ID,
+     * or with status {@code 409 (Conflict)} if a request with the same key is still running,
+     * or with status {@code 422 (Unprocessable Entity)} if the key was sent with another content.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/contents")
-    public ResponseEntity<Contents> createContent(@Valid @RequestBody Contents contents, HttpServletRequest request) throws URISyntaxException {
-        log.debug("REST request to save Contents : {}", contents);
-        if (contents.getId() != null) {
+    public ResponseEntity<ContentsDTO> createContent(@Valid @RequestBody ContentsDTO contentsDTO,
+                                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                     HttpServletRequest request) throws URISyntaxException {
+        log.debug("REST request to save Contents : {}", contentsDTO);
+        if (contentsDTO.getId() != null) {
             throw new BadRequestAlertException("A new contents cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        if (contents.getUserBelongsTo() == null) {
-            Optional<User> optionalUser = userRepository.findOneByLogin(request.getRemoteUser());
-            optionalUser.ifPresent(contents::setUserBelongsTo);
-        }
-        Contents result = contentResourceService.save(contents);
-        //Hiding password in JSON response
-        User temporal = result.getUserBelongsTo();
-        temporal.setPassword("");
-        result.setUserBelongsTo(temporal);
+        String scopedKey = scopeIdempotencyKey("contents", idempotencyKey);
+        ContentsDTO result = idempotencyService.execute(request.getRemoteUser(), scopedKey, contentsDTO, () -> {
+            Contents contents = contentsMapper.contentsDTOToContents(contentsDTO);
+            contents.setUserBelongsTo(findCurrentUser(request));
+            return contentsMapper.contentsToContentsDTO(contentResourceService.save(contents));
+        });
         return ResponseEntity.created(new URI("/api/contents/" + result.getId()))
+            .eTag(versionETag(result.getVersion(), representation(request, null)))
+            .varyBy(HttpHeaders.ACCEPT)
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
             .body(result);
     }
 
+    /**
+     * {@code POST  /contents/batch} : Create several new contents in one transaction.
+     * <p>
+     * Every item is owned by the current user. Invalid items are reported and skipped, the valid ones are
+     * inserted together. As for a single creation, an {@code Idempotency-Key} header makes retries return the
+     * result of the first request.
+     *
+     * @param contents the contents to create.
+     * @param idempotencyKey the key identifying the request across retries, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the id or the error of each item,
+     * or with status {@code 400 (Bad Request)} if the batch is empty or too large,
+     * or with status {@code 422 (Unprocessable Entity)} if the key was sent with another batch.
+     */
+    @PostMapping("/contents/batch")
+    public ResponseEntity<List<ContentsBatchResultVM>> createContents(@RequestBody List<ContentsDTO> contents,
+                                                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                                      HttpServletRequest request) {
+        log.debug("REST request to save a batch of {} Contents", contents.size());
+        if (contents.isEmpty() || contents.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestAlertException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " contents", ENTITY_NAME, "batchsize");
+        }
+        List<ContentsBatchResultVM> results = idempotencyService.execute(request.getRemoteUser(),
+            scopeIdempotencyKey("contents/batch", idempotencyKey), contents, () -> saveBatch(contents, request));
+        return ResponseEntity.ok().body(results);
+    }
+
+    private List<ContentsBatchResultVM> saveBatch(List<ContentsDTO> contents, HttpServletRequest request) {
+        User owner = findCurrentUser(request);
+        ContentsBatchResultVM[] results = new ContentsBatchResultVM[contents.size()];
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<Contents> accepted = new ArrayList<>();
+        for (int i = 0; i < contents.size(); i++) {
+            ContentsDTO content = contents.get(i);
+            if (content == null) {
+                results[i] = ContentsBatchResultVM.rejected(i, "error.validation");
+            } else if (content.getId() != null) {
+                results[i] = ContentsBatchResultVM.rejected(i, "error.idexists");
+            } else if (!validator.validate(content).isEmpty()) {
+                results[i] = ContentsBatchResultVM.rejected(i, "error.validation");
+            } else {
+                Contents entity = contentsMapper.contentsDTOToContents(content);
+                entity.setUserBelongsTo(owner);
+                acceptedIndexes.add(i);
+                accepted.add(entity);
+            }
+        }
+        if (!accepted.isEmpty()) {
+            List<Contents> saved = contentResourceService.saveAll(accepted);
+            for (int i = 0; i < saved.size(); i++) {
+                int index = acceptedIndexes.get(i);
+                results[index] = ContentsBatchResultVM.created(index, saved.get(i).getId());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
     /**
      * {@code PUT  /contents} : Updates an existing content.
      *
-     * @param contents the content to update.
-     * @return the {@link ResponseEntity} with status {@code 201 (OK)}
+     * When an {@code If-Match} header is given, the content is only updated if its current ETag matches.
+     *
+     * @param contentsDTO the content to update.
+     * @param ifMatch the ETag the client last read, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)}
      * or with status {@code 400 (Bad Request)} if the contents is not valid,
-     * or with status {@code 500 (Internal Server Error)} if the contents couldn't be updated.
-     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     * or with status {@code 412 (Precondition Failed)} if the contents was modified since the client read it.
      */
     @PutMapping("/contents")
-    @ResponseStatus(HttpStatus.OK)
-    public void updateContent(@Valid @RequestBody Contents contents, HttpServletRequest request) throws URISyntaxException {
-        log.debug("REST request to update Contents : {}", contents);
-        if (contents.getId() == null) {
+    public ResponseEntity<Void> updateContent(@Valid @RequestBody ContentsDTO contentsDTO,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              HttpServletRequest request) {
+        log.debug("REST request to update Contents : {}", contentsDTO);
+        if (contentsDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        Optional<Contents> realContent = contentResourceService.findOne(contents.getId());
-        if (realContent.isPresent() && realContent.get().getUserBelongsTo().getLogin().equalsIgnoreCase(request.getRemoteUser()))  {
-            contents.setUserBelongsTo(realContent.get().getUserBelongsTo());
-            contentResourceService.save(contents);
-        } else {
-            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+        String username = request.getRemoteUser();
+        Long expectedVersion = null;
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+            expectedVersion = parseVersion(ifMatch);
+            if (expectedVersion == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+        }
+        if (contentResourceService.updateByOwner(contentsDTO, username, expectedVersion)) {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (expectedVersion != null) {
+                response.eTag(versionETag(expectedVersion + 1));
+            }
+            return response.build();
+        }
+        if (expectedVersion != null && contentResourceService.findOneByOwner(contentsDTO.getId(), username).isPresent()) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+    }
+
+    /**
+     * {@code PATCH  /contents/:id} : Partially updates an existing content, following JSON Merge Patch (RFC 7396).
+     * <p>
+     * Only the fields present in the body are changed, and only their columns are written. A {@code null} member
+     * removes a field, which the required fields cannot be.
+     *
+     * @param id the id of the content to update.
+     * @param patch the fields to change.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated content,
+     * or with status {@code 400 (Bad Request)} if the content is not valid, a required field is removed,
+     * or the content does not exist.
+     */
+    @PatchMapping(value = "/contents/{id}", consumes = {APPLICATION_MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ContentsDTO> partialUpdateContent(@PathVariable Long id, @RequestBody ObjectNode patch,
+                                                            HttpServletRequest request) {
+        log.debug("REST request to partially update Contents : {}, {}", id, patch);
+        for (String field : REQUIRED_FIELDS) {
+            if (patch.has(field) && patch.get(field).isNull()) {
+                throw new BadRequestAlertException("The " + field + " is required", ENTITY_NAME, field.toLowerCase(Locale.ROOT) + "null");
+            }
+        }
+        ContentsDTO contentsDTO;
+        try {
+            contentsDTO = objectMapper.treeToValue(patch, ContentsDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestAlertException("Invalid content", ENTITY_NAME, "contentinvalid");
+        }
+        if (contentsDTO.getId() != null && !contentsDTO.getId().equals(id)) {
+            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idinvalid");
         }
+        if (contentsDTO.getValue() != null && !validator.validateProperty(contentsDTO, "value").isEmpty()) {
+            throw new BadRequestAlertException("Invalid value", ENTITY_NAME, "valueinvalid");
+        }
+        return contentResourceService.partialUpdateByOwner(id, contentsDTO, request.getRemoteUser())
+            .map(content -> ResponseEntity.ok()
+                .eTag(versionETag(content.getVersion(), representation(request, null)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, id.toString()))
+                .body(content))
+            .orElseThrow(() -> new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull"));
     }
 
     /**
-     * {@code GET  /contents} : get all the contents belonging to the user.
+     * {@code GET  /contents} : get a page of the contents belonging to the user.
+     * <p>
+     * Pages are ordered by creation date. The next page, if any, is advertised in the {@code Link} header
+     * with an opaque {@code cursor} parameter. When the {@code value} field is not selected, the values are not
+     * read from the database.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of contents in body.
+     * @param cursor the opaque position returned with the previous page, if any.
+     * @param size the maximum number of contents to return.
+     * @param fields the properties to return, all of them if not given.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of contents in body,
+     * or with status {@code 400 (Bad Request)} if the cursor or the fields are not valid.
      */
     @GetMapping("/contents")
-    public List<Contents> getAllContents(HttpServletRequest request) {
-        log.debug("REST request to get all contents");
-        String username = request.getRemoteUser();
-        List<Contents> contents =  contentResourceService.findAll().stream().filter(content -> content.getUserBelongsTo() != null).filter(content -> content.getUserBelongsTo().getLogin().equalsIgnoreCase(username)).collect(Collectors.toList());
-        //Hiding password
-        contents.forEach(content -> content.getUserBelongsTo().setPassword(""));
-        return contents;
+    public ResponseEntity<MappingJacksonValue> getAllContents(@RequestParam(value = "cursor", required = false) String cursor,
+                                                              @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                                                              @RequestParam(value = "fields", required = false) List<String> fields,
+                                                              @RequestParam MultiValueMap<String, String> queryParams,
+                                                              UriComponentsBuilder uriBuilder, HttpServletRequest request) {
+        log.debug("REST request to get a page of contents after : {}", cursor);
+        ContentsCursor after = null;
+        if (cursor != null) {
+            after = ContentsCursor.decode(cursor)
+                .orElseThrow(() -> new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid"));
+        }
+        Set<String> selectedFields = parseFields(fields);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean withValue = selectedFields == null || selectedFields.contains("value");
+        Slice<ContentsDTO> slice = contentResourceService.findAllByOwner(request.getRemoteUser(), after, pageSize, withValue);
+        List<ContentsDTO> contents = slice.getContent();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(listETag(contents, representation(request, selectedFields)));
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT));
+        if (slice.hasNext()) {
+            String nextCursor = ContentsCursor.of(contents.get(contents.size() - 1)).encode();
+            String link = uriBuilder.queryParams(queryParams)
+                .replaceQueryParam("cursor", nextCursor)
+                .replaceQueryParam("size", pageSize)
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+        return new ResponseEntity<>(withFields(contents, selectedFields), headers, HttpStatus.OK);
+    }
+
+    /**
+     * {@code GET  /contents?ids=} : get the contents with the given ids, in one round trip.
+     *
+     * @param ids the ids of the contents to retrieve.
+     * @param fields the properties to return, all of them if not given.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the contents of the user among the ids in body.
+     */
+    @GetMapping(value = "/contents", params = "ids")
+    public ResponseEntity<MappingJacksonValue> getContents(@RequestParam("ids") List<Long> ids,
+                                                           @RequestParam(value = "fields", required = false) List<String> fields,
+                                                           HttpServletRequest request) {
+        log.debug("REST request to get Contents : {}", ids);
+        return getContentsByIds(ids, fields, request);
+    }
+
+    /**
+     * {@code POST  /contents/multi-get} : get the contents with the given ids, for id lists too long for a query string.
+     *
+     * @param ids the ids of the contents to retrieve.
+     * @param fields the properties to return, all of them if not given.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the contents of the user among the ids in body.
+     */
+    @PostMapping("/contents/multi-get")
+    public ResponseEntity<MappingJacksonValue> getContentsByPost(@RequestBody List<Long> ids,
+                                                                 @RequestParam(value = "fields", required = false) List<String> fields,
+                                                                 HttpServletRequest request) {
+        log.debug("REST request to get {} Contents", ids.size());
+        return getContentsByIds(ids, fields, request);
+    }
+
+    private ResponseEntity<MappingJacksonValue> getContentsByIds(List<Long> ids, List<String> fields, HttpServletRequest request) {
+        Set<String> selectedFields = parseFields(fields);
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestAlertException("Between 1 and " + MAX_BATCH_SIZE + " ids must be given", ENTITY_NAME, "idsinvalid");
+        }
+        if (ids.contains(null)) {
+            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+        }
+        List<ContentsDTO> contents = contentResourceService.findAllByOwner(request.getRemoteUser(), ids);
+        return ResponseEntity.ok()
+            .eTag(listETag(contents, representation(request, selectedFields)))
+            .varyBy(HttpHeaders.ACCEPT)
+            .body(withFields(contents, selectedFields));
+    }
+
+    /**
+     * {@code GET  /contents/changes} : get the contents belonging to the user changed since the last synchronization.
+     * <p>
+     * Without {@code since}, all the contents are returned as changed. The returned {@code token} is the {@code since}
+     * of the next synchronization; if {@code hasMore} is true, more changes can be fetched right away with it.
+     *
+     * @param since the opaque token returned by the previous synchronization, if any.
+     * @param size the maximum number of changes to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the changes in body,
+     * or with status {@code 400 (Bad Request)} if the token is not valid.
+     */
+    @GetMapping("/contents/changes")
+    public ResponseEntity<ContentsChangesDTO> getContentsChanges(@RequestParam(value = "since", required = false) String since,
+                                                                 @RequestParam(value = "size", defaultValue = "" + MAX_PAGE_SIZE) int size,
+                                                                 HttpServletRequest request) {
+        log.debug("REST request to get the changes of contents since : {}", since);
+        ContentsChangeToken after = ContentsChangeToken.START;
+        if (since != null) {
+            after = ContentsChangeToken.decode(since)
+                .orElseThrow(() -> new BadRequestAlertException("Invalid token", ENTITY_NAME, "tokeninvalid"));
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(contentResourceService.findChangesByOwner(request.getRemoteUser(), after, pageSize));
+    }
+
+    /**
+     * {@code GET  /contents/export} : export all the contents belonging to the user.
+     * <p>
+     * Contents are streamed as newline-delimited JSON, one object per line, oldest first. Rows are
+     * written to the response as they are read from the database, so memory use does not depend on
+     * the number of contents.
+     *
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping(value = "/contents/export", produces = APPLICATION_NDJSON_VALUE)
+    public void exportContents(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("REST request to export all contents");
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            contentResourceService.forEachByOwner(request.getRemoteUser(), content -> writeExportLine(generator, content));
+        }
+    }
+
+    private void writeExportLine(JsonGenerator generator, ContentsDTO content) {
+        try {
+            generator.writeObject(content);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
      * {@code GET  /contents/:id} : get the "id" content.
      *
+     * The response carries the version of the content as ETag, qualified by the format and the selected fields
+     * when they are not the default ones, so a matching {@code If-None-Match} request gets a
+     * {@code 304 (Not Modified)} without body. Any of these ETags can be sent back with {@code If-Match}.
+     *
      * @param id the id of the content to retrieve.
+     * @param fields the properties to return, all of them if not given.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the content, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/contents/{id}")
-    public ResponseEntity<Contents> getContent(@PathVariable Long id, HttpServletRequest request) {
+    public ResponseEntity<MappingJacksonValue> getContent(@PathVariable Long id,
+                                                          @RequestParam(value = "fields", required = false) List<String> fields,
+                                                          HttpServletRequest request) {
         log.debug("REST request to get Contents : {}", id);
-        Optional<Contents> content = contentResourceService.findOne(id);
-        String username = request.getRemoteUser();
-        if (content.isPresent() && content.get().getUserBelongsTo().getLogin().equalsIgnoreCase(username)) {
-            //Hiding password
-            content.get().getUserBelongsTo().setPassword("");
-            return ResponseEntity.ok().body(content.get());
-        } else {
-            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
-        }
+        Set<String> selectedFields = parseFields(fields);
+        return contentResourceService.findOneByOwner(id, request.getRemoteUser())
+            .map(content -> ResponseEntity.ok()
+                .eTag(versionETag(content.getVersion(), representation(request, selectedFields)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(withFields(content, selectedFields)))
+            .orElseThrow(() -> new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull"));
     }
 
     /**
@@ -145,13 +471,201 @@ public class ContentResource {
     @DeleteMapping("/contents/{id}")
     public ResponseEntity<Void> deleteContent(@PathVariable Long id, HttpServletRequest request) {
         log.debug("REST request to delete Contents : {}", id);
-        String username = request.getRemoteUser();
-        Optional<Contents> content = contentResourceService.findOne(id);
-        if (content.isPresent() && content.get().getUserBelongsTo() != null && content.get().getUserBelongsTo().getLogin().equalsIgnoreCase(username)) {
-            contentResourceService.delete(id);
+        if (contentResourceService.deleteByOwner(id, request.getRemoteUser())) {
             return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString())).build();
         } else {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
     }
+
+    /**
+     * {@code DELETE  /contents} : delete several contents, selected by ids or by a creation date range.
+     *
+     * @param ids the ids of the contents to delete.
+     * @param from the start of the creation date range, inclusive.
+     * @param to the end of the creation date range, exclusive.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)},
+     * or with status {@code 400 (Bad Request)} if neither ids nor a full range is given.
+     */
+    @DeleteMapping("/contents")
+    public ResponseEntity<Void> deleteContents(@RequestParam(value = "ids", required = false) List<Long> ids,
+                                               @RequestParam(value = "from", required = false) ZonedDateTime from,
+                                               @RequestParam(value = "to", required = false) ZonedDateTime to,
+                                               HttpServletRequest request) {
+        log.debug("REST request to delete Contents with ids : {} or created between {} and {}", ids, from, to);
+        String username = request.getRemoteUser();
+        int deleted;
+        if (isIdSelection(ids, from, to)) {
+            deleted = contentResourceService.deleteAllByOwner(username, ids);
+        } else if (isRangeSelection(ids, from, to)) {
+            deleted = contentResourceService.deleteAllByOwner(username, from, to);
+        } else {
+            throw new BadRequestAlertException("Either ids or a from/to range must be given", ENTITY_NAME, "selectioninvalid");
+        }
+        return ResponseEntity.noContent()
+            .headers(HeaderUtil.createAlert(applicationName, deleted + " contents are deleted", String.valueOf(deleted)))
+            .build();
+    }
+
+    /**
+     * {@code PUT  /contents/bulk} : set the value of several contents, selected by ids or by a creation date range.
+     *
+     * @param bulkUpdate the selection and the new value.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)},
+     * or with status {@code 400 (Bad Request)} if neither ids nor a full range is given.
+     */
+    @PutMapping("/contents/bulk")
+    public ResponseEntity<Void> updateContents(@Valid @RequestBody ContentsBulkUpdateVM bulkUpdate, HttpServletRequest request) {
+        log.debug("REST request to update Contents : {}", bulkUpdate);
+        String username = request.getRemoteUser();
+        List<Long> ids = bulkUpdate.getIds();
+        int updated;
+        if (isIdSelection(ids, bulkUpdate.getFrom(), bulkUpdate.getTo())) {
+            updated = contentResourceService.updateValueByOwner(username, ids, bulkUpdate.getValue());
+        } else if (isRangeSelection(ids, bulkUpdate.getFrom(), bulkUpdate.getTo())) {
+            updated = contentResourceService.updateValueByOwner(username, bulkUpdate.getFrom(), bulkUpdate.getTo(), bulkUpdate.getValue());
+        } else {
+            throw new BadRequestAlertException("Either ids or a from/to range must be given", ENTITY_NAME, "selectioninvalid");
+        }
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createAlert(applicationName, updated + " contents are updated", String.valueOf(updated)))
+            .build();
+    }
+
+    private static boolean isIdSelection(List<Long> ids, ZonedDateTime from, ZonedDateTime to) {
+        return ids != null && !ids.isEmpty() && ids.size() <= MAX_BATCH_SIZE && from == null && to == null;
+    }
+
+    private static boolean isRangeSelection(List<Long> ids, ZonedDateTime from, ZonedDateTime to) {
+        return ids == null && from != null && to != null && from.isBefore(to);
+    }
+
+    private static String versionETag(Long version) {
+        return versionETag(version, "");
+    }
+
+    /**
+     * Get the ETag of a representation of a content: its version, followed by a digest of the representation when
+     * it is not the default one.
+     */
+    private static String versionETag(Long version, String representation) {
+        if (representation.isEmpty()) {
+            return "\"" + version + "\"";
+        }
+        String digest = DigestUtils.md5DigestAsHex(representation.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+        return "\"" + version + "-" + digest + "\"";
+    }
+
+    /**
+     * Get the ETag of a representation of a list of contents, which changes when any of them is added, removed or
+     * updated.
+     */
+    private static String listETag(List<ContentsDTO> contents, String representation) {
+        StringBuilder versions = new StringBuilder(representation).append('|');
+        contents.forEach(content -> versions.append(content.getId()).append(':').append(content.getVersion()).append(','));
+        return "\"" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Describe the representation a response is sent in: the format negotiated from the {@code Accept} header, and
+     * the selected fields, sorted. It is empty for the default representation, JSON with all the fields.
+     */
+    private static String representation(HttpServletRequest request, Set<String> selectedFields) {
+        MediaType type = representationType(request);
+        boolean allFields = selectedFields == null || selectedFields.containsAll(ContentsDTO.FIELDS);
+        if (allFields && MediaType.APPLICATION_JSON.equals(type)) {
+            return "";
+        }
+        return type + ";" + (allFields ? "*" : String.join(",", new TreeSet<>(selectedFields)));
+    }
+
+    /**
+     * Get the format a response is sent in, choosing the first accepted one like the message converters do.
+     */
+    private static MediaType representationType(HttpServletRequest request) {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(request.getHeader(HttpHeaders.ACCEPT));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType acceptedType : accepted) {
+            for (MediaType type : REPRESENTATION_TYPES) {
+                if (acceptedType.getQualityValue() > 0 && acceptedType.isCompatibleWith(type)) {
+                    return type;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Get the version from a strong ETag, or {@code null} if it is not one of ours.
+     */
+    private static Long parseVersion(String eTag) {
+        String value = eTag.trim();
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return null;
+        }
+        String version = value.substring(1, value.length() - 1);
+        int representation = version.indexOf('-');
+        try {
+            return Long.valueOf(representation < 0 ? version : version.substring(0, representation));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse the {@code fields} parameter of a request.
+     *
+     * @return the selected properties, or {@code null} if all of them must be returned.
+     */
+    private Set<String> parseFields(List<String> fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> selectedFields = new HashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (!ContentsDTO.FIELDS.contains(name)) {
+                throw new BadRequestAlertException("Unknown field " + name, ENTITY_NAME, "fieldsinvalid");
+            }
+            selectedFields.add(name);
+        }
+        return selectedFields;
+    }
+
+    /**
+     * Wrap a response body, so that only the selected properties of its contents are serialized.
+     */
+    private MappingJacksonValue withFields(Object body, Set<String> selectedFields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (selectedFields != null) {
+            FilterProvider filters = new SimpleFilterProvider()
+                .addFilter(ContentsDTO.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(selectedFields));
+            value.setFilters(filters);
+        }
+        return value;
+    }
+
+    /**
+     * Prefix an idempotency key with the endpoint it was sent to, so that a key reused on another endpoint is not
+     * mistaken for a retry.
+     */
+    private String scopeIdempotencyKey(String endpoint, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new BadRequestAlertException("Invalid idempotency key", ENTITY_NAME, "idempotencykeyinvalid");
+        }
+        return endpoint + ":" + idempotencyKey;
+    }
+
+    private User findCurrentUser(HttpServletRequest request) {
+        return userRepository.findOneByLogin(request.getRemoteUser())
+            .orElseThrow(() -> new BadRequestAlertException("Unknown user", ENTITY_NAME, "usernotfound"));
+    }
 }
@@ -0,0 +1,257 @@
+package com.jingle.microtest.web.rest;
+
+import com.jingle.microtest.service.ContentsAttachmentService;
+import com.jingle.microtest.service.dto.ContentsAttachmentDTO;
+import com.jingle.microtest.web.rest.errors.BadRequestAlertException;
+import io.github.jhipster.web.util.ResponseUtil;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import io.undertow.servlet.spec.ServletOutputStreamImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * REST controller for managing the binary attachments of the contents.
+ */
+@RestController
+@RequestMapping("/api")
+public class ContentsAttachmentResource {
+
+    private static final String ENTITY_NAME = "contentsAttachment";
+
+    private static final String DIGEST = "Digest";
+
+    private static final String SHA_256_DIGEST = "sha-256=";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsAttachmentResource.class);
+
+    private final ContentsAttachmentService contentsAttachmentService;
+
+    public ContentsAttachmentResource(ContentsAttachmentService contentsAttachmentService) {
+        this.contentsAttachmentService = contentsAttachmentService;
+    }
+
+    /**
+     * {@code POST  /contents/:id/attachment} : attach a file to the "id" content, replacing its previous attachment.
+     * <p>
+     * The file is streamed to the attachment store. When a {@code Digest: sha-256=...} header is given, the file
+     * is only stored if it has this digest.
+     *
+     * @param id the id of the content.
+     * @param file the file to attach.
+     * @param digest the expected digest of the file, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the attachment, or with status
+     * {@code 400 (Bad Request)} if the file does not match the digest, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the file could not be stored.
+     */
+    @PostMapping(value = "/contents/{id}/attachment", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ContentsAttachmentDTO> uploadAttachment(@PathVariable Long id, @RequestParam("file") MultipartFile file,
+                                                                  @RequestHeader(value = DIGEST, required = false) String digest,
+                                                                  HttpServletRequest request) throws IOException {
+        log.debug("REST request to attach a file to Contents : {}", id);
+        byte[] expectedSha256 = digest == null ? null : parseSha256(digest);
+        String contentType = file.getContentType() == null ? MediaType.APPLICATION_OCTET_STREAM_VALUE : file.getContentType();
+        try (InputStream content = file.getInputStream()) {
+            return ResponseUtil.wrapOrNotFound(contentsAttachmentService.store(id, request.getRemoteUser(),
+                file.getOriginalFilename(), contentType, content, expectedSha256));
+        }
+    }
+
+    /**
+     * {@code GET  /contents/:id/attachment} : download the attachment of the "id" content.
+     * <p>
+     * A single {@code Range} of bytes can be requested, and is answered with {@code 206 (Partial Content)}. The
+     * response carries the SHA-256 digest of the attachment as ETag and in a {@code Digest} header. The attachment
+     * is sent from its files without being copied to the heap when the server allows it. Its files are opened before
+     * the response is committed, so that a download is not broken by an upload replacing the attachment.
+     *
+     * @param id the id of the content.
+     * @throws IOException if the attachment could not be sent.
+     */
+    @GetMapping("/contents/{id}/attachment")
+    public void downloadAttachment(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("REST request to download the attachment of Contents : {}", id);
+        // The attachment may be replaced between reading it and opening its chunks; the new one is sent then
+        while (!sendAttachment(id, request, response)) {
+            response.reset();
+        }
+    }
+
+    /**
+     * Send the attachment of a content, unless it is replaced before its chunks are opened.
+     *
+     * @return false if the attachment was replaced, before the response is committed.
+     */
+    private boolean sendAttachment(Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ContentsAttachmentDTO attachment = contentsAttachmentService.findOne(id, request.getRemoteUser())
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        String eTag = "\"" + attachment.getSha256() + "\"";
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(DIGEST, SHA_256_DIGEST + Base64.getEncoder().encodeToString(hexToBytes(attachment.getSha256())));
+        if (eTag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return true;
+        }
+        response.setContentType(attachment.getContentType());
+        if (attachment.getFileName() != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.builder("attachment").filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString());
+        }
+        long size = attachment.getSize();
+        long start = 0;
+        long end = size - 1;
+        Optional<HttpRange> range = parseRange(request, eTag);
+        if (range.isPresent()) {
+            HttpRange byteRange = range.get();
+            try {
+                start = byteRange.getRangeStart(size);
+                end = byteRange.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                start = size;
+            }
+            if (start >= size || start > end) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return true;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        response.setContentLengthLong(end - start + 1);
+        if (size == 0 || HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        Optional<List<ContentsAttachmentService.ChunkRange>> chunks = contentsAttachmentService.openChunks(attachment, start, end);
+        if (!chunks.isPresent()) {
+            return false;
+        }
+        transfer(chunks.get(), response);
+        return true;
+    }
+
+    /**
+     * Get the range requested, if any, unless an {@code If-Range} header tells that the client has another version.
+     * <p>
+     * Ranges which can not be parsed and multiple ranges are ignored, so the whole attachment is sent.
+     */
+    private static Optional<HttpRange> parseRange(HttpServletRequest request, String eTag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (header == null || (ifRange != null && !ifRange.equals(eTag))) {
+            return Optional.empty();
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? Optional.of(ranges.get(0)) : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Send ranges of chunk files, and close them.
+     * <p>
+     * On Undertow, a range going to the end of its file is sent with {@link ServletOutputStreamImpl#transferFrom(FileChannel)},
+     * which lets the kernel copy the file to the socket. The headers are committed first through the wrappers of the
+     * response, so that the headers they add are kept. Other ranges go through a small buffer.
+     */
+    private static void transfer(List<ContentsAttachmentService.ChunkRange> chunks, HttpServletResponse response) throws IOException {
+        try {
+            response.flushBuffer();
+            ServletRequestContext undertow = ServletRequestContext.current();
+            OutputStream output = undertow == null ? response.getOutputStream() : undertow.getOriginalResponse().getOutputStream();
+            WritableByteChannel target = Channels.newChannel(output);
+            for (ContentsAttachmentService.ChunkRange chunk : chunks) {
+                FileChannel channel = chunk.getChannel();
+                if (output instanceof ServletOutputStreamImpl && chunk.getPosition() + chunk.getCount() == channel.size()) {
+                    channel.position(chunk.getPosition());
+                    ((ServletOutputStreamImpl) output).transferFrom(channel);
+                    continue;
+                }
+                long position = chunk.getPosition();
+                long remaining = chunk.getCount();
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+            output.flush();
+        } finally {
+            for (ContentsAttachmentService.ChunkRange chunk : chunks) {
+                chunk.close();
+            }
+        }
+    }
+
+    /**
+     * {@code DELETE  /contents/:id/attachment} : delete the attachment of the "id" content.
+     *
+     * @param id the id of the content.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 404 (Not Found)}.
+     */
+    @DeleteMapping("/contents/{id}/attachment")
+    public ResponseEntity<Void> deleteAttachment(@PathVariable Long id, HttpServletRequest request) {
+        log.debug("REST request to delete the attachment of Contents : {}", id);
+        if (!contentsAttachmentService.delete(id, request.getRemoteUser())) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Get the SHA-256 digest from a {@code Digest} header, which may list the digests of several algorithms.
+     */
+    private static byte[] parseSha256(String header) {
+        for (String digest : header.split(",")) {
+            String trimmed = digest.trim();
+            if (trimmed.toLowerCase(Locale.ENGLISH).startsWith(SHA_256_DIGEST)) {
+                try {
+                    return Base64.getDecoder().decode(trimmed.substring(SHA_256_DIGEST.length()));
+                } catch (IllegalArgumentException e) {
+                    break;
+                }
+            }
+        }
+        throw new BadRequestAlertException("A sha-256 digest must be given in base64", ENTITY_NAME, "digestinvalid");
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
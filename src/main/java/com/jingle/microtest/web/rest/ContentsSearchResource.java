@@ -0,0 +1,123 @@
+package com.jingle.microtest.web.rest;
+
+import com.jingle.microtest.security.AuthoritiesConstants;
+import com.jingle.microtest.service.ContentsSearchService;
+import com.jingle.microtest.service.ContentsSuggestService;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.web.rest.errors.BadRequestAlertException;
+import io.github.jhipster.web.util.PaginationUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+/**
+ * REST controller for searching the contents, and suggesting them as the user types.
+ */
+@RestController
+@RequestMapping("/api")
+public class ContentsSearchResource {
+
+    private static final String ENTITY_NAME = "contents";
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int DEFAULT_SUGGESTIONS = 10;
+
+    private static final int MAX_SUGGESTIONS = 50;
+
+    private final Logger log = LoggerFactory.getLogger(ContentsSearchResource.class);
+
+    private final ContentsSearchService contentsSearchService;
+
+    private final ContentsSuggestService contentsSuggestService;
+
+    public ContentsSearchResource(ContentsSearchService contentsSearchService, ContentsSuggestService contentsSuggestService) {
+        this.contentsSearchService = contentsSearchService;
+        this.contentsSuggestService = contentsSuggestService;
+    }
+
+    /**
+     * {@code GET  /contents/search?q=} : search the contents belonging to the user by their value.
+     * <p>
+     * Results are ranked, best matches first. The total number of matches is returned in the {@code X-Total-Count}
+     * header, and the other pages are advertised in the {@code Link} header. Changes are searchable shortly after
+     * they are made, not right away.
+     *
+     * @param query the words to search for.
+     * @param page the number of the page, from 0.
+     * @param size the maximum number of contents to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of contents in body,
+     * or with status {@code 400 (Bad Request)} if the query is blank or the page is out of range.
+     */
+    @GetMapping("/contents/search")
+    public ResponseEntity<List<ContentsDTO>> searchContents(@RequestParam("q") String query,
+                                                            @RequestParam(value = "page", defaultValue = "0") int page,
+                                                            @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                                                            @RequestParam MultiValueMap<String, String> queryParams,
+                                                            UriComponentsBuilder uriBuilder, HttpServletRequest request) {
+        log.debug("REST request to search Contents for : {}", query);
+        if (StringUtils.isBlank(query)) {
+            throw new BadRequestAlertException("A query must be given", ENTITY_NAME, "queryempty");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        if (page < 0 || (long) page * pageSize >= ContentsSearchService.MAX_RESULTS) {
+            throw new BadRequestAlertException("Only the first " + ContentsSearchService.MAX_RESULTS + " results can be returned",
+                ENTITY_NAME, "pageinvalid");
+        }
+        Page<ContentsDTO> contents = contentsSearchService.search(request.getRemoteUser(), query, PageRequest.of(page, pageSize));
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(uriBuilder.queryParams(queryParams), contents);
+        return new ResponseEntity<>(contents.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * {@code GET  /contents/suggest?prefix=} : get the values of the contents belonging to the user which start with
+     * a prefix, ignoring case, for autocompletion.
+     *
+     * @param prefix the beginning of the value typed by the user.
+     * @param size the maximum number of values to return.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the distinct values in alphabetical order in body,
+     * or with status {@code 400 (Bad Request)} if the prefix is empty.
+     */
+    @GetMapping("/contents/suggest")
+    public ResponseEntity<List<String>> suggestContents(@RequestParam("prefix") String prefix,
+                                                        @RequestParam(value = "size", defaultValue = "" + DEFAULT_SUGGESTIONS) int size,
+                                                        HttpServletRequest request) {
+        log.debug("REST request to suggest Contents starting with : {}", prefix);
+        if (prefix.isEmpty()) {
+            throw new BadRequestAlertException("A prefix must be given", ENTITY_NAME, "prefixempty");
+        }
+        int limit = Math.max(1, Math.min(size, MAX_SUGGESTIONS));
+        return ResponseEntity.ok(contentsSuggestService.suggest(request.getRemoteUser(), prefix, limit));
+    }
+
+    /**
+     * {@code POST  /contents/search/rebuild} : rebuild the search index from the database, in the background.
+     *
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}.
+     */
+    @PostMapping("/contents/search/rebuild")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> rebuildSearchIndex() {
+        log.debug("REST request to rebuild the Contents search index");
+        contentsSearchService.rebuild();
+        return ResponseEntity.accepted().build();
+    }
+}
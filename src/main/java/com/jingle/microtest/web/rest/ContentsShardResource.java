@@ -0,0 +1,95 @@
+package com.jingle.microtest.web.rest;
+
+import com.jingle.microtest.config.Constants;
+import com.jingle.microtest.security.AuthoritiesConstants;
+import com.jingle.microtest.service.ContentsShardMigrationService;
+import com.jingle.microtest.service.ContentsShardService;
+import com.jingle.microtest.service.dto.ContentsShardMoveDTO;
+import com.jingle.microtest.web.rest.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for the administration of the shards holding the contents.
+ */
+@RestController
+@RequestMapping("/api")
+@PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+public class ContentsShardResource {
+
+    private static final String ENTITY_NAME = "contentsShard";
+
+    private final Logger log = LoggerFactory.getLogger(ContentsShardResource.class);
+
+    private final ContentsShardService contentsShardService;
+
+    private final ContentsShardMigrationService contentsShardMigrationService;
+
+    public ContentsShardResource(ContentsShardService contentsShardService, ContentsShardMigrationService contentsShardMigrationService) {
+        this.contentsShardService = contentsShardService;
+        this.contentsShardMigrationService = contentsShardMigrationService;
+    }
+
+    /**
+     * {@code GET  /contents-shards} : count the contents of each shard.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of contents by shard name in body.
+     */
+    @GetMapping("/contents-shards")
+    public Map<String, Long> countContentsByShard() {
+        log.debug("REST request to count the contents of each shard");
+        return contentsShardMigrationService.countByShard();
+    }
+
+    /**
+     * {@code POST  /contents-shards/:shard/users/:login} : move the contents of a user to a shard, in the background.
+     * <p>
+     * The contents of the user can not be used during the move.
+     *
+     * @param shard the name of the target shard.
+     * @param login the login of the user.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}, or with status {@code 404 (Not Found)}
+     * if the user does not exist, or with status {@code 409 (Conflict)} if the user is already being moved.
+     */
+    @PostMapping("/contents-shards/{shard}/users/{login:" + Constants.LOGIN_REGEX + "}")
+    public ResponseEntity<Void> moveUser(@PathVariable String shard, @PathVariable String login) {
+        log.debug("REST request to move the contents of user : {} to shard {}", login, shard);
+        if (!contentsShardService.getShardNames().contains(shard)) {
+            throw new BadRequestAlertException("Unknown shard", ENTITY_NAME, "shardnotfound");
+        }
+        if (!contentsShardMigrationService.migrate(login, shard).isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * {@code POST  /contents-shards/rebalance} : move the users whose shard changed since shards were added.
+     * <p>
+     * The users are moved in the background, unless the moves are only listed.
+     *
+     * @param dryRun whether the moves are only listed.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the planned moves in body, or with status
+     * {@code 202 (Accepted)} if the moves were started.
+     */
+    @PostMapping("/contents-shards/rebalance")
+    public ResponseEntity<List<ContentsShardMoveDTO>> rebalance(@RequestParam(defaultValue = "true") boolean dryRun) {
+        log.debug("REST request to rebalance the shards, dry run : {}", dryRun);
+        if (dryRun) {
+            return ResponseEntity.ok(contentsShardMigrationService.planRebalance());
+        }
+        contentsShardMigrationService.rebalance();
+        return ResponseEntity.accepted().build();
+    }
+}
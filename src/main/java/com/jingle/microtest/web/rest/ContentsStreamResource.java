@@ -0,0 +1,43 @@
+package com.jingle.microtest.web.rest;
+
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.service.ContentsStreamService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * REST controller streaming the changes of {@link Contents} as Server-Sent Events.
+ */
+@RestController
+@RequestMapping("/api")
+public class ContentsStreamResource {
+
+    private final Logger log = LoggerFactory.getLogger(ContentsStreamResource.class);
+
+    private final ContentsStreamService contentsStreamService;
+
+    public ContentsStreamResource(ContentsStreamService contentsStreamService) {
+        this.contentsStreamService = contentsStreamService;
+    }
+
+    /**
+     * {@code GET  /contents/stream} : stream the changes of the contents belonging to the user.
+     * <p>
+     * Each change is sent as an event named {@code created}, {@code updated} or {@code deleted}, with the ids of the
+     * contents, or the creation date range of a bulk change, as JSON data. Comments are sent as heartbeats.
+     *
+     * @return the {@link SseEmitter} of the events.
+     */
+    @GetMapping(value = "/contents/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamContents(HttpServletRequest request) {
+        log.debug("REST request to stream the changes of contents");
+        return contentsStreamService.subscribe(request.getRemoteUser());
+    }
+}
@@ -14,6 +14,7 @@ final class ErrorConstants {
     public static final URI EMAIL_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/email-already-used");
     public static final URI LOGIN_ALREADY_USED_TYPE = URI.create(PROBLEM_BASE_URL + "/login-already-used");
     public static final URI EMAIL_NOT_FOUND_TYPE = URI.create(PROBLEM_BASE_URL + "/email-not-found");
+    public static final URI IDEMPOTENCY_KEY_REUSED_TYPE = URI.create(PROBLEM_BASE_URL + "/idempotency-key-reused");
 
     private ErrorConstants() {
     }
@@ -0,0 +1,13 @@
+package com.jingle.microtest.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+public class IdempotencyKeyReusedException extends AbstractThrowableProblem {
+
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyKeyReusedException() {
+        super(ErrorConstants.IDEMPOTENCY_KEY_REUSED_TYPE, "Idempotency key already used for another request", Status.UNPROCESSABLE_ENTITY);
+    }
+}
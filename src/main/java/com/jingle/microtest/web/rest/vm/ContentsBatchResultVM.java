@@ -0,0 +1,70 @@
+package com.jingle.microtest.web.rest.vm;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * View Model object for the outcome of one item of a contents batch request.
+ * <p>
+ * Either {@code id} is set, if the item was created, or {@code error} holds the key of the reason it was rejected.
+ */
+public class ContentsBatchResultVM {
+
+    private int index;
+
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    private String error;
+
+    public ContentsBatchResultVM() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public static ContentsBatchResultVM created(int index, Long id) {
+        ContentsBatchResultVM result = new ContentsBatchResultVM();
+        result.setIndex(index);
+        result.setId(id);
+        return result;
+    }
+
+    public static ContentsBatchResultVM rejected(int index, String error) {
+        ContentsBatchResultVM result = new ContentsBatchResultVM();
+        result.setIndex(index);
+        result.setError(error);
+        return result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsBatchResultVM{" +
+            "index=" + index +
+            ", id=" + id +
+            ", error='" + error + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.jingle.microtest.web.rest.vm;
+
+import com.jingle.microtest.service.dto.ContentsDTO;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * View Model object for updating several contents at once.
+ * <p>
+ * The contents are selected either by {@code ids}, or by a {@code [from, to)} creation date range.
+ */
+public class ContentsBulkUpdateVM {
+
+    private List<Long> ids;
+
+    private ZonedDateTime from;
+
+    private ZonedDateTime to;
+
+    @NotNull
+    @Size(max = ContentsDTO.VALUE_MAX_LENGTH)
+    private String value;
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public ZonedDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(ZonedDateTime from) {
+        this.from = from;
+    }
+
+    public ZonedDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(ZonedDateTime to) {
+        this.to = to;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentsBulkUpdateVM{" +
+            "ids=" + ids +
+            ", from=" + from +
+            ", to=" + to +
+            ", value='" + value + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,115 @@
+package com.jingle.microtest.config;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link CompressionHandlerWrapper}, served by an Undertow server.
+ */
+public class CompressionHandlerWrapperTest {
+
+    private static final byte[] BODY = new byte[4096];
+
+    static {
+        Arrays.fill(BODY, (byte) 'a');
+    }
+
+    private Undertow server;
+
+    private int port;
+
+    @BeforeEach
+    void startServer() {
+        HttpHandler handler = exchange -> {
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+            switch (exchange.getRequestPath()) {
+                case "/range":
+                    exchange.setStatusCode(StatusCodes.PARTIAL_CONTENT);
+                    exchange.getResponseHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+                    exchange.getResponseHeaders().put(Headers.CONTENT_RANGE, "bytes 0-4095/8192");
+                    break;
+                case "/ranges":
+                    exchange.getResponseHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+                    break;
+                default:
+                    break;
+            }
+            exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, BODY.length);
+            exchange.getResponseSender().send(ByteBuffer.wrap(BODY));
+        };
+        ApplicationProperties.Compression compression = new ApplicationProperties.Compression();
+        compression.setEnabled(true);
+        server = Undertow.builder()
+            .addHttpListener(0, "localhost")
+            .setHandler(new CompressionHandlerWrapper(compression, null).wrap(handler))
+            .build();
+        server.start();
+        port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    void testCompressibleResponseIsCompressed() throws IOException {
+        HttpURLConnection connection = get("/");
+
+        assertThat(connection.getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(connection.getHeaderField("Content-Encoding")).isEqualTo("gzip");
+    }
+
+    @Test
+    void testPartialContentIsNotCompressed() throws IOException {
+        HttpURLConnection connection = get("/range");
+
+        assertThat(connection.getResponseCode()).isEqualTo(StatusCodes.PARTIAL_CONTENT);
+        assertThat(connection.getHeaderField("Content-Encoding")).isNull();
+        assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes 0-4095/8192");
+        assertThat(read(connection)).isEqualTo(BODY);
+    }
+
+    @Test
+    void testResponseAcceptingRangesIsNotCompressed() throws IOException {
+        HttpURLConnection connection = get("/ranges");
+
+        assertThat(connection.getResponseCode()).isEqualTo(StatusCodes.OK);
+        assertThat(connection.getHeaderField("Content-Encoding")).isNull();
+        assertThat(read(connection)).isEqualTo(BODY);
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http", "localhost", port, path).openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection;
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        try (InputStream input = connection.getInputStream()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.jingle.microtest.config;
+
+import com.jingle.microtest.MicrotestApp;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Integration tests for {@link ReplicaRoutingDataSource}, with an embedded replica and an unreachable one.
+ */
+@SpringBootTest(classes = MicrotestApp.class, properties = {
+    "application.replicas.enabled=true",
+    "application.replicas.connection-timeout=250",
+    "application.replicas.instances[0].name=replica",
+    "application.replicas.instances[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "application.replicas.instances[1].name=unreachable",
+    "application.replicas.instances[1].url=jdbc:h2:tcp://localhost:1/unreachable"
+})
+public class ReplicaRoutingDataSourceIT {
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void checkReplicas() {
+        replicaRoutingDataSource.checkReplicas();
+    }
+
+    @AfterEach
+    void resetLagQuery() {
+        applicationProperties.getReplicas().setLagQuery(null);
+    }
+
+    @Test
+    void testReplicasAreChecked() {
+        assertThat(replicaRoutingDataSource.getReplicas())
+            .extracting(ReplicaRoutingDataSource.Replica::getName, ReplicaRoutingDataSource.Replica::isHealthy)
+            .containsExactly(
+                tuple("replica", true),
+                tuple("unreachable", false));
+    }
+
+    @Test
+    void testReadOnlyTransactionUsesReplica() {
+        double replicaConnections = routedConnections("replica");
+        double primaryConnections = routedConnections(ReplicaRoutingDataSource.PRIMARY);
+
+        runQuery(true);
+
+        assertThat(routedConnections("replica")).isEqualTo(replicaConnections + 1);
+        assertThat(routedConnections(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(primaryConnections);
+    }
+
+    @Test
+    void testReadWriteTransactionUsesPrimary() {
+        double replicaConnections = routedConnections("replica");
+        double primaryConnections = routedConnections(ReplicaRoutingDataSource.PRIMARY);
+
+        runQuery(false);
+
+        assertThat(routedConnections("replica")).isEqualTo(replicaConnections);
+        assertThat(routedConnections(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(primaryConnections + 1);
+    }
+
+    @Test
+    void testLaggingReplicaFallsBackToPrimary() {
+        applicationProperties.getReplicas().setLagQuery("SELECT 60");
+        replicaRoutingDataSource.checkReplicas();
+        double primaryConnections = routedConnections(ReplicaRoutingDataSource.PRIMARY);
+
+        runQuery(true);
+
+        assertThat(replicaRoutingDataSource.getReplicas().get(0).getLag()).isEqualTo(60);
+        assertThat(routedConnections(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(primaryConnections + 1);
+        assertThat(meterRegistry.get("datasource.replica.healthy").tag("pool", "replica").gauge().value()).isEqualTo(0);
+    }
+
+    private void runQuery(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        transactionTemplate.execute(status -> em.createNativeQuery("SELECT 1").getSingleResult());
+    }
+
+    private double routedConnections(String pool) {
+        return meterRegistry.get("datasource.connections.routed").tag("pool", pool).counter().count();
+    }
+}
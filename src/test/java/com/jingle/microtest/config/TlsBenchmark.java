@@ -0,0 +1,318 @@
+package com.jingle.microtest.config;
+
+import io.undertow.UndertowOptions;
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientConnection;
+import io.undertow.client.ClientExchange;
+import io.undertow.client.ClientRequest;
+import io.undertow.client.UndertowClient;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.protocols.ssl.UndertowXnioSsl;
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StringReadChannelListener;
+import org.wildfly.openssl.OpenSSLProvider;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of the TLS termination, comparing the JSSE engine and HTTP/1.1 with the OpenSSL engine and HTTP/2.
+ * <p>
+ * It is not a test, run it with {@code ./gradlew tlsBenchmark -PbenchmarkArgs="..."}. It measures:
+ * <ul>
+ * <li>the server CPU time of full and resumed handshakes, in memory, with the keystore of the {@code tls} profile;</li>
+ * <li>with {@code --url=https://localhost:8080/management/health}, the request throughput of HTTP/1.1 and HTTP/2
+ * clients against a running application, started with the {@code tls} profile.</li>
+ * </ul>
+ * Other options are {@code --handshakes} (default 2000), {@code --connections} (default 4), {@code --concurrency},
+ * the requests in flight per connection (default 16), and {@code --duration}, in seconds (default 20).
+ */
+public final class TlsBenchmark {
+
+    private static final String KEY_STORE = "config/tls/keystore.p12";
+
+    private static final char[] KEY_STORE_PASSWORD = "password".toCharArray();
+
+    private static final String PROTOCOL = "TLSv1.2";
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private TlsBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, new TrustManager[] { new TrustAllManager() }, null);
+
+        int handshakes = Integer.parseInt(options.getOrDefault("handshakes", "2000"));
+        benchmarkHandshakes("JSSE", serverContext("TLS"), clientContext, handshakes);
+        try {
+            OpenSSLProvider.register();
+            benchmarkHandshakes("OpenSSL", serverContext("openssl.TLS"), clientContext, handshakes);
+        } catch (Exception | LinkageError e) {
+            System.out.printf("OpenSSL is not available: %s%n", e);
+        }
+
+        if (options.containsKey("url")) {
+            URI uri = URI.create(options.get("url"));
+            int connections = Integer.parseInt(options.getOrDefault("connections", "4"));
+            int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+            int duration = Integer.parseInt(options.getOrDefault("duration", "20"));
+            benchmarkThroughput(uri, false, clientContext, connections, concurrency, duration);
+            benchmarkThroughput(uri, true, clientContext, connections, concurrency, duration);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        return options;
+    }
+
+    private static SSLContext serverContext(String protocol) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = TlsBenchmark.class.getClassLoader().getResourceAsStream(KEY_STORE)) {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEY_STORE_PASSWORD);
+        SSLContext context = SSLContext.getInstance(protocol);
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static void benchmarkHandshakes(String engine, SSLContext serverContext, SSLContext clientContext, int handshakes)
+        throws SSLException {
+        // Warm up, and create the session which is resumed below
+        for (int i = 0; i < handshakes / 10; i++) {
+            handshake(serverContext, clientContext, i);
+        }
+        long fullCpu = 0;
+        for (int i = 0; i < handshakes; i++) {
+            // A client session is bound to the peer port, so a new port forces a full handshake
+            fullCpu += handshake(serverContext, clientContext, handshakes + i);
+        }
+        long resumedCpu = 0;
+        for (int i = 0; i < handshakes; i++) {
+            resumedCpu += handshake(serverContext, clientContext, 0);
+        }
+        System.out.printf("%-8s full handshake: %8.1f us CPU, resumed handshake: %8.1f us CPU%n", engine,
+            fullCpu / 1000.0 / handshakes, resumedCpu / 1000.0 / handshakes);
+    }
+
+    /**
+     * Run a handshake between two in-memory engines.
+     *
+     * @return the CPU time spent by the server engine, in nanoseconds.
+     */
+    private static long handshake(SSLContext serverContext, SSLContext clientContext, int port) throws SSLException {
+        SSLEngine client = clientContext.createSSLEngine("localhost", port);
+        client.setUseClientMode(true);
+        client.setEnabledProtocols(new String[] { PROTOCOL });
+        SSLEngine server = serverContext.createSSLEngine();
+        server.setUseClientMode(false);
+        server.setEnabledProtocols(new String[] { PROTOCOL });
+
+        ByteBuffer clientToServer = ByteBuffer.allocate(client.getSession().getPacketBufferSize());
+        ByteBuffer serverToClient = ByteBuffer.allocate(server.getSession().getPacketBufferSize());
+        ByteBuffer clientApplication = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+        ByteBuffer serverApplication = ByteBuffer.allocate(server.getSession().getApplicationBufferSize());
+
+        client.beginHandshake();
+        long start = threads.getCurrentThreadCpuTime();
+        server.beginHandshake();
+        long serverCpu = threads.getCurrentThreadCpuTime() - start;
+        for (int round = 0; !isHandshakeDone(client) || !isHandshakeDone(server); round++) {
+            if (round > 1000) {
+                throw new SSLException("The handshake did not complete");
+            }
+            step(client, serverToClient, clientToServer, clientApplication);
+            start = threads.getCurrentThreadCpuTime();
+            step(server, clientToServer, serverToClient, serverApplication);
+            serverCpu += threads.getCurrentThreadCpuTime() - start;
+        }
+        client.closeOutbound();
+        server.closeOutbound();
+        return serverCpu;
+    }
+
+    private static boolean isHandshakeDone(SSLEngine engine) {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return status == HandshakeStatus.FINISHED || status == HandshakeStatus.NOT_HANDSHAKING;
+    }
+
+    private static void step(SSLEngine engine, ByteBuffer in, ByteBuffer out, ByteBuffer application) throws SSLException {
+        switch (engine.getHandshakeStatus()) {
+            case NEED_WRAP:
+                engine.wrap(EMPTY, out);
+                break;
+            case NEED_UNWRAP:
+                in.flip();
+                engine.unwrap(in, application);
+                in.compact();
+                break;
+            case NEED_TASK:
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void benchmarkThroughput(URI uri, boolean http2, SSLContext clientContext, int connections, int concurrency,
+                                            int duration) throws IOException, InterruptedException {
+        Xnio xnio = Xnio.getInstance();
+        XnioWorker worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, connections));
+        List<ClientConnection> clientConnections = new ArrayList<>();
+        try {
+            UndertowXnioSsl ssl = new UndertowXnioSsl(xnio, OptionMap.EMPTY, clientContext);
+            ByteBufferPool bufferPool = new DefaultByteBufferPool(false, 16 * 1024);
+            OptionMap options = OptionMap.create(UndertowOptions.ENABLE_HTTP2, http2);
+            Load load = new Load(uri, System.nanoTime() + TimeUnit.SECONDS.toNanos(duration), connections * concurrency);
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                ClientConnection connection = UndertowClient.getInstance().connect(uri, worker, ssl, bufferPool, options).get();
+                clientConnections.add(connection);
+                for (int j = 0; j < concurrency; j++) {
+                    connection.getIoThread().execute(() -> load.send(connection));
+                }
+            }
+            load.done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            boolean multiplexed = clientConnections.stream().allMatch(ClientConnection::isMultiplexingSupported);
+            System.out.printf("%-8s %8.0f requests/s, %d failed%n", multiplexed ? "HTTP/2" : "HTTP/1.1",
+                load.completed.sum() / seconds, load.failed.sum());
+            if (http2 && !multiplexed) {
+                System.out.println("HTTP/2 was not negotiated, check that server.http2.enabled is set and that ALPN is available");
+            }
+        } finally {
+            for (ClientConnection connection : clientConnections) {
+                connection.close();
+            }
+            worker.shutdownNow();
+        }
+    }
+
+    /**
+     * Requests sent in a loop by each of the clients, until the end of the benchmark.
+     */
+    private static final class Load {
+
+        private final URI uri;
+
+        private final long deadline;
+
+        private final CountDownLatch done;
+
+        private final LongAdder completed = new LongAdder();
+
+        private final LongAdder failed = new LongAdder();
+
+        private Load(URI uri, long deadline, int clients) {
+            this.uri = uri;
+            this.deadline = deadline;
+            this.done = new CountDownLatch(clients);
+        }
+
+        private void send(ClientConnection connection) {
+            if (System.nanoTime() >= deadline || !connection.isOpen()) {
+                done.countDown();
+                return;
+            }
+            ClientRequest request = new ClientRequest().setMethod(Methods.GET).setPath(uri.getRawPath());
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            connection.sendRequest(request, new ClientCallback<ClientExchange>() {
+
+                @Override
+                public void completed(ClientExchange exchange) {
+                    exchange.setResponseListener(new ClientCallback<ClientExchange>() {
+
+                        @Override
+                        public void completed(ClientExchange response) {
+                            new StringReadChannelListener(connection.getBufferPool()) {
+
+                                @Override
+                                protected void stringDone(String body) {
+                                    (response.getResponse().getResponseCode() < 400 ? completed : failed).increment();
+                                    send(connection);
+                                }
+
+                                @Override
+                                protected void error(IOException e) {
+                                    failed.increment();
+                                    send(connection);
+                                }
+                            }.setup(response.getResponseChannel());
+                        }
+
+                        @Override
+                        public void failed(IOException e) {
+                            failed.increment();
+                            send(connection);
+                        }
+                    });
+                }
+
+                @Override
+                public void failed(IOException e) {
+                    failed.increment();
+                    done.countDown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Trust manager accepting the self-signed certificate of the {@code tls} profile.
+     */
+    private static final class TrustAllManager implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -3,9 +3,12 @@ package com.jingle.microtest.config;
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.JHipsterProperties;
 import io.github.jhipster.web.filter.CachingHttpHeadersFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.Ssl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.env.MockEnvironment;
 import org.springframework.mock.web.MockServletContext;
@@ -13,6 +16,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import javax.net.ssl.SSLContext;
 import javax.servlet.*;
 import java.io.File;
 import java.util.*;
@@ -39,6 +43,8 @@ class WebConfigurerTest {
 
     private JHipsterProperties props;
 
+    private ApplicationProperties applicationProperties;
+
     @BeforeEach
     void setup() {
         servletContext = spy(new MockServletContext());
@@ -49,8 +55,11 @@ class WebConfigurerTest {
 
         env = new MockEnvironment();
         props = new JHipsterProperties();
+        applicationProperties = new ApplicationProperties();
 
-        webConfigurer = new WebConfigurer(env, props);
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MeterRegistry> meterRegistry = mock(ObjectProvider.class);
+        webConfigurer = new WebConfigurer(env, props, applicationProperties, meterRegistry);
     }
 
     @Test
@@ -82,6 +91,40 @@ class WebConfigurerTest {
         }
     }
 
+    @Test
+    void testCustomizeServletContainerCompression() {
+        UndertowServletWebServerFactory container = new UndertowServletWebServerFactory();
+        webConfigurer.customize(container);
+        assertThat(container.getDeploymentInfoCustomizers()).isEmpty();
+
+        applicationProperties.getCompression().setEnabled(true);
+        container = new UndertowServletWebServerFactory();
+        webConfigurer.customize(container);
+        assertThat(container.getDeploymentInfoCustomizers()).hasSize(1);
+    }
+
+    @Test
+    void testCustomizeServletContainerTls() throws Exception {
+        UndertowServletWebServerFactory container = new UndertowServletWebServerFactory();
+        Ssl ssl = new Ssl();
+        ssl.setEnabled(true);
+        ssl.setProtocol("TLS");
+        container.setSsl(ssl);
+        webConfigurer.customize(container);
+        assertThat(ssl.getProtocol()).isEqualTo(TlsProvider.NAME + ".TLS");
+
+        SSLContext context = SSLContext.getInstance(ssl.getProtocol());
+        context.init(null, null, null);
+        assertThat(context.getServerSessionContext().getSessionTimeout())
+            .isEqualTo(applicationProperties.getTls().getSessionTimeout());
+
+        // The Ssl properties are shared by the containers, so customizing another one must not wrap the protocol twice
+        container = new UndertowServletWebServerFactory();
+        container.setSsl(ssl);
+        webConfigurer.customize(container);
+        assertThat(ssl.getProtocol()).isEqualTo(TlsProvider.NAME + ".TLS");
+    }
+
     @Test
     void testCorsFilterOnApiPath() throws Exception {
         props.getCors().setAllowedOrigins(Collections.singletonList("*"));
@@ -0,0 +1,115 @@
+package com.jingle.microtest.domain.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link ContentsValueCodec} class.
+ */
+class ContentsValueCodecTest {
+
+    private static final String LONG_VALUE = repeat("Lorem ipsum dolor sit amet, ", 40) + "\u00fcn\u00efc\u00f8d\u00e9 \u20ac";
+
+    @Test
+    void testShortValuesAreNotCompressed() {
+        ContentsValueCodec codec = new ContentsValueCodec(ContentsValueCodec.Algorithm.DEFLATE, 64);
+
+        byte[] stored = codec.encode("AAAAAAAAAA");
+
+        assertThat(stored[0]).isEqualTo(ContentsValueCodec.PLAIN);
+        assertThat(stored).hasSize(11);
+        assertThat(ContentsValueCodec.decode(stored)).isEqualTo("AAAAAAAAAA");
+    }
+
+    @Test
+    void testDeflateRoundTrip() {
+        ContentsValueCodec codec = new ContentsValueCodec(ContentsValueCodec.Algorithm.DEFLATE, 64);
+
+        byte[] stored = codec.encode(LONG_VALUE);
+
+        assertThat(stored[0]).isEqualTo(ContentsValueCodec.DEFLATE);
+        assertThat(stored.length).isLessThan(LONG_VALUE.getBytes(StandardCharsets.UTF_8).length / 4);
+        assertThat(ContentsValueCodec.decode(stored)).isEqualTo(LONG_VALUE);
+        assertThat(codec.isOutdated(stored)).isFalse();
+    }
+
+    @Test
+    void testLz4RoundTrip() {
+        ContentsValueCodec codec = new ContentsValueCodec(ContentsValueCodec.Algorithm.LZ4, 64);
+
+        byte[] stored = codec.encode(LONG_VALUE);
+
+        assertThat(stored[0]).isEqualTo(ContentsValueCodec.LZ4);
+        assertThat(stored.length).isLessThan(LONG_VALUE.getBytes(StandardCharsets.UTF_8).length / 4);
+        assertThat(ContentsValueCodec.decode(stored)).isEqualTo(LONG_VALUE);
+    }
+
+    @Test
+    void testValuesAreNeverStoredLargerThanPlain() {
+        Random random = new Random(42);
+        for (ContentsValueCodec.Algorithm algorithm : ContentsValueCodec.Algorithm.values()) {
+            ContentsValueCodec codec = new ContentsValueCodec(algorithm, 64);
+            for (int length = 64; length < 1024; length += 97) {
+                char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) (0x21 + random.nextInt(0x5e));
+                }
+                String value = new String(chars);
+
+                byte[] stored = codec.encode(value);
+
+                assertThat(stored.length).isLessThanOrEqualTo(length + 1);
+                assertThat(ContentsValueCodec.decode(stored)).isEqualTo(value);
+            }
+        }
+    }
+
+    @Test
+    void testValuesStartingWithControlCharacters() {
+        ContentsValueCodec codec = new ContentsValueCodec(null, 0);
+
+        for (String value : new String[] { "", "\u0000A", "\u0001A", "\u0002A" }) {
+            assertThat(ContentsValueCodec.decode(codec.encode(value))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void testOutdatedValues() {
+        ContentsValueCodec disabled = new ContentsValueCodec(null, 0);
+        ContentsValueCodec deflate = new ContentsValueCodec(ContentsValueCodec.Algorithm.DEFLATE, 64);
+        ContentsValueCodec lz4 = new ContentsValueCodec(ContentsValueCodec.Algorithm.LZ4, 64);
+
+        assertThat(deflate.isOutdated(disabled.encode(LONG_VALUE))).isTrue();
+        assertThat(deflate.isOutdated(disabled.encode("AAAAAAAAAA"))).isFalse();
+        assertThat(lz4.isOutdated(deflate.encode(LONG_VALUE))).isTrue();
+        assertThat(disabled.isOutdated(deflate.encode(LONG_VALUE))).isFalse();
+    }
+
+    @Test
+    void testCorruptValuesAreRejected() {
+        byte[] stored = new ContentsValueCodec(ContentsValueCodec.Algorithm.DEFLATE, 64).encode(LONG_VALUE);
+
+        assertThatThrownBy(() -> ContentsValueCodec.decode(Arrays.copyOf(stored, stored.length / 2)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContentsValueCodec.decode(new byte[] { ContentsValueCodec.LZ4, 0, 0 }))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContentsValueCodec.decode("AAAAAAAAAA".getBytes(StandardCharsets.UTF_8)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContentsValueCodec.decode(new byte[0]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
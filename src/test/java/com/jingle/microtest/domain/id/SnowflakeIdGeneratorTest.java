@@ -0,0 +1,119 @@
+package com.jingle.microtest.domain.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link SnowflakeIdGenerator} class.
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static final long NOW = SnowflakeIdGenerator.EPOCH + 1000;
+
+    @Test
+    void testIdsAreIncreasing() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 10);
+        long previous = generator.nextId();
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void testIdLayout() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, 10, clock(NOW, NOW, NOW + 1));
+
+        assertThat(generator.nextId()).isEqualTo((1000L << 22) | (5 << 12));
+        assertThat(generator.nextId()).isEqualTo((1000L << 22) | (5 << 12) | 1);
+        assertThat(generator.nextId()).isEqualTo((1001L << 22) | (5 << 12));
+    }
+
+    @Test
+    void testNodesGenerateDistinctIds() {
+        SnowflakeIdGenerator first = new SnowflakeIdGenerator(1, 10, clock(NOW));
+        SnowflakeIdGenerator second = new SnowflakeIdGenerator(2, 10, clock(NOW));
+
+        assertThat(first.nextId()).isNotEqualTo(second.nextId());
+    }
+
+    @Test
+    void testNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1, 10))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID, 10).getNodeId())
+            .isEqualTo(SnowflakeIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void testNodeIdOfAddress() throws Exception {
+        assertThat(SnowflakeIdGenerator.nodeIdOf(InetAddress.getByName("10.0.0.1"))).isEqualTo(1);
+        assertThat(SnowflakeIdGenerator.nodeIdOf(InetAddress.getByName("10.0.3.255"))).isEqualTo(1023);
+        // Hosts of the same /22 subnet have distinct node ids
+        assertThat(SnowflakeIdGenerator.nodeIdOf(InetAddress.getByName("10.0.4.1"))).isEqualTo(1);
+        assertThat(SnowflakeIdGenerator.nodeIdOf(InetAddress.getByName("fe80::1")))
+            .isBetween(0, SnowflakeIdGenerator.MAX_NODE_ID)
+            .isEqualTo(SnowflakeIdGenerator.nodeIdOf(InetAddress.getByName("fe80::1")));
+    }
+
+    @Test
+    void testSmallClockRegressionIsWaitedOut() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 10, clock(NOW, NOW - 5, NOW - 2, NOW));
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertThat(second).isEqualTo(first + 1);
+    }
+
+    @Test
+    void testLargeClockRegressionIsRejected() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 10, clock(NOW, NOW - 11, NOW));
+
+        generator.nextId();
+
+        assertThatThrownBy(generator::nextId).isInstanceOf(IllegalStateException.class);
+        // Once the clock is back, ids are generated again
+        assertThat(generator.nextId()).isEqualTo((1000L << 22) | (1 << 12) | 1);
+    }
+
+    @Test
+    void testExhaustedSequenceWaitsForNextMillisecond() {
+        long[] times = new long[4098];
+        Arrays.fill(times, NOW);
+        times[4097] = NOW + 1;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 10, clock(times));
+
+        long last = 0;
+        for (int i = 0; i < 4097; i++) {
+            last = generator.nextId();
+        }
+
+        assertThat(last).isEqualTo((1001L << 22) | (1 << 12));
+    }
+
+    @Test
+    void testClockBeforeEpochIsRejected() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, 10, clock(SnowflakeIdGenerator.EPOCH - 1));
+
+        assertThatThrownBy(generator::nextId).isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Clock returning the given times, then the last one forever.
+     */
+    private static LongSupplier clock(long... times) {
+        Iterator<Long> iterator = Arrays.stream(times).iterator();
+        long[] last = { times[times.length - 1] };
+        return () -> iterator.hasNext() ? (last[0] = iterator.next()) : last[0];
+    }
+}
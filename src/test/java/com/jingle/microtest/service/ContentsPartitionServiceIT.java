@@ -0,0 +1,128 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.domain.ContentsTombstone;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.ContentsTombstoneRepository;
+import com.jingle.microtest.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jingle.microtest.service.ContentsPartitionService.partitionName;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Integration tests for the {@link ContentsPartitionService}, on a PostgreSQL database started in Docker.
+ * <p>
+ * They are skipped when Docker is not available. The contents are kept for 12 months.
+ */
+@SpringBootTest(classes = MicrotestApp.class, properties = "application.partitioning.retention-months=12")
+@ContextConfiguration(initializers = ContentsPartitionServiceIT.Initializer.class)
+public class ContentsPartitionServiceIT {
+
+    private static final PostgreSQLContainer<?> POSTGRESQL = new PostgreSQLContainer<>("postgres:11.2");
+
+    @Autowired
+    private ContentsPartitionService contentsPartitionService;
+
+    @Autowired
+    private ContentResourceRepository contentResourceRepository;
+
+    @Autowired
+    private ContentsTombstoneRepository contentsTombstoneRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void startPostgreSQL() {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        POSTGRESQL.start();
+    }
+
+    @AfterAll
+    static void stopPostgreSQL() {
+        POSTGRESQL.stop();
+    }
+
+    @Test
+    void testMaintainPartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        YearMonth expired = current.minusMonths(14);
+        YearMonth ahead = current.plusMonths(3);
+        if (partitions().contains(partitionName(ahead))) {
+            jdbcTemplate.execute("alter table contents detach partition " + partitionName(ahead));
+            jdbcTemplate.execute("drop table " + partitionName(ahead));
+        }
+        jdbcTemplate.execute("create table " + partitionName(expired) + " partition of contents for values from ('" +
+            expired.atDay(1) + "') to ('" + expired.plusMonths(1).atDay(1) + "')");
+        Contents inExpiredPartition = save(expired);
+        Contents expiredInDefaultPartition = save(current.minusMonths(20));
+        Contents inDefaultPartition = save(ahead);
+        Contents kept = save(current);
+
+        contentsPartitionService.maintainPartitions();
+
+        assertThat(partitions())
+            .contains(partitionName(current), partitionName(current.plusMonths(1)), partitionName(ahead))
+            .doesNotContain(partitionName(expired));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from " + partitionName(ahead) + " where id = ?",
+            Long.class, inDefaultPartition.getId())).isEqualTo(1L);
+        assertThat(contentResourceRepository.findAllById(Arrays.asList(inExpiredPartition.getId(),
+            expiredInDefaultPartition.getId(), inDefaultPartition.getId(), kept.getId())))
+            .extracting(Contents::getId)
+            .containsOnly(inDefaultPartition.getId(), kept.getId());
+        assertThat(contentsTombstoneRepository.findAll())
+            .extracting(ContentsTombstone::getId)
+            .containsOnly(inExpiredPartition.getId(), expiredInDefaultPartition.getId());
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("select child.relname from pg_inherits " +
+            "join pg_class parent on parent.oid = pg_inherits.inhparent " +
+            "join pg_class child on child.oid = pg_inherits.inhrelid " +
+            "where parent.relname = 'contents'", String.class);
+    }
+
+    private Contents save(YearMonth month) {
+        return contentResourceRepository.saveAndFlush(new Contents().value("AAAAAAAAAA")
+            .createdAt(month.atDay(10).atStartOfDay(ZoneOffset.UTC))
+            .userBelongsTo(userRepository.findOneByLogin("user").get()));
+    }
+
+    static class Initializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(ConfigurableApplicationContext applicationContext) {
+            TestPropertyValues.of(
+                "spring.datasource.url=" + POSTGRESQL.getJdbcUrl(),
+                "spring.datasource.username=" + POSTGRESQL.getUsername(),
+                "spring.datasource.password=" + POSTGRESQL.getPassword(),
+                "spring.jpa.database-platform=io.github.jhipster.domain.util.FixedPostgreSQL95Dialect",
+                "spring.jpa.database=POSTGRESQL",
+                // The JDBC driver does not list the partitioned contents table as a table
+                "spring.jpa.properties.hibernate.hbm2ddl.auto=none"
+            ).applyTo(applicationContext.getEnvironment());
+        }
+    }
+}
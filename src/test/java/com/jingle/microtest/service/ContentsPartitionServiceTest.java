@@ -0,0 +1,39 @@
+package com.jingle.microtest.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the partition planning of {@link ContentsPartitionService}.
+ */
+class ContentsPartitionServiceTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2019, 11);
+
+    @Test
+    void testPartitionName() {
+        assertThat(ContentsPartitionService.partitionName(YearMonth.of(2019, 6))).isEqualTo("contents_p201906");
+        assertThat(ContentsPartitionService.monthOf("contents_p201906")).contains(YearMonth.of(2019, 6));
+        assertThat(ContentsPartitionService.monthOf("contents_default")).isEmpty();
+        assertThat(ContentsPartitionService.monthOf("contents_pending")).isEmpty();
+    }
+
+    @Test
+    void testMissingMonthsAcrossYearEnd() {
+        assertThat(ContentsPartitionService.missingMonths(Arrays.asList(YearMonth.of(2019, 11), YearMonth.of(2019, 12)), CURRENT, 3))
+            .containsExactly(YearMonth.of(2020, 1), YearMonth.of(2020, 2));
+        assertThat(ContentsPartitionService.missingMonths(Collections.emptyList(), CURRENT, 0)).containsExactly(CURRENT);
+    }
+
+    @Test
+    void testExpiredMonths() {
+        assertThat(ContentsPartitionService.expiredMonths(
+            Arrays.asList(YearMonth.of(2019, 8), YearMonth.of(2019, 5), YearMonth.of(2019, 9), CURRENT), CURRENT, 2))
+            .containsExactly(YearMonth.of(2019, 5), YearMonth.of(2019, 8));
+    }
+}
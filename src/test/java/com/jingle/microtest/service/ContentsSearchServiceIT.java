@@ -0,0 +1,149 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.ContentsTombstoneRepository;
+import com.jingle.microtest.repository.UserRepository;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Integration tests for {@link ContentsSearchService}.
+ * <p>
+ * The tests are not transactional, so that the changes are committed and indexed.
+ */
+@SpringBootTest(classes = MicrotestApp.class)
+public class ContentsSearchServiceIT {
+
+    @Autowired
+    private ContentsSearchService contentsSearchService;
+
+    @Autowired
+    private ContentResourceService contentResourceService;
+
+    @Autowired
+    private ContentResourceRepository contentResourceRepository;
+
+    @Autowired
+    private ContentsTombstoneRepository contentsTombstoneRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ContentsAttachmentService contentsAttachmentService;
+
+    @BeforeEach
+    @AfterEach
+    void cleanIndex() throws Exception {
+        contentsTombstoneRepository.deleteAll();
+        contentResourceRepository.deleteAll();
+        contentsSearchService.rebuild().get();
+        contentsSearchService.refresh();
+    }
+
+    @Test
+    void testSearchMatchesTheContentsOfTheUserOnly() {
+        contentResourceService.save(newContents("user", "red apples"));
+        contentResourceService.save(newContents("user", "green pears"));
+        contentResourceService.save(newContents("admin", "red apples"));
+        contentsSearchService.refresh();
+
+        assertThat(contentsSearchService.search("user", "apples", PageRequest.of(0, 10)))
+            .extracting(ContentsDTO::getLogin, ContentsDTO::getValue)
+            .containsExactly(tuple("user", "red apples"));
+        assertThat(contentsSearchService.search("user", "red pears", PageRequest.of(0, 10))).isEmpty();
+        assertThat(contentsSearchService.search("user", "red | pears", PageRequest.of(0, 10))).hasSize(2);
+    }
+
+    @Test
+    void testResultsAreRankedAndPaged() {
+        contentResourceService.saveAll(Arrays.asList(
+            newContents("user", "apple pie"),
+            newContents("user", "apple apple apple"),
+            newContents("user", "banana")));
+        contentsSearchService.refresh();
+
+        Page<ContentsDTO> first = contentsSearchService.search("user", "apple", PageRequest.of(0, 1));
+        Page<ContentsDTO> second = contentsSearchService.search("user", "apple", PageRequest.of(1, 1));
+
+        assertThat(first.getTotalElements()).isEqualTo(2);
+        assertThat(first.getContent()).extracting(ContentsDTO::getValue).containsExactly("apple apple apple");
+        assertThat(second.getContent()).extracting(ContentsDTO::getValue).containsExactly("apple pie");
+    }
+
+    @Test
+    void testChangesAreIndexed() {
+        Contents contents = contentResourceService.save(newContents("user", "old value"));
+        contentResourceService.updateValueByOwner("user", Collections.singletonList(contents.getId()), "new value");
+        contentsSearchService.refresh();
+
+        assertThat(contentsSearchService.search("user", "old", PageRequest.of(0, 10))).isEmpty();
+        assertThat(contentsSearchService.search("user", "new", PageRequest.of(0, 10)))
+            .extracting(ContentsDTO::getId).containsExactly(contents.getId());
+
+        ZonedDateTime createdAt = contentResourceService.findOneByOwner(contents.getId(), "user").get().getCreatedAt();
+        contentResourceService.deleteAllByOwner("user", createdAt, createdAt.plusSeconds(1));
+        contentsSearchService.refresh();
+
+        assertThat(contentsSearchService.search("user", "new", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void testRebuildReadsTheDatabase() throws Exception {
+        Contents deleted = contentResourceService.save(newContents("user", "deleted value"));
+        contentResourceRepository.deleteById(deleted.getId());
+        contentResourceRepository.saveAndFlush(newContents("user", "unindexed value"));
+        contentsSearchService.refresh();
+
+        assertThat(contentsSearchService.search("user", "value", PageRequest.of(0, 10)))
+            .extracting(ContentsDTO::getValue).containsExactly("deleted value");
+
+        assertThat(contentsSearchService.rebuild().get()).isEqualTo(1);
+        contentsSearchService.refresh();
+
+        assertThat(contentsSearchService.search("user", "value", PageRequest.of(0, 10)))
+            .extracting(ContentsDTO::getValue).containsExactly("unindexed value");
+    }
+
+    @Test
+    void testContentsOfAnotherUserAreNotChanged() throws Exception {
+        Contents own = contentResourceService.save(newContents("user", "own value"));
+        Contents other = contentResourceService.save(newContents("admin", "other value"));
+        contentsAttachmentService.store(other.getId(), "admin", "other.txt", "text/plain",
+            new ByteArrayInputStream("other attachment".getBytes(StandardCharsets.US_ASCII)), null);
+        try {
+            assertThat(contentResourceService.updateValueByOwner("user", Arrays.asList(own.getId(), other.getId()), "new value"))
+                .isEqualTo(1);
+            assertThat(contentResourceService.deleteAllByOwner("user", Arrays.asList(own.getId(), other.getId())))
+                .isEqualTo(1);
+            contentsSearchService.refresh();
+
+            assertThat(contentsSearchService.search("admin", "other", PageRequest.of(0, 10)))
+                .extracting(ContentsDTO::getId).containsExactly(other.getId());
+            assertThat(contentsAttachmentService.findOne(other.getId(), "admin")).isPresent();
+        } finally {
+            contentsAttachmentService.delete(other.getId(), "admin");
+        }
+    }
+
+    private Contents newContents(String login, String value) {
+        return new Contents().value(value).userBelongsTo(userRepository.findOneByLogin(login).get());
+    }
+}
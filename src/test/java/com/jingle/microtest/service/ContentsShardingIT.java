@@ -0,0 +1,261 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.config.ShardRoutingDataSource;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.domain.ContentsShard;
+import com.jingle.microtest.domain.User;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.ContentsShardRepository;
+import com.jingle.microtest.repository.ContentsTombstoneRepository;
+import com.jingle.microtest.repository.UserRepository;
+import com.jingle.microtest.service.dto.ContentsChangeToken;
+import com.jingle.microtest.service.dto.ContentsChangesDTO;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.dto.ContentsShardMoveDTO;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import javax.cache.CacheManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Integration tests for the sharding of {@link Contents}, with the primary database and an embedded shard.
+ * <p>
+ * The seeded user {@code admin} is placed on {@code shard1} by default, and {@code user} on the primary database.
+ */
+@SpringBootTest(classes = MicrotestApp.class, properties = {
+    "application.sharding.enabled=true",
+    "application.sharding.migration-grace-period=0",
+    "application.sharding.migration-batch-size=2",
+    "application.sharding.shards[0].name=shard1",
+    "application.sharding.shards[0].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+public class ContentsShardingIT {
+
+    private static final String SHARD = "shard1";
+
+    @Autowired
+    private ContentResourceService contentResourceService;
+
+    @Autowired
+    private ContentsShardService contentsShardService;
+
+    @Autowired
+    private ContentsShardMigrationService contentsShardMigrationService;
+
+    @Autowired
+    private ContentResourceRepository contentResourceRepository;
+
+    @Autowired
+    private ContentsTombstoneRepository contentsTombstoneRepository;
+
+    @Autowired
+    private ContentsShardRepository contentsShardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    @AfterEach
+    void cleanShards() {
+        contentsShardService.onAllShards(false, shard -> {
+            contentsTombstoneRepository.deleteAll();
+            contentResourceRepository.deleteAll();
+            contentsShardRepository.deleteAll();
+            return null;
+        });
+        cacheManager.getCache(ContentsShardService.SHARD_DIRECTORY_CACHE).clear();
+    }
+
+    @Test
+    void testContentsAreStoredOnTheShardOfTheirOwner() {
+        Contents contents = contentResourceService.save(newContents("admin", "AAAAAAAAAA"));
+
+        assertThat(contentsShardService.shardOf("admin")).isEqualTo(SHARD);
+        assertThat(existsOn(SHARD, contents.getId())).isTrue();
+        assertThat(existsOn(ShardRoutingDataSource.PRIMARY, contents.getId())).isFalse();
+        assertThat(contentResourceService.findAllByOwner("admin")).extracting(ContentsDTO::getValue).containsExactly("AAAAAAAAAA");
+        assertThat(contentResourceService.findAllByOwner("admin", Collections.singletonList(contents.getId()))).hasSize(1);
+        assertThat(contentResourceService.deleteByOwner(contents.getId(), "admin")).isTrue();
+        assertThat(existsOn(SHARD, contents.getId())).isFalse();
+    }
+
+    @Test
+    void testAdminScansAllShards() {
+        Contents onShard = contentResourceService.save(newContents("admin", "AAAAAAAAAA"));
+        Contents onPrimary = contentResourceService.save(newContents("user", "BBBBBBBBBB"));
+
+        assertThat(contentResourceService.findAll()).extracting(Contents::getId).contains(onShard.getId(), onPrimary.getId());
+        assertThat(contentResourceService.findOne(onShard.getId())).isPresent();
+        assertThat(contentsShardMigrationService.countByShard()).containsEntry(SHARD, 1L).containsKey(ShardRoutingDataSource.PRIMARY);
+
+        contentResourceService.delete(onShard.getId());
+
+        assertThat(contentResourceService.findOne(onShard.getId())).isNotPresent();
+        assertThat(contentResourceService.findChangesByOwner("admin", new ContentsChangeToken(0L, 1L), 10).getDeleted())
+            .containsExactly(onShard.getId());
+    }
+
+    @Test
+    void testMigrationMovesContentsAndKeepsTokens() {
+        Contents first = contentResourceService.save(newContents("user", "AAAAAAAAAA"));
+        contentResourceService.saveAll(Arrays.asList(newContents("user", "BBBBBBBBBB"), newContents("user", "CCCCCCCCCC")));
+        contentResourceService.deleteByOwner(first.getId(), "user");
+        ContentsChangesDTO changes = contentResourceService.findChangesByOwner("user", ContentsChangeToken.START, 10);
+        ContentsChangeToken token = ContentsChangeToken.decode(changes.getToken()).get();
+
+        ContentsShardMoveDTO move = contentsShardMigrationService.migrate("user", SHARD).get().join();
+
+        assertThat(move.getSource()).isEqualTo(ShardRoutingDataSource.PRIMARY);
+        assertThat(move.getMoved()).isEqualTo(2);
+        assertThat(contentsShardService.shardOf("user")).isEqualTo(SHARD);
+        assertThat(contentsShardMigrationService.countByShard()).containsEntry(SHARD, 2L);
+        assertThat(existsOn(ShardRoutingDataSource.PRIMARY, id(changes, 0))).isFalse();
+        assertThat(contentResourceService.findAllByOwner("user")).extracting(ContentsDTO::getValue).containsExactly("BBBBBBBBBB", "CCCCCCCCCC");
+        assertThat(contentResourceService.findChangesByOwner("user", ContentsChangeToken.START, 10).getChanged()).hasSize(2);
+
+        Long id = id(changes, 0);
+        contentResourceService.updateValueByOwner("user", Collections.singletonList(id), "DDDDDDDDDD");
+
+        assertThat(contentResourceService.findChangesByOwner("user", token, 10).getChanged())
+            .extracting(ContentsDTO::getId, ContentsDTO::getValue)
+            .containsExactly(tuple(id, "DDDDDDDDDD"));
+    }
+
+    @Test
+    void testMigratingUserIsFenced() {
+        contentResourceService.save(newContents("admin", "AAAAAAAAAA"));
+        Long userId = userRepository.findOneByLogin("admin").get().getId();
+        assertThat(contentsShardService.startMigration(userId, "admin", SHARD)).isTrue();
+
+        assertThatThrownBy(() -> contentResourceService.findAllByOwner("admin")).isInstanceOf(ConcurrencyFailureException.class);
+        assertThatThrownBy(() -> contentsShardMigrationService.migrate("admin", ShardRoutingDataSource.PRIMARY))
+            .isInstanceOf(ConcurrencyFailureException.class);
+
+        contentsShardService.abortMigration(userId, "admin", null);
+
+        assertThat(contentResourceService.findAllByOwner("admin")).hasSize(1);
+    }
+
+    @Test
+    void testRebalance() {
+        contentResourceService.save(newContents("user", "AAAAAAAAAA"));
+        contentsShardMigrationService.migrate("user", SHARD).get().join();
+
+        assertThat(contentsShardMigrationService.planRebalance())
+            .extracting(ContentsShardMoveDTO::getLogin, ContentsShardMoveDTO::getTarget, ContentsShardMoveDTO::getMoved)
+            .containsExactly(tuple("user", ShardRoutingDataSource.PRIMARY, null));
+        assertThat(contentsShardService.shardOf("user")).isEqualTo(SHARD);
+
+        assertThat(contentsShardMigrationService.rebalance().join())
+            .extracting(ContentsShardMoveDTO::getLogin, ContentsShardMoveDTO::getMoved)
+            .containsExactly(tuple("user", 1L));
+        assertThat(contentsShardService.shardOf("user")).isEqualTo(ShardRoutingDataSource.PRIMARY);
+        assertThat(contentResourceService.findAllByOwner("user")).hasSize(1);
+    }
+
+    @Test
+    void testShardIsCachedUntilMigration() {
+        contentResourceService.save(newContents("user", "AAAAAAAAAA"));
+        Long userId = userRepository.findOneByLogin("user").get().getId();
+        // Changed behind the service, so only seen once the cached entry is evicted
+        contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false,
+            () -> contentsShardRepository.saveAndFlush(new ContentsShard(userId, SHARD)));
+
+        assertThat(contentsShardService.shardOf("user")).isEqualTo(ShardRoutingDataSource.PRIMARY);
+
+        assertThat(contentsShardService.startMigration(userId, "user", SHARD)).isTrue();
+
+        assertThatThrownBy(() -> contentsShardService.shardOf("user")).isInstanceOf(ConcurrencyFailureException.class);
+
+        contentsShardService.finishMigration(userId, "user", ShardRoutingDataSource.PRIMARY, null);
+
+        assertThat(contentsShardService.shardOf("user")).isEqualTo(ShardRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void testContentsLeftByAMoveAreDeleted() {
+        Contents contents = contentResourceService.save(newContents("admin", "AAAAAAAAAA"));
+        Long userId = userRepository.findOneByLogin("admin").get().getId();
+        // As left on the primary database by a move to the shard which could not delete them
+        Contents left = contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false,
+            () -> contentResourceRepository.saveAndFlush(newContents("admin", "BBBBBBBBBB")));
+        contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false, () -> {
+            ContentsShard entry = contentsShardRepository.findById(userId).get();
+            entry.setCleanupShard(ShardRoutingDataSource.PRIMARY);
+            return contentsShardRepository.saveAndFlush(entry);
+        });
+
+        contentsShardMigrationService.cleanUpMoves();
+
+        assertThat(existsOn(ShardRoutingDataSource.PRIMARY, left.getId())).isFalse();
+        assertThat(existsOn(SHARD, contents.getId())).isTrue();
+        assertThat(contentsShardRepository.findById(userId).get().getCleanupShard()).isNull();
+        assertThat(contentsShardMigrationService.countByShard()).containsEntry(SHARD, 1L).containsEntry(ShardRoutingDataSource.PRIMARY, 0L);
+    }
+
+    @Test
+    void testUnassignedUserWithContentsStaysOnPrimary() {
+        Long userId = userRepository.findOneByLogin("admin").get().getId();
+        contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false,
+            () -> contentResourceRepository.saveAndFlush(newContents("admin", "AAAAAAAAAA")));
+
+        assertThat(contentsShardService.shardOf("admin")).isEqualTo(ShardRoutingDataSource.PRIMARY);
+        assertThat(contentsShardRepository.findById(userId)).map(ContentsShard::getShard).contains(ShardRoutingDataSource.PRIMARY);
+        assertThat(contentResourceService.findAllByOwner("admin")).hasSize(1);
+    }
+
+    @Test
+    void testNewUserIsCopiedToItsShard() {
+        User user = new User();
+        user.setLogin("shard-user");
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail("shard-user@localhost");
+        Long userId = contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false, () -> userRepository.saveAndFlush(user)).getId();
+        try {
+            contentsShardService.onShard(ShardRoutingDataSource.PRIMARY, false,
+                () -> contentsShardRepository.saveAndFlush(new ContentsShard(userId, SHARD)));
+
+            Contents contents = contentResourceService.save(newContents("shard-user", "AAAAAAAAAA"));
+
+            assertThat(existsOn(SHARD, contents.getId())).isTrue();
+            assertThat(contentsShardService.onShard(SHARD, true, () -> contentResourceRepository.findOwnerIdByLogin("shard-user")))
+                .contains(userId);
+            assertThat(contentResourceService.findAllByOwner("shard-user")).extracting(ContentsDTO::getValue).containsExactly("AAAAAAAAAA");
+        } finally {
+            cleanShards();
+            contentsShardService.onAllShards(false, shard -> {
+                userRepository.deleteById(userId);
+                return null;
+            });
+        }
+    }
+
+    private Contents newContents(String login, String value) {
+        return new Contents().value(value).userBelongsTo(userRepository.findOneByLogin(login).get());
+    }
+
+    private static Long id(ContentsChangesDTO changes, int index) {
+        return changes.getChanged().get(index).getId();
+    }
+
+    private boolean existsOn(String shard, Long id) {
+        return contentsShardService.onShard(shard, true, () -> contentResourceRepository.existsById(id));
+    }
+}
@@ -0,0 +1,38 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the draining of the subscribers of {@link ContentsStreamService}.
+ */
+class ContentsStreamServiceTest {
+
+    @Test
+    void testRejectedDrainIsRetried() {
+        AtomicBoolean rejecting = new AtomicBoolean(true);
+        AtomicInteger runs = new AtomicInteger();
+        ContentsStreamService service = new ContentsStreamService(new ApplicationProperties(), task -> {
+            if (rejecting.get()) {
+                throw new TaskRejectedException("Executor is full");
+            }
+            runs.incrementAndGet();
+            task.run();
+        });
+        service.subscribe("user");
+
+        service.onContentsEvent(ContentsEventDTO.of(ContentsEventDTO.CREATED, "user", Collections.singletonList(1L)));
+        rejecting.set(false);
+        service.onContentsEvent(ContentsEventDTO.of(ContentsEventDTO.CREATED, "user", Collections.singletonList(2L)));
+
+        assertThat(runs).hasValue(1);
+    }
+}
@@ -0,0 +1,312 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.config.ApplicationProperties;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.ContentsTombstoneRepository;
+import com.jingle.microtest.repository.UserRepository;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import com.jingle.microtest.web.rest.ContentsSearchResource;
+import com.jingle.microtest.web.rest.errors.ExceptionTranslator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for {@link ContentsSuggestService}, and the {@code /api/contents/suggest} endpoint.
+ * <p>
+ * The tests are not transactional, so that the changes are committed and applied to the suggestions. The suggestions
+ * may use 10 KB of heap, which holds those of a single user with a value of 1000 characters.
+ */
+@SpringBootTest(classes = MicrotestApp.class, properties = "application.suggest.max-memory=10KB")
+public class ContentsSuggestServiceIT {
+
+    private static final String[] LOGINS = { "user", "admin" };
+
+    @Autowired
+    private ContentsSuggestService contentsSuggestService;
+
+    @Autowired
+    private ContentsSearchService contentsSearchService;
+
+    @Autowired
+    private ContentResourceService contentResourceService;
+
+    @Autowired
+    private ContentResourceRepository contentResourceRepository;
+
+    @Autowired
+    private ContentsTombstoneRepository contentsTombstoneRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc restSuggestMockMvc;
+
+    @BeforeEach
+    void setup() {
+        this.restSuggestMockMvc = MockMvcBuilders.standaloneSetup(new ContentsSearchResource(contentsSearchService, contentsSuggestService))
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter)
+            .build();
+    }
+
+    @BeforeEach
+    @AfterEach
+    void cleanSuggestions() throws Exception {
+        contentsTombstoneRepository.deleteAll();
+        contentResourceRepository.deleteAll();
+        // The contents were deleted behind the back of the service: drop the suggestions as a range delete does
+        ZonedDateTime now = ZonedDateTime.now();
+        for (String login : LOGINS) {
+            contentsSuggestService.onContentsEvent(ContentsEventDTO.of(ContentsEventDTO.DELETED, login, now, now));
+        }
+        awaitUpdates(contentsSuggestService);
+    }
+
+    @Test
+    void testSuggestionsAreLoadedOnFirstUse() throws Exception {
+        contentResourceService.saveAll(Arrays.asList(
+            newContents("user", "apple pie"),
+            newContents("user", "Apple tart"),
+            newContents("user", "banana")));
+        awaitUpdates(contentsSuggestService);
+        double loads = count("contents.suggest.loads");
+        assertThat(gauge("contents.suggest.users")).isZero();
+
+        assertThat(contentsSuggestService.suggest("user", "APP", 10)).containsExactly("apple pie", "Apple tart");
+        assertThat(contentsSuggestService.suggest("user", "b", 10)).containsExactly("banana");
+        assertThat(contentsSuggestService.suggest("user", "apple", 1)).containsExactly("apple pie");
+
+        assertThat(count("contents.suggest.loads")).isEqualTo(loads + 1);
+        assertThat(gauge("contents.suggest.users")).isEqualTo(1);
+        assertThat(gauge("contents.suggest.entries")).isEqualTo(3);
+        assertThat(gauge("contents.suggest.memory")).isPositive();
+    }
+
+    @Test
+    void testChangesAreAppliedIncrementally() throws Exception {
+        Contents apple = contentResourceService.save(newContents("user", "apple pie"));
+        awaitUpdates(contentsSuggestService);
+        assertThat(contentsSuggestService.suggest("user", "a", 10)).containsExactly("apple pie");
+        double loads = count("contents.suggest.loads");
+
+        Contents apricot = contentResourceService.save(newContents("user", "apricot"));
+        awaitUpdates(contentsSuggestService);
+        assertThat(contentsSuggestService.suggest("user", "a", 10)).containsExactly("apple pie", "apricot");
+
+        contentResourceService.updateValueByOwner("user", Collections.singletonList(apple.getId()), "banana");
+        awaitUpdates(contentsSuggestService);
+        assertThat(contentsSuggestService.suggest("user", "a", 10)).containsExactly("apricot");
+        assertThat(contentsSuggestService.suggest("user", "b", 10)).containsExactly("banana");
+
+        contentResourceService.deleteByOwner(apricot.getId(), "user");
+        awaitUpdates(contentsSuggestService);
+        assertThat(contentsSuggestService.suggest("user", "a", 10)).isEmpty();
+
+        assertThat(count("contents.suggest.loads")).isEqualTo(loads);
+        assertThat(gauge("contents.suggest.entries")).isEqualTo(1);
+    }
+
+    @Test
+    void testRangeChangesReloadTheSuggestions() throws Exception {
+        Contents apple = contentResourceService.save(newContents("user", "apple pie"));
+        awaitUpdates(contentsSuggestService);
+        assertThat(contentsSuggestService.suggest("user", "a", 10)).containsExactly("apple pie");
+        double loads = count("contents.suggest.loads");
+
+        ZonedDateTime createdAt = contentResourceService.findOneByOwner(apple.getId(), "user").get().getCreatedAt();
+        contentResourceService.updateValueByOwner("user", createdAt, createdAt.plusSeconds(1), "apricot");
+        awaitUpdates(contentsSuggestService);
+
+        assertThat(gauge("contents.suggest.users")).isZero();
+        assertThat(contentsSuggestService.suggest("user", "a", 10)).containsExactly("apricot");
+        assertThat(count("contents.suggest.loads")).isEqualTo(loads + 1);
+    }
+
+    @Test
+    void testLeastRecentlyUsedSuggestionsAreEvicted() throws Exception {
+        contentResourceService.save(newContents("user", "u" + repeat('x', 999)));
+        contentResourceService.save(newContents("admin", "a" + repeat('x', 999)));
+        awaitUpdates(contentsSuggestService);
+        double loads = count("contents.suggest.loads");
+        double evictions = count("contents.suggest.evictions");
+
+        assertThat(contentsSuggestService.suggest("user", "u", 10)).hasSize(1);
+        assertThat(contentsSuggestService.suggest("user", "u", 10)).hasSize(1);
+        assertThat(contentsSuggestService.suggest("admin", "a", 10)).hasSize(1);
+
+        assertThat(count("contents.suggest.loads")).isEqualTo(loads + 2);
+        assertThat(count("contents.suggest.evictions")).isEqualTo(evictions + 1);
+        assertThat(gauge("contents.suggest.users")).isEqualTo(1);
+        assertThat(gauge("contents.suggest.memory")).isLessThanOrEqualTo(10 * 1024);
+
+        assertThat(contentsSuggestService.suggest("user", "u", 10)).hasSize(1);
+
+        assertThat(count("contents.suggest.loads")).isEqualTo(loads + 3);
+        assertThat(count("contents.suggest.evictions")).isEqualTo(evictions + 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSuggestionsChangedWhileLoadingAreNotKept() throws Exception {
+        ContentResourceService contentResourceService = mock(ContentResourceService.class);
+        ContentsShardService contentsShardService = mock(ContentsShardService.class);
+        when(contentsShardService.onShard(any(), anyBoolean(), any()))
+            .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(2)).get());
+        ContentsSuggestService service = new ContentsSuggestService(contentResourceService, contentsShardService,
+            new ApplicationProperties(), new SimpleMeterRegistry());
+        List<ContentsDTO> contents = new ArrayList<>(Collections.singletonList(contentsDTO(1L, "apple pie")));
+        Answer<Void> load = invocation -> {
+            contents.forEach(((Consumer<ContentsDTO>) invocation.getArgument(1))::accept);
+            return null;
+        };
+        // A content is created after the first load read the contents, and before it completes
+        doAnswer(invocation -> {
+            load.answer(invocation);
+            contents.add(contentsDTO(2L, "apricot"));
+            service.onContentsEvent(ContentsEventDTO.of(ContentsEventDTO.CREATED, "user", Collections.singletonList(2L)));
+            awaitUpdates(service);
+            return null;
+        }).doAnswer(load).when(contentResourceService).forEachByOwner(eq("user"), any());
+        try {
+            assertThat(service.suggest("user", "a", 10)).containsExactly("apple pie");
+            assertThat(service.suggest("user", "a", 10)).containsExactly("apple pie", "apricot");
+            assertThat(service.suggest("user", "a", 10)).containsExactly("apple pie", "apricot");
+
+            verify(contentResourceService, times(2)).forEachByOwner(eq("user"), any());
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void testSuggestContentsOfTheUserOnly() throws Exception {
+        contentResourceService.save(newContents("user", "apple pie"));
+        contentResourceService.save(newContents("admin", "apple secret"));
+
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "App").with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").value(contains("apple pie")));
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "app").with(remoteUser("admin")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").value(contains("apple secret")));
+    }
+
+    @Test
+    void testSuggestLimitsTheNumberOfValues() throws Exception {
+        List<Contents> contents = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            contents.add(newContents("user", String.format("item %02d", i)));
+        }
+        contentResourceService.saveAll(contents);
+
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "item").with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(10)))
+            .andExpect(jsonPath("$[0]").value("item 00"));
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "item").param("size", "1000").with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(50)));
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "item").param("size", "0").with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").value(contains("item 00")));
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "item 5").param("size", "5").with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").value(contains("item 50", "item 51", "item 52", "item 53", "item 54")));
+    }
+
+    @Test
+    void testSuggestRequiresAPrefix() throws Exception {
+        restSuggestMockMvc.perform(get("/api/contents/suggest").param("prefix", "").with(remoteUser("user")))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.prefixempty"));
+        restSuggestMockMvc.perform(get("/api/contents/suggest").with(remoteUser("user")))
+            .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Wait until the changes given to a service so far are applied, as they are applied by a single thread.
+     */
+    private static void awaitUpdates(ContentsSuggestService service) throws Exception {
+        ((ExecutorService) ReflectionTestUtils.getField(service, "updater")).submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static RequestPostProcessor remoteUser(String login) {
+        return request -> {
+            request.setRemoteUser(login);
+            return request;
+        };
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static ContentsDTO contentsDTO(Long id, String value) {
+        ContentsDTO contentsDTO = new ContentsDTO();
+        contentsDTO.setId(id);
+        contentsDTO.setValue(value);
+        return contentsDTO;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private Contents newContents(String login, String value) {
+        return new Contents().value(value).userBelongsTo(userRepository.findOneByLogin(login).get());
+    }
+}
@@ -0,0 +1,95 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link ContentsValueRecompressionService}, and the storage of the values of the contents.
+ * <p>
+ * The values are compressed with Deflate from 64 bytes in the test configuration.
+ */
+@SpringBootTest(classes = MicrotestApp.class)
+public class ContentsValueRecompressionServiceIT {
+
+    private static final String LONG_VALUE = "The quick brown fox jumps over the lazy dog. The quick brown fox jumps over the lazy dog.";
+
+    private static final byte DEFLATE = 1;
+
+    @Autowired
+    private ContentsValueRecompressionService contentsValueRecompressionService;
+
+    @Autowired
+    private ContentResourceRepository contentResourceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void cleanContents() {
+        contentResourceRepository.deleteAll();
+    }
+
+    @Test
+    void testLongValuesAreStoredCompressed() {
+        Contents contents = contentResourceRepository.saveAndFlush(newContents(LONG_VALUE));
+
+        byte[] stored = storedValue(contents.getId());
+
+        assertThat(stored[0]).isEqualTo(DEFLATE);
+        assertThat(stored.length).isLessThan(LONG_VALUE.length());
+        assertThat(contentResourceRepository.findOneByIdAndOwnerLogin(contents.getId(), "user"))
+            .hasValueSatisfying(found -> assertThat(found.getValue()).isEqualTo(LONG_VALUE));
+    }
+
+    @Test
+    void testValuesStoredBeforeTheCompressionAreRecompressed() {
+        Contents shortContents = contentResourceRepository.saveAndFlush(newContents("AAAAAAAAAA"));
+        Contents longContents = contentResourceRepository.saveAndFlush(newContents(LONG_VALUE));
+        // As migrated, or written while the compression was disabled
+        jdbcTemplate.update("update contents set jhi_value = ? where id = ?", plain("AAAAAAAAAA"), shortContents.getId());
+        jdbcTemplate.update("update contents set jhi_value = ? where id = ?", plain(LONG_VALUE), longContents.getId());
+        assertThat(contentResourceRepository.findOneByIdAndOwnerLogin(longContents.getId(), "user"))
+            .hasValueSatisfying(found -> assertThat(found.getValue()).isEqualTo(LONG_VALUE));
+
+        assertThat(contentsValueRecompressionService.recompress()).isEqualTo(1);
+
+        assertThat(storedValue(shortContents.getId())).isEqualTo(plain("AAAAAAAAAA"));
+        assertThat(storedValue(longContents.getId())[0]).isEqualTo(DEFLATE);
+        assertThat(contentResourceRepository.findOneByIdAndOwnerLogin(shortContents.getId(), "user"))
+            .hasValueSatisfying(found -> assertThat(found.getValue()).isEqualTo("AAAAAAAAAA"));
+        assertThat(contentResourceRepository.findOneByIdAndOwnerLogin(longContents.getId(), "user"))
+            .hasValueSatisfying(found -> assertThat(found.getValue()).isEqualTo(LONG_VALUE));
+        assertThat(contentsValueRecompressionService.recompress()).isZero();
+    }
+
+    private static byte[] plain(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = new byte[utf8.length + 1];
+        System.arraycopy(utf8, 0, stored, 1, utf8.length);
+        return stored;
+    }
+
+    private byte[] storedValue(Long id) {
+        return jdbcTemplate.queryForObject("select jhi_value from contents where id = ?", byte[].class, id);
+    }
+
+    private Contents newContents(String value) {
+        return new Contents().value(value).userBelongsTo(userRepository.findOneByLogin("user").get());
+    }
+}
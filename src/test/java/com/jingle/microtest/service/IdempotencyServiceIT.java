@@ -0,0 +1,79 @@
+package com.jingle.microtest.service;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.web.rest.errors.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import javax.cache.CacheManager;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for {@link IdempotencyService}.
+ */
+@SpringBootTest(classes = MicrotestApp.class)
+public class IdempotencyServiceIT {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void clearResults() {
+        cacheManager.getCache(IdempotencyService.IDEMPOTENCY_KEYS_CACHE).clear();
+    }
+
+    @Test
+    void testSameRequestIsReplayed() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThat(idempotencyService.execute("user", "key", Arrays.asList("a", "b"), runs::incrementAndGet)).isEqualTo(1);
+        assertThat(idempotencyService.execute("USER", "key", Arrays.asList("a", "b"), runs::incrementAndGet)).isEqualTo(1);
+        assertThat(idempotencyService.execute("admin", "key", Arrays.asList("a", "b"), runs::incrementAndGet)).isEqualTo(2);
+        assertThat(idempotencyService.execute("user", null, Arrays.asList("a", "b"), runs::incrementAndGet)).isEqualTo(3);
+    }
+
+    @Test
+    void testKeyCannotBeReusedForAnotherRequest() {
+        AtomicInteger runs = new AtomicInteger();
+        idempotencyService.execute("user", "key", Arrays.asList("a", "b"), runs::incrementAndGet);
+
+        assertThatThrownBy(() -> idempotencyService.execute("user", "key", Arrays.asList("a", "c"), runs::incrementAndGet))
+            .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void testRunningRequestIsNotEvicted() {
+        Integer result = idempotencyService.execute("user", "key", "a", () -> {
+            // Evict every result, as the cache does when it is full
+            cacheManager.getCache(IdempotencyService.IDEMPOTENCY_KEYS_CACHE).clear();
+            assertThatThrownBy(() -> idempotencyService.execute("user", "key", "a", () -> 2))
+                .isInstanceOf(ConcurrencyFailureException.class);
+            assertThatThrownBy(() -> idempotencyService.execute("user", "key", "b", () -> 2))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+            return 1;
+        });
+
+        assertThat(result).isEqualTo(1);
+        assertThat(idempotencyService.execute("user", "key", "a", () -> 2)).isEqualTo(1);
+    }
+
+    @Test
+    void testFailedRequestReleasesTheKey() {
+        assertThatThrownBy(() -> idempotencyService.execute("user", "key", "a", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(idempotencyService.execute("user", "key", "b", () -> 2)).isEqualTo(2);
+    }
+}
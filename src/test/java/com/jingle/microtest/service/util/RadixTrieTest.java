@@ -0,0 +1,67 @@
+package com.jingle.microtest.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link RadixTrie}.
+ */
+public class RadixTrieTest {
+
+    @Test
+    void testFindByPrefix() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("team", "Team");
+        trie.add("tea", "tea");
+        trie.add("test", "test");
+        trie.add("toast", "toast");
+
+        assertThat(trie.size()).isEqualTo(4);
+        assertThat(trie.findByPrefix("te", 10)).containsExactly("tea", "Team", "test");
+        assertThat(trie.findByPrefix("tea", 10)).containsExactly("tea", "Team");
+        assertThat(trie.findByPrefix("teas", 10)).isEmpty();
+        assertThat(trie.findByPrefix("to", 10)).containsExactly("toast");
+        assertThat(trie.findByPrefix("x", 10)).isEmpty();
+        assertThat(trie.findByPrefix("", 2)).containsExactly("tea", "Team");
+    }
+
+    @Test
+    void testKeysAreCounted() {
+        RadixTrie trie = new RadixTrie();
+        trie.add("tea", "tea");
+        trie.add("tea", "Tea");
+
+        assertThat(trie.remove("tea")).isTrue();
+        assertThat(trie.findByPrefix("t", 10)).containsExactly("Tea");
+        assertThat(trie.remove("tea")).isTrue();
+        assertThat(trie.findByPrefix("t", 10)).isEmpty();
+        assertThat(trie.remove("tea")).isFalse();
+        assertThat(trie.remove("te")).isFalse();
+    }
+
+    @Test
+    void testRemovalRestoresTheEstimatedSize() {
+        RadixTrie trie = new RadixTrie();
+        long empty = trie.getEstimatedBytes();
+        trie.add("team", "team");
+        long one = trie.getEstimatedBytes();
+        trie.add("tea", "tea");
+        trie.add("test", "test");
+        trie.add("toast", "toast");
+
+        assertThat(trie.getEstimatedBytes()).isGreaterThan(one);
+
+        trie.remove("tea");
+        trie.remove("test");
+        trie.remove("toast");
+
+        assertThat(trie.getEstimatedBytes()).isEqualTo(one);
+        assertThat(trie.findByPrefix("t", 10)).containsExactly("team");
+
+        trie.remove("team");
+
+        assertThat(trie.getEstimatedBytes()).isEqualTo(empty);
+        assertThat(trie.size()).isZero();
+    }
+}
@@ -0,0 +1,209 @@
+package com.jingle.microtest.web.rest;
+
+import com.jingle.microtest.MicrotestApp;
+import com.jingle.microtest.domain.Contents;
+import com.jingle.microtest.repository.ContentResourceRepository;
+import com.jingle.microtest.repository.UserRepository;
+import com.jingle.microtest.service.ContentsAttachmentService;
+import com.jingle.microtest.service.dto.ContentsAttachmentDTO;
+import com.jingle.microtest.web.rest.errors.ExceptionTranslator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the {@link ContentsAttachmentResource} REST controller.
+ * <p>
+ * The attachments are split into chunks of 16 bytes in the test configuration.
+ */
+@SpringBootTest(classes = MicrotestApp.class)
+public class ContentsAttachmentResourceIT {
+
+    private static final byte[] ATTACHMENT = "0123456789abcdefghijklmnopqrstuvwxyzABCD".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    private ContentsAttachmentService contentsAttachmentService;
+
+    @Autowired
+    private ContentResourceRepository contentResourceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restAttachmentMockMvc;
+
+    private Contents contents;
+
+    @BeforeEach
+    void setup() {
+        this.restAttachmentMockMvc = MockMvcBuilders.standaloneSetup(new ContentsAttachmentResource(contentsAttachmentService))
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter)
+            .build();
+        contents = new Contents().value("AAAAAAAAAA").userBelongsTo(userRepository.findOneByLogin("user").get());
+    }
+
+    @Test
+    @Transactional
+    void uploadAndDownloadAttachment() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        String digest = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(ATTACHMENT));
+
+        restAttachmentMockMvc.perform(multipart("/api/contents/{id}/attachment", contents.getId())
+            .file(new MockMultipartFile("file", "letters.txt", "text/plain", ATTACHMENT))
+            .header("Digest", "sha-256=" + digest)
+            .with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.size").value(ATTACHMENT.length))
+            .andExpect(jsonPath("$.fileName").value("letters.txt"));
+
+        restAttachmentMockMvc.perform(get("/api/contents/{id}/attachment", contents.getId()).with(remoteUser("user")))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/plain"))
+            .andExpect(header().string("Digest", "sha-256=" + digest))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(content().bytes(ATTACHMENT));
+    }
+
+    @Test
+    @Transactional
+    void downloadRangeOfAttachment() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        restAttachmentMockMvc.perform(multipart("/api/contents/{id}/attachment", contents.getId())
+            .file(new MockMultipartFile("file", "letters.txt", "text/plain", ATTACHMENT))
+            .with(remoteUser("user")))
+            .andExpect(status().isOk());
+
+        restAttachmentMockMvc.perform(get("/api/contents/{id}/attachment", contents.getId())
+            .header(HttpHeaders.RANGE, "bytes=10-35")
+            .with(remoteUser("user")))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-35/" + ATTACHMENT.length))
+            .andExpect(content().bytes(Arrays.copyOfRange(ATTACHMENT, 10, 36)));
+
+        restAttachmentMockMvc.perform(get("/api/contents/{id}/attachment", contents.getId())
+            .header(HttpHeaders.RANGE, "bytes=-4")
+            .with(remoteUser("user")))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().bytes(Arrays.copyOfRange(ATTACHMENT, ATTACHMENT.length - 4, ATTACHMENT.length)));
+
+        restAttachmentMockMvc.perform(get("/api/contents/{id}/attachment", contents.getId())
+            .header(HttpHeaders.RANGE, "bytes=100-")
+            .with(remoteUser("user")))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + ATTACHMENT.length));
+    }
+
+    @Test
+    @Transactional
+    void uploadAttachmentWithWrongDigest() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        String digest = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(new byte[0]));
+
+        restAttachmentMockMvc.perform(multipart("/api/contents/{id}/attachment", contents.getId())
+            .file(new MockMultipartFile("file", "letters.txt", "text/plain", ATTACHMENT))
+            .header("Digest", "sha-256=" + digest)
+            .with(remoteUser("user")))
+            .andExpect(status().isBadRequest());
+
+        restAttachmentMockMvc.perform(get("/api/contents/{id}/attachment", contents.getId()).with(remoteUser("user")))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void attachmentOfAnotherUserIsNotFound() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        restAttachmentMockMvc.perform(multipart("/api/contents/{id}/attachment", contents.getId())
+            .file(new MockMultipartFile("file", "letters.txt", "text/plain", ATTACHMENT))
+            .with(remoteUser("admin")))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void deleteAttachment() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        restAttachmentMockMvc.perform(multipart("/api/contents/{id}/attachment", contents.getId())
+            .file(new MockMultipartFile("file", "letters.txt", "text/plain", ATTACHMENT))
+            .with(remoteUser("user")))
+            .andExpect(status().isOk());
+
+        restAttachmentMockMvc.perform(delete("/api/contents/{id}/attachment", contents.getId()).with(remoteUser("user")))
+            .andExpect(status().isNoContent());
+
+        restAttachmentMockMvc.perform(get("/api/contents/{id}/attachment", contents.getId()).with(remoteUser("user")))
+            .andExpect(status().isNotFound());
+        restAttachmentMockMvc.perform(delete("/api/contents/{id}/attachment", contents.getId()).with(remoteUser("user")))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void openChunksAreReadableAfterReplacement() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        ContentsAttachmentDTO first = contentsAttachmentService.store(contents.getId(), "user", "letters.txt", "text/plain",
+            new ByteArrayInputStream(ATTACHMENT), null).get();
+        List<ContentsAttachmentService.ChunkRange> chunks = contentsAttachmentService.openChunks(first, 0, ATTACHMENT.length - 1).get();
+        try {
+            byte[] replacement = new byte[ATTACHMENT.length];
+            contentsAttachmentService.store(contents.getId(), "user", "zeros.bin", "application/octet-stream",
+                new ByteArrayInputStream(replacement), null);
+
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            for (ContentsAttachmentService.ChunkRange chunk : chunks) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) chunk.getCount());
+                while (buffer.hasRemaining()) {
+                    chunk.getChannel().read(buffer, chunk.getPosition() + buffer.position());
+                }
+                read.write(buffer.array());
+            }
+            assertThat(read.toByteArray()).isEqualTo(ATTACHMENT);
+        } finally {
+            for (ContentsAttachmentService.ChunkRange chunk : chunks) {
+                chunk.close();
+            }
+        }
+        // The chunks of the replaced attachment are gone
+        assertThat(contentsAttachmentService.openChunks(first, 0, ATTACHMENT.length - 1)).isEmpty();
+    }
+
+    private static RequestPostProcessor remoteUser(String login) {
+        return request -> {
+            request.setRemoteUser(login);
+            return request;
+        };
+    }
+}
@@ -3,10 +3,16 @@ package com.jingle.microtest.web.rest;
 import com.jingle.microtest.MicrotestApp;
 import com.jingle.microtest.domain.Contents;
 import com.jingle.microtest.domain.User;
+import com.jingle.microtest.domain.id.SnowflakeIdGenerator;
 import com.jingle.microtest.repository.UserRepository;
 import com.jingle.microtest.repository.ContentResourceRepository;
 import com.jingle.microtest.security.jwt.TokenProvider;
 import com.jingle.microtest.service.ContentResourceService;
+import com.jingle.microtest.service.ContentsStreamService;
+import com.jingle.microtest.service.IdempotencyService;
+import com.jingle.microtest.service.dto.ContentsDTO;
+import com.jingle.microtest.service.dto.ContentsEventDTO;
+import com.jingle.microtest.service.mapper.ContentsMapper;
 import com.jingle.microtest.web.rest.errors.ExceptionTranslator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,26 +21,36 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.json.JacksonJsonParser;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.persistence.EntityManager;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 import static com.jingle.microtest.web.rest.TestUtil.createFormattingConversionService;
 import static com.jingle.microtest.web.rest.TestUtil.sameInstant;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -56,12 +72,24 @@ public class ContentsIT {
     @Autowired
     private ContentResourceService contentResourceService;
 
+    @Autowired
+    private ContentsStreamService contentsStreamService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ContentsMapper contentsMapper;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileMessageConverter;
+
     @Autowired
     private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
 
@@ -77,6 +105,9 @@ public class ContentsIT {
     @Autowired
     private Validator validator;
 
+    @Autowired
+    private javax.validation.Validator beanValidator;
+
     @Autowired
     private TokenProvider tokenProvider;
 
@@ -85,6 +116,8 @@ public class ContentsIT {
 
     private MockMvc restContentMockMvc;
 
+    private MockMvc restContentsStreamMockMvc;
+
     private MockMvc mockMvc;
 
     private Contents contents;
@@ -96,13 +129,17 @@ public class ContentsIT {
     @BeforeEach
     void setup() {
         MockitoAnnotations.initMocks(this);
-        final ContentResource contentResource = new ContentResource(contentResourceService, userRepository);
+        final ContentResource contentResource = new ContentResource(contentResourceService, userRepository,
+            contentsMapper, jacksonMessageConverter.getObjectMapper(), beanValidator, idempotencyService);
         this.restContentMockMvc = MockMvcBuilders.standaloneSetup(contentResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
             .setConversionService(createFormattingConversionService())
-            .setMessageConverters(jacksonMessageConverter)
+            .setMessageConverters(jacksonMessageConverter, smileMessageConverter)
             .setValidator(validator).build();
+        this.restContentsStreamMockMvc = MockMvcBuilders.standaloneSetup(new ContentsStreamResource(contentsStreamService))
+            .setControllerAdvice(exceptionTranslator)
+            .build();
         UserJWTController userJWTController = new UserJWTController(tokenProvider, authenticationManager);
 
         this.mockMvc = MockMvcBuilders.standaloneSetup(userJWTController)
@@ -182,6 +219,113 @@ public class ContentsIT {
         Contents testContents = contentsList.get(contentsList.size() - 1);
         assertThat(testContents.getValue()).isEqualTo(DEFAULT_VALUE);
         assertThat(testContents.getCreatedAt()).isEqualTo(DEFAULT_CREATED_AT);
+        // The id is a Snowflake id of the node configured for the tests
+        assertThat((testContents.getId() >> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID).isEqualTo(0);
+    }
+
+    @Test
+    @Transactional
+    void createContentWithIdempotencyKey() throws Exception {
+        int databaseSizeBeforeCreate = contentResourceRepository.findAll().size();
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        // Create the Contents, then retry the same request
+        String id = restContentMockMvc.perform(post("/api/contents").header("Authorization", "Bearer " + accessToken)
+            .header("Idempotency-Key", idempotencyKey)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(contents)))
+            .andExpect(status().isCreated())
+            .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        restContentMockMvc.perform(post("/api/contents").header("Authorization", "Bearer " + accessToken)
+            .header("Idempotency-Key", idempotencyKey)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(contents)))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(HttpHeaders.LOCATION, id));
+
+        // Validate only one Contents was created
+        assertThat(contentResourceRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    @Test
+    @Transactional
+    void createContentWithReusedIdempotencyKey() throws Exception {
+        int databaseSizeBeforeCreate = contentResourceRepository.findAll().size();
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        // Create the Contents, then send another content with the same key
+        restContentMockMvc.perform(post("/api/contents").header("Authorization", "Bearer " + accessToken)
+            .header("Idempotency-Key", idempotencyKey)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(contents)))
+            .andExpect(status().isCreated());
+
+        restContentMockMvc.perform(post("/api/contents").header("Authorization", "Bearer " + accessToken)
+            .header("Idempotency-Key", idempotencyKey)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(contents.value(UPDATED_VALUE))))
+            .andExpect(status().isUnprocessableEntity());
+
+        // Validate the second Contents was not created
+        List<Contents> contentsList = contentResourceRepository.findAll();
+        assertThat(contentsList).hasSize(databaseSizeBeforeCreate + 1);
+        assertThat(contentsList).extracting(Contents::getValue).doesNotContain(UPDATED_VALUE);
+    }
+
+    @Test
+    @Transactional
+    void createContentsBatch() throws Exception {
+        int databaseSizeBeforeCreate = contentResourceRepository.findAll().size();
+
+        Contents invalid = createEntity(em);
+        invalid.setValue(null);
+        List<Contents> batch = Arrays.asList(createEntity(em), invalid, createEntity(em).value(UPDATED_VALUE));
+
+        // Create the batch, the invalid item is reported and skipped
+        restContentMockMvc.perform(post("/api/contents/batch").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(batch)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(3)))
+            .andExpect(jsonPath("$.[0].id").isString())
+            .andExpect(jsonPath("$.[1].error").value("error.validation"))
+            .andExpect(jsonPath("$.[2].id").isString());
+
+        // Validate the Contents in the database
+        List<Contents> contentsList = contentResourceRepository.findAll();
+        assertThat(contentsList).hasSize(databaseSizeBeforeCreate + 2);
+        assertThat(contentsList).extracting(Contents::getValue).contains(DEFAULT_VALUE, UPDATED_VALUE);
     }
 
     @Test
@@ -237,11 +381,113 @@ public class ContentsIT {
             ))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
-            .andExpect(jsonPath("$.[*].id").value(hasItem(contents.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(contents.getId().toString())))
             .andExpect(jsonPath("$.[*].value").value(hasItem(DEFAULT_VALUE)))
             .andExpect(jsonPath("$.[*].createdAt").value(hasItem(sameInstant(DEFAULT_CREATED_AT))));
     }
 
+    @Test
+    @Transactional
+    void getAllContentsWithCursor() throws Exception {
+        Contents first = contentResourceRepository.saveAndFlush(createEntity(em));
+        Contents second = contentResourceRepository.saveAndFlush(createEntity(em).createdAt(DEFAULT_CREATED_AT.plusSeconds(1)));
+
+        // Get the first page, which links to the next one
+        String link = restContentMockMvc.perform(get("/api/contents?size=1").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$.[0].id").value(first.getId().toString()))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        String cursor = UriComponentsBuilder.fromUriString(link.substring(1, link.indexOf('>')))
+            .build().getQueryParams().getFirst("cursor");
+
+        // Get the next page from the cursor
+        restContentMockMvc.perform(get("/api/contents?size=1&cursor={cursor}", cursor).header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(second.getId().toString())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(first.getId().toString()))));
+    }
+
+    @Test
+    @Transactional
+    void getAllContentsWithFields() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+
+        // Get only the ids and creation dates of the contents
+        restContentMockMvc.perform(get("/api/contents?fields=id,createdAt").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(contents.getId().toString())))
+            .andExpect(jsonPath("$.[*].createdAt").value(hasItem(sameInstant(DEFAULT_CREATED_AT))))
+            .andExpect(jsonPath("$.[*].value").isEmpty())
+            .andExpect(jsonPath("$.[*].version").isEmpty());
+
+        // Unknown fields are rejected
+        restContentMockMvc.perform(get("/api/contents/{id}?fields=id,user", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getAllContentsWithInvalidCursor() throws Exception {
+        restContentMockMvc.perform(get("/api/contents?cursor=invalid").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void exportContents() throws Exception {
+        contentResourceRepository.saveAndFlush(contents);
+        contentResourceRepository.saveAndFlush(createEntity(em).value(UPDATED_VALUE));
+
+        // Export the contents, one JSON object per line
+        String export = restContentMockMvc.perform(get("/api/contents/export").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = export.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(new JacksonJsonParser().parseMap(lines[0]).get("value")).isEqualTo(DEFAULT_VALUE);
+        assertThat(new JacksonJsonParser().parseMap(lines[1]).get("value")).isEqualTo(UPDATED_VALUE);
+    }
+
     @Test
     @Transactional
     void getContent() throws Exception {
@@ -258,11 +504,154 @@ public class ContentsIT {
             ))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
-            .andExpect(jsonPath("$.id").value(contents.getId().intValue()))
+            .andExpect(jsonPath("$.id").value(contents.getId().toString()))
             .andExpect(jsonPath("$.value").value(DEFAULT_VALUE))
             .andExpect(jsonPath("$.createdAt").value(sameInstant(DEFAULT_CREATED_AT)));
     }
 
+    @Test
+    @Transactional
+    void getContentAsSmile() throws Exception {
+        // Initialize the database
+        contentResourceRepository.saveAndFlush(contents);
+
+        // Get the contents in the Smile binary format
+        byte[] body = restContentMockMvc.perform(get("/api/contents/{id}", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .accept("application/x-jackson-smile")
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-jackson-smile"))
+            .andReturn().getResponse().getContentAsByteArray();
+
+        ContentsDTO content = smileMessageConverter.getObjectMapper().readValue(body, ContentsDTO.class);
+        assertThat(content.getId()).isEqualTo(contents.getId());
+        assertThat(content.getValue()).isEqualTo(DEFAULT_VALUE);
+        assertThat(content.getCreatedAt().toInstant()).isEqualTo(DEFAULT_CREATED_AT.toInstant());
+    }
+
+    @Test
+    @Transactional
+    void getContentsByIds() throws Exception {
+        // Initialize the database
+        Contents first = contentResourceRepository.saveAndFlush(createEntity(em));
+        Contents second = contentResourceRepository.saveAndFlush(createEntity(em).value(UPDATED_VALUE));
+
+        // Get both contents in the order of the ids, unknown ids are skipped
+        restContentMockMvc.perform(get("/api/contents").param("ids", second.getId() + "," + Long.MAX_VALUE + "," + first.getId())
+            .header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$.[0].id").value(second.getId().toString()))
+            .andExpect(jsonPath("$.[1].id").value(first.getId().toString()));
+    }
+
+    @Test
+    @Transactional
+    void getContentDoesNotExposeOwner() throws Exception {
+        // Initialize the database
+        contentResourceRepository.saveAndFlush(contents);
+
+        // Only the login of the owner is returned
+        restContentMockMvc.perform(get("/api/contents/{id}", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.login").value(this.user.getLogin()))
+            .andExpect(jsonPath("$.userBelongsTo").doesNotExist());
+    }
+
+    @Test
+    @Transactional
+    void getContentNotModified() throws Exception {
+        // Initialize the database
+        contentResourceRepository.saveAndFlush(contents);
+
+        // Get the contents with the ETag the client already has
+        restContentMockMvc.perform(get("/api/contents/{id}", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .header(HttpHeaders.IF_NONE_MATCH, "\"" + contents.getVersion() + "\"")
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    @Transactional
+    void getContentInAnotherRepresentationIsModified() throws Exception {
+        // Initialize the database
+        contentResourceRepository.saveAndFlush(contents);
+
+        // The client has the ETag of the JSON representation with all the fields
+        String eTag = "\"" + contents.getVersion() + "\"";
+        restContentMockMvc.perform(get("/api/contents/{id}?fields=id", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andExpect(jsonPath("$.id").value(contents.getId().toString()));
+        restContentMockMvc.perform(get("/api/contents/{id}", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .accept("application/x-jackson-smile")
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andExpect(content().contentTypeCompatibleWith("application/x-jackson-smile"));
+    }
+
+    @Test
+    @Transactional
+    void updateContentWithStaleETag() throws Exception {
+        // Initialize the database
+        contentResourceService.save(contents);
+        em.flush();
+
+        ContentsDTO updatedContents = new ContentsDTO(contents.getId(), UPDATED_VALUE, UPDATED_CREATED_AT, null, null);
+
+        restContentMockMvc.perform(put("/api/contents").header("Authorization", "Bearer " + accessToken)
+            .header(HttpHeaders.IF_MATCH, "\"" + (contents.getVersion() + 1) + "\"")
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(updatedContents)))
+            .andExpect(status().isPreconditionFailed());
+
+        // Validate the Contents is unchanged
+        assertThat(contentResourceRepository.findById(contents.getId()).get().getValue()).isEqualTo(DEFAULT_VALUE);
+    }
+
     @Test
     @Transactional
     void getNonExistingContent() throws Exception {
@@ -313,6 +702,60 @@ public class ContentsIT {
         assertThat(testContents.getCreatedAt()).isEqualTo(UPDATED_CREATED_AT);
     }
 
+    @Test
+    @Transactional
+    void partialUpdateContent() throws Exception {
+        // Initialize the database
+        contentResourceService.save(contents);
+        em.flush();
+
+        // Only change the value
+        restContentMockMvc.perform(patch("/api/contents/{id}", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType("application/merge-patch+json")
+            .content("{ \"value\": \"" + UPDATED_VALUE + "\" }"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.value").value(UPDATED_VALUE))
+            .andExpect(jsonPath("$.createdAt").value(sameInstant(DEFAULT_CREATED_AT)));
+
+        // Validate the other fields are untouched
+        em.clear();
+        Contents testContents = contentResourceRepository.findById(contents.getId()).get();
+        assertThat(testContents.getValue()).isEqualTo(UPDATED_VALUE);
+        assertThat(testContents.getCreatedAt()).isEqualTo(DEFAULT_CREATED_AT);
+    }
+
+    @Test
+    @Transactional
+    void partialUpdateContentRemovingTheValue() throws Exception {
+        // Initialize the database
+        contentResourceService.save(contents);
+        em.flush();
+
+        // The value is required, so a merge patch cannot remove it
+        restContentMockMvc.perform(patch("/api/contents/{id}", contents.getId()).header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType("application/merge-patch+json")
+            .content("{ \"value\": null }"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.valuenull"));
+
+        // Validate the value is untouched
+        em.clear();
+        Contents testContents = contentResourceRepository.findById(contents.getId()).get();
+        assertThat(testContents.getValue()).isEqualTo(DEFAULT_VALUE);
+    }
+
     @Test
     @Transactional
     void updateNonExistingContent() throws Exception {
@@ -355,6 +798,160 @@ public class ContentsIT {
         assertThat(contentsList).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    @Transactional
+    void deleteContentOfAnotherUser() throws Exception {
+        // Initialize the database
+        contentResourceService.save(contents);
+
+        int databaseSizeBeforeDelete = contentResourceRepository.findAll().size();
+
+        // Another user cannot delete the contents
+        restContentMockMvc.perform(delete("/api/contents/{id}", contents.getId())
+            .with(
+                request -> {
+                    request.setRemoteUser("user");
+                    return request;
+                }
+            )
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isBadRequest());
+
+        // Validate the contents is still there
+        List<Contents> contentsList = contentResourceRepository.findAll();
+        assertThat(contentsList).hasSize(databaseSizeBeforeDelete);
+    }
+
+    @Test
+    @Transactional
+    void deleteContentsByIds() throws Exception {
+        // Initialize the database
+        Contents first = contentResourceRepository.saveAndFlush(createEntity(em));
+        Contents second = contentResourceRepository.saveAndFlush(createEntity(em));
+        Contents kept = contentResourceRepository.saveAndFlush(createEntity(em));
+
+        int databaseSizeBeforeDelete = contentResourceRepository.findAll().size();
+
+        // Delete two of the contents in one call
+        restContentMockMvc.perform(delete("/api/contents").param("ids", first.getId() + "," + second.getId())
+            .header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isNoContent());
+
+        // Validate only the selected contents are gone
+        List<Contents> contentsList = contentResourceRepository.findAll();
+        assertThat(contentsList).hasSize(databaseSizeBeforeDelete - 2);
+        assertThat(contentsList).extracting(Contents::getId).contains(kept.getId());
+    }
+
+    @Test
+    @Transactional
+    void updateContentsByRange() throws Exception {
+        // Initialize the database
+        Contents inRange = contentResourceRepository.saveAndFlush(createEntity(em));
+        Contents outOfRange = contentResourceRepository.saveAndFlush(createEntity(em).createdAt(UPDATED_CREATED_AT));
+
+        restContentMockMvc.perform(put("/api/contents/bulk").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            )
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content("{ \"from\": \"" + DEFAULT_CREATED_AT + "\", \"to\": \"" + DEFAULT_CREATED_AT.plusDays(1) + "\", \"value\": \"" + UPDATED_VALUE + "\" }"))
+            .andExpect(status().isOk());
+
+        // Validate only the contents of the range are updated
+        assertThat(contentResourceRepository.findById(inRange.getId()).get().getValue()).isEqualTo(UPDATED_VALUE);
+        assertThat(contentResourceRepository.findById(outOfRange.getId()).get().getValue()).isEqualTo(DEFAULT_VALUE);
+    }
+
+    @Test
+    @Transactional
+    void getContentsChanges() throws Exception {
+        // Initialize the database through the service, which assigns the change sequences
+        Contents deleted = contentResourceService.save(createEntity(em));
+        Contents updated = contentResourceService.save(createEntity(em));
+        Contents unchanged = contentResourceService.save(createEntity(em));
+
+        // Run a full synchronization
+        String body = restContentMockMvc.perform(get("/api/contents/changes").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.[*].id").value(hasItem(unchanged.getId().toString())))
+            .andExpect(jsonPath("$.deleted").isEmpty())
+            .andExpect(jsonPath("$.hasMore").value(false))
+            .andReturn().getResponse().getContentAsString();
+        String token = (String) new JacksonJsonParser().parseMap(body).get("token");
+
+        contentResourceService.updateValueByOwner(this.user.getLogin(), Arrays.asList(updated.getId()), UPDATED_VALUE);
+        contentResourceService.deleteByOwner(deleted.getId(), this.user.getLogin());
+
+        // Only the changes since the token are returned
+        restContentMockMvc.perform(get("/api/contents/changes?since={since}", token).header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed", hasSize(1)))
+            .andExpect(jsonPath("$.changed.[0].id").value(updated.getId().toString()))
+            .andExpect(jsonPath("$.changed.[0].value").value(UPDATED_VALUE))
+            .andExpect(jsonPath("$.deleted", hasSize(1)))
+            .andExpect(jsonPath("$.deleted.[0]").value(deleted.getId().toString()))
+            .andExpect(jsonPath("$.token").value(not(token)));
+    }
+
+    @Test
+    @Transactional
+    void getContentsChangesWithInvalidToken() throws Exception {
+        restContentMockMvc.perform(get("/api/contents/changes?since=invalid").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamContents() throws Exception {
+        MvcResult result = restContentsStreamMockMvc.perform(get("/api/contents/stream").header("Authorization", "Bearer " + accessToken)
+            .with(
+                request -> {
+                    request.setRemoteUser(this.user.getLogin());
+                    return request;
+                }
+            ))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        // Events are sent by the task executor, once published
+        contentsStreamService.onContentsEvent(ContentsEventDTO.of(ContentsEventDTO.CREATED, this.user.getLogin(),
+            Collections.singletonList(42L)));
+        long deadline = System.currentTimeMillis() + 5000;
+        String body = result.getResponse().getContentAsString();
+        while (!body.contains("\"ids\":[\"42\"]") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            body = result.getResponse().getContentAsString();
+        }
+        assertThat(body).contains("event:created").contains("\"ids\":[\"42\"]");
+    }
+
     @Test
     @Transactional
     void equalsVerifier() throws Exception {